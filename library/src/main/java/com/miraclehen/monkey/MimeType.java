@@ -22,11 +22,14 @@ import android.support.v4.util.ArraySet;
 import android.text.TextUtils;
 import android.webkit.MimeTypeMap;
 
+import com.miraclehen.monkey.utils.MimeTypeDetector;
 import com.miraclehen.monkey.utils.PhotoMetadataUtils;
 
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -84,12 +87,42 @@ public enum MimeType {
             "avi"
     ));
 
+    /**
+     * 不支持的类型的编码
+     * <p>
+     * 类型编码的低8位是{@link #ordinal()} + 1，其余位是{@link #CATEGORY_IMAGE}等类别，
+     * 加载数据时由mime_type列计算一次，之后判断类型只需要位运算。
+     */
+    public static final int CODE_UNKNOWN = 0;
+    /**
+     * 图片，包括GIF
+     */
+    public static final int CATEGORY_IMAGE = 1 << 8;
+    public static final int CATEGORY_VIDEO = 1 << 9;
+    public static final int CATEGORY_GIF = 1 << 10;
+    private static final int ORDINAL_MASK = 0xFF;
+
+    private static final MimeType[] VALUES = values();
+    private static final Map<String, MimeType> BY_NAME = new HashMap<>();
+
+    static {
+        for (MimeType type : VALUES) {
+            BY_NAME.put(type.mMimeTypeName, type);
+        }
+    }
+
     private final String mMimeTypeName;
     private final Set<String> mExtensions;
+    private final int mCode;
 
     MimeType(String mimeTypeName, Set<String> extensions) {
         mMimeTypeName = mimeTypeName;
         mExtensions = extensions;
+        int category = mimeTypeName.startsWith("image/") ? CATEGORY_IMAGE : CATEGORY_VIDEO;
+        if ("image/gif".equals(mimeTypeName)) {
+            category |= CATEGORY_GIF;
+        }
+        mCode = (ordinal() + 1) | category;
     }
 
     public static Set<MimeType> ofAll() {
@@ -112,21 +145,62 @@ public enum MimeType {
         return EnumSet.of(MPEG, MP4, QUICKTIME, THREEGPP, THREEGPP2, MKV, WEBM, TS, AVI);
     }
 
+    /**
+     * MediaStore中mime_type列对应的类型，不需要查询ContentResolver
+     *
+     * @param mimeTypeName mime_type列的值
+     * @return 不支持的类型返回null
+     */
+    public static MimeType fromName(String mimeTypeName) {
+        return mimeTypeName == null ? null : BY_NAME.get(mimeTypeName);
+    }
+
+    /**
+     * mime_type列对应的类型编码
+     *
+     * @return 不支持的类型返回{@link #CODE_UNKNOWN}
+     */
+    public static int codeOf(String mimeTypeName) {
+        MimeType type = fromName(mimeTypeName);
+        return type == null ? CODE_UNKNOWN : type.mCode;
+    }
+
+    /**
+     * @return {@link #CODE_UNKNOWN}返回null
+     */
+    public static MimeType fromCode(int code) {
+        int ordinal = code & ORDINAL_MASK;
+        return ordinal == 0 ? null : VALUES[ordinal - 1];
+    }
+
     private static Set<String> arraySetOf(String... suffixes) {
         return new ArraySet<>(Arrays.asList(suffixes));
     }
 
+    /**
+     * 是否是GIF以外的图片
+     */
     public static boolean belongToImage(String mimeType) {
-        return mimeType.equals(JPEG.mMimeTypeName) || mimeType.equals(PNG.mMimeTypeName)
-                || mimeType.equals(BMP.mMimeTypeName) || mimeType.equals(WEBP.mMimeTypeName);
+        return belongToImage(codeOf(mimeType));
+    }
+
+    public static boolean belongToImage(int code) {
+        return (code & (CATEGORY_IMAGE | CATEGORY_GIF)) == CATEGORY_IMAGE;
     }
 
     public static boolean belongToVideo(String mimeType) {
-        return mimeType.equals(MPEG.mMimeTypeName) || mimeType.equals(MP4.mMimeTypeName)
-                || mimeType.equals(QUICKTIME.mMimeTypeName) || mimeType.equals(THREEGPP.mMimeTypeName)
-                || mimeType.equals(THREEGPP2.mMimeTypeName) || mimeType.equals(MKV.mMimeTypeName)
-                || mimeType.equals(WEBM.mMimeTypeName) || mimeType.equals(TS.mMimeTypeName)
-                || mimeType.equals(AVI.mMimeTypeName);
+        return belongToVideo(codeOf(mimeType));
+    }
+
+    public static boolean belongToVideo(int code) {
+        return (code & CATEGORY_VIDEO) != 0;
+    }
+
+    /**
+     * 类型编码，见{@link #CODE_UNKNOWN}
+     */
+    public int code() {
+        return mCode;
     }
 
     @Override
@@ -135,6 +209,21 @@ public enum MimeType {
     }
 
     public boolean checkType(ContentResolver resolver, Uri uri) {
+        if (uri == null) {
+            return false;
+        }
+        //先按文件内容判断，扩展名可能与内容不一致
+        MimeType detected = MimeTypeDetector.detect(resolver, uri);
+        if (detected != null) {
+            return detected == this;
+        }
+        return checkExtension(resolver, uri);
+    }
+
+    /**
+     * 按扩展名判断，需要查询ContentResolver。文件内容无法识别时使用
+     */
+    public boolean checkExtension(ContentResolver resolver, Uri uri) {
         MimeTypeMap map = MimeTypeMap.getSingleton();
         if (uri == null) {
             return false;
@@ -52,9 +52,12 @@ import com.miraclehen.monkey.entity.Album;
 import com.miraclehen.monkey.entity.MediaItem;
 import com.miraclehen.monkey.entity.SelectionSpec;
 import com.miraclehen.monkey.model.AlbumCollection;
+import com.miraclehen.monkey.model.ResultPipeline;
+import com.miraclehen.monkey.model.ResultStage;
 import com.miraclehen.monkey.model.SelectedItemCollection;
 import com.miraclehen.monkey.ui.AlbumPreviewActivity;
 import com.miraclehen.monkey.ui.BasePreviewActivity;
+import com.miraclehen.monkey.ui.LoadingDialog;
 import com.miraclehen.monkey.ui.MediaSelectionFragment;
 import com.miraclehen.monkey.ui.PermissionExplainDialog;
 import com.miraclehen.monkey.ui.SelectedPreviewActivity;
@@ -62,10 +65,11 @@ import com.miraclehen.monkey.ui.adapter.AlbumsAdapter;
 import com.miraclehen.monkey.ui.widget.AlbumsSpinner;
 import com.miraclehen.monkey.utils.ContentProviderUtil;
 import com.miraclehen.monkey.utils.MediaStoreCompat;
-import com.miraclehen.monkey.utils.VideoMedataUtil;
+import com.miraclehen.monkey.utils.ResultStages;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -74,7 +78,8 @@ import java.util.ArrayList;
  */
 public class MonkeyActivity extends AppCompatActivity implements
         AlbumCollection.AlbumCallbacks, AdapterView.OnItemSelectedListener,
-        MediaSelectionFragment.SelectionProvider, View.OnClickListener, UICallback {
+        MediaSelectionFragment.SelectionProvider, View.OnClickListener, UICallback,
+        LoadingDialog.OnCancelListener {
 
     public static final String TAG = MonkeyActivity.class.getSimpleName();
     private static final int SCAN_COMPLETE_WHAT_CODE = 0x21;
@@ -113,6 +118,9 @@ public class MonkeyActivity extends AppCompatActivity implements
     private View mContainer;
     private View mEmptyView;
     private Album mCurrentAlbum;
+    //返回结果之前正在执行的处理
+    private ResultPipeline mResultPipeline;
+    private LoadingDialog mLoadingDialog;
 
     //工具条部分
     private FrameLayout mBottomBar;
@@ -260,6 +268,11 @@ public class MonkeyActivity extends AppCompatActivity implements
 
         mSpec.checkListener = null;
 
+        if (mResultPipeline != null) {
+            mResultPipeline.cancel();
+            mResultPipeline = null;
+        }
+
         try {
             mAlbumCollection.onDestroy();
             super.onDestroy();
@@ -293,15 +306,14 @@ public class MonkeyActivity extends AppCompatActivity implements
 
         if (requestCode == REQUEST_CODE_PREVIEW) {
             Bundle resultBundle = data.getBundleExtra(BasePreviewActivity.EXTRA_RESULT_BUNDLE);
-            ArrayList<MediaItem> selected = resultBundle.getParcelableArrayList(SelectedItemCollection.STATE_SELECTION);
-            if (selected == null) {
+            if (resultBundle == null) {
                 return;
             }
 
+            mSelectedCollection.overwrite(resultBundle);
             if (data.getBooleanExtra(BasePreviewActivity.EXTRA_RESULT_APPLY, false)) {
-                doResult(selected);
+                resolveAndDoResult(false);
             } else {
-                mSelectedCollection.overwrite(selected);
                 Fragment mediaSelectionFragment = getSupportFragmentManager().findFragmentByTag(
                         MediaSelectionFragment.class.getSimpleName());
                 if (mediaSelectionFragment instanceof MediaSelectionFragment) {
@@ -380,21 +392,86 @@ public class MonkeyActivity extends AppCompatActivity implements
         @Override
         public void later(MediaItem mediaItem) {
             mSelectedCollection.add(mediaItem);
-            doResult(mSelectedCollection.asList(true));
+            resolveAndDoResult(true);
         }
     };
 
+    /**
+     * 选中集合从{@link com.miraclehen.monkey.model.SelectionState}恢复之后只有_id，先还原完整的数据再返回
+     *
+     * @param includeOriginData 是否包括用户传入、没有在媒体库中找到的数据
+     */
+    private void resolveAndDoResult(final boolean includeOriginData) {
+        mSelectedCollection.resolve(new Runnable() {
+            @Override
+            public void run() {
+                if (!isFinishing()) {
+                    doResult(mSelectedCollection.asList(includeOriginData));
+                }
+            }
+        });
+    }
+
     private void doResult(ArrayList<MediaItem> list) {
-        Intent result = new Intent();
+        if (mResultPipeline != null) {
+            //正在处理，忽略重复的点击
+            return;
+        }
+        List<ResultStage> stages = new ArrayList<>();
         if (mSpec.onlyShowVideos()) {
-            //视频
-            for (MediaItem item : list) {
-                long[] medataInfo = VideoMedataUtil.getMedataInfo2(item.getOriginalPath());
-                item.setWidth(medataInfo[0]);
-                item.setHeight(medataInfo[1]);
-                item.setOrientation((int) medataInfo[2]);
+            //视频需要读取宽高以及横竖
+            stages.add(ResultStages.metadata());
+            stages.add(ResultStages.orientation());
+        }
+        if (mSpec.resultStages != null) {
+            stages.addAll(mSpec.resultStages);
+        }
+        if (stages.isEmpty() || list.isEmpty()) {
+            finishWithResult(list);
+            return;
+        }
+        mLoadingDialog = LoadingDialog.newInstance();
+        getSupportFragmentManager().beginTransaction()
+                .add(mLoadingDialog, LoadingDialog.class.getSimpleName())
+                .commitAllowingStateLoss();
+        mResultPipeline = ResultPipeline.start(this, list, stages, new ResultPipeline.Listener() {
+            @Override
+            public void onProgress(int done, int total) {
+                mLoadingDialog.setProgress(done, total);
             }
+
+            @Override
+            public void onFinished(ArrayList<MediaItem> items) {
+                mResultPipeline = null;
+                dismissLoadingDialog();
+                if (!isFinishing()) {
+                    finishWithResult(items);
+                }
+            }
+        });
+    }
+
+    /**
+     * 处理期间按返回键取消，停留在选择页面
+     */
+    @Override
+    public void onLoadingCanceled() {
+        if (mResultPipeline != null) {
+            mResultPipeline.cancel();
+            mResultPipeline = null;
         }
+        mLoadingDialog = null;
+    }
+
+    private void dismissLoadingDialog() {
+        if (mLoadingDialog != null) {
+            mLoadingDialog.dismissAllowingStateLoss();
+            mLoadingDialog = null;
+        }
+    }
+
+    private void finishWithResult(ArrayList<MediaItem> list) {
+        Intent result = new Intent();
         result.putParcelableArrayListExtra(EXTRA_RESULT_SELECTION_ITEM, list);
         setResult(RESULT_OK, result);
         finish();
@@ -422,7 +499,7 @@ public class MonkeyActivity extends AppCompatActivity implements
             startActivityForResult(intent, REQUEST_CODE_PREVIEW);
         } else if (v.getId() == R.id.button_apply) {
             //使用按钮被点击
-            doResult(mSelectedCollection.asList(true));
+            resolveAndDoResult(true);
         }
     }
 
@@ -28,16 +28,20 @@ import android.support.v4.app.Fragment;
 
 import com.miraclehen.monkey.engine.ImageEngine;
 import com.miraclehen.monkey.entity.CaptureStrategy;
+import com.miraclehen.monkey.entity.DateGrouping;
 import com.miraclehen.monkey.entity.MediaItem;
 import com.miraclehen.monkey.entity.SelectionSpec;
 import com.miraclehen.monkey.filter.Filter;
+import com.miraclehen.monkey.filter.QueryFilter;
 import com.miraclehen.monkey.listener.CatchSpecMediaItemCallback;
 import com.miraclehen.monkey.listener.InflateItemViewCallback;
 import com.miraclehen.monkey.listener.OnItemCheckChangeListener;
+import com.miraclehen.monkey.model.ResultStage;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
 import java.util.Set;
 
@@ -159,6 +163,33 @@ public final class SelectionCreator {
         return this;
     }
 
+    /**
+     * 查询条件过滤器。条件在查询MediaStore时生效，不符合条件的数据不会显示，也不计入相册的数量
+     *
+     * @param filter {@link QueryFilter}
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator queryFilter(QueryFilter filter) {
+        mSelectionSpec.queryFilter = filter;
+        return this;
+    }
+
+    /**
+     * 返回结果之前对每个选中数据执行的处理，例如{@link com.miraclehen.monkey.utils.ResultStages#hash(String)}、
+     * {@link com.miraclehen.monkey.utils.ResultStages#compress(int, int)}。
+     * 多个数据在后台并行处理，同一个数据按添加的顺序依次处理，处理期间显示进度，按返回键可以取消。
+     *
+     * @param stage {@link ResultStage}
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator addResultStage(@NonNull ResultStage stage) {
+        if (mSelectionSpec.resultStages == null) {
+            mSelectionSpec.resultStages = new ArrayList<>();
+        }
+        mSelectionSpec.resultStages.add(stage);
+        return this;
+    }
+
 
     /**
      * Capture strategy provided for the location to save photos including internal and external
@@ -286,6 +317,65 @@ public final class SelectionCreator {
         return this;
     }
 
+    /**
+     * 日期分组的粒度
+     * 默认按天分组。可以传入多个粒度，由细到粗排列，第一个为初始粒度，之后可以在列表中双指缩放切换相邻的粒度
+     *
+     * @param groupings 分组粒度，例如{@link DateGrouping#DAY}、{@link DateGrouping#MONTH}，或者自定义的分组
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator dateGroupings(DateGrouping... groupings) {
+        if (groupings == null || groupings.length < 1) {
+            throw new IllegalArgumentException("dateGroupings cannot be empty");
+        }
+        List<DateGrouping> list = new ArrayList<>();
+        for (DateGrouping grouping : groupings) {
+            if (grouping == null) {
+                throw new IllegalArgumentException("dateGroupings cannot contain null");
+            }
+            list.add(grouping);
+        }
+        mSelectionSpec.groupByDate = true;
+        mSelectionSpec.dateGroupings = list;
+        return this;
+    }
+
+    /**
+     * 日期视图是否吸顶
+     * 为true时日期视图由ItemDecoration绘制，不占用列表的位置。默认为false
+     *
+     * @param sticky
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator stickyDateHeader(boolean sticky) {
+        mSelectionSpec.stickyDateHeader = sticky;
+        return this;
+    }
+
+    /**
+     * 是否支持长按小图之后滑动多选
+     * 起点未选中时选中滑过的范围，否则取消选中。默认为false
+     *
+     * @param enable
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator dragSelect(boolean enable) {
+        mSelectionSpec.dragSelect = enable;
+        return this;
+    }
+
+    /**
+     * 是否在列表右侧显示可以拖动的时间轴
+     * 默认为false，开启后内容超过五屏时显示
+     *
+     * @param enable
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator timelineScroller(boolean enable) {
+        mSelectionSpec.timelineScroller = enable;
+        return this;
+    }
+
     /**
      * 初始化已选中的MediaItem列表
      *
@@ -302,6 +392,7 @@ public final class SelectionCreator {
 
     /**
      * Item被勾选或者反勾选监听器
+     * 传入{@link com.miraclehen.monkey.listener.OnItemRangeCheckChangeListener}时，滑动多选每一帧只回调一次
      *
      * @param listener 监听器
      * @return SelectionCreator
@@ -350,16 +441,41 @@ public final class SelectionCreator {
     }
 
     /**
-     * 获取指定日期区间的数据MediaItem之后回调相应的方法
+     * 获取今天的数据MediaItem之后回调相应的方法
      *
      * @param callback CatchSpecMediaItemCallback.dateCallback
      * @return SelectionCreator
      */
     public SelectionCreator catchSpecDateCallback(CatchSpecMediaItemCallback.dateCallback callback) {
+        Calendar calendar = Calendar.getInstance();
+        long now = calendar.getTimeInMillis();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return catchSpecDateCallback(calendar.getTimeInMillis(), now, callback);
+    }
+
+    /**
+     * 获取指定日期区间的数据MediaItem之后回调相应的方法
+     * 数据按日期倒序分批回调，实现{@link CatchSpecMediaItemCallback.dateRangeCallback}可以在全部回调之后得到通知
+     *
+     * @param startMillis 开始时间，单位毫秒，包括此时间
+     * @param endMillis   结束时间，单位毫秒，包括此时间
+     * @param callback    CatchSpecMediaItemCallback.dateCallback
+     * @return SelectionCreator
+     */
+    public SelectionCreator catchSpecDateCallback(long startMillis, long endMillis,
+                                                  CatchSpecMediaItemCallback.dateCallback callback) {
         if (callback == null) {
             throw new IllegalArgumentException("CatchSpecMediaItemCallback.dateCallback not be null ");
         }
+        if (startMillis > endMillis) {
+            throw new IllegalArgumentException("startMillis must not be later than endMillis");
+        }
         mSelectionSpec.catchDateSpecCallback = callback;
+        mSelectionSpec.catchDateStart = startMillis;
+        mSelectionSpec.catchDateEnd = endMillis;
         return this;
     }
 
@@ -393,4 +509,31 @@ public final class SelectionCreator {
         return this;
     }
 
+    /**
+     * 分页加载相册数据
+     * 第一页加载完成之后立即显示，滑动到底部时再加载下一页。适合媒体文件非常多的设备
+     *
+     * @param pageSize 每一页的数量，0为不分页。默认为0
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator pageSize(int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("pageSize < 0");
+        }
+        mSelectionSpec.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * 是否使用媒体数据快照
+     * 开启后，所有相册的数据会保存在应用的缓存目录中，下次打开时立即显示，之后再在后台与MediaStore核对
+     *
+     * @param enable 默认为false
+     * @return {@link SelectionCreator} for fluent API.
+     */
+    public SelectionCreator mediaSnapshot(boolean enable) {
+        mSelectionSpec.mediaSnapshot = enable;
+        return this;
+    }
+
 }
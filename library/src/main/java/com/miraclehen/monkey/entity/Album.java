@@ -24,6 +24,7 @@ import android.provider.MediaStore;
 import android.support.annotation.Nullable;
 
 import com.miraclehen.monkey.R;
+import com.miraclehen.monkey.loader.AlbumIndex;
 import com.miraclehen.monkey.loader.AlbumLoader;
 
 
@@ -47,6 +48,11 @@ public class Album implements Parcelable {
     private final String mCoverPath;
     private final String mDisplayName;
     private long mCount;
+    //以下数据来自AlbumIndex
+    private long mCoverId = -1;
+    private long mNewestDate;
+    private long mImageCount;
+    private long mVideoCount;
 
     Album(String id, String coverPath, String albumName, long count) {
         mId = id;
@@ -60,6 +66,10 @@ public class Album implements Parcelable {
         mCoverPath = source.readString();
         mDisplayName = source.readString();
         mCount = source.readLong();
+        mCoverId = source.readLong();
+        mNewestDate = source.readLong();
+        mImageCount = source.readLong();
+        mVideoCount = source.readLong();
     }
 
     /**
@@ -67,11 +77,19 @@ public class Album implements Parcelable {
      * This method is not responsible for managing cursor resource, such as close, iterate, and so on.
      */
     public static Album valueOf(Cursor cursor) {
-        return new Album(
+        Album album = new Album(
                 cursor.getString(cursor.getColumnIndex("bucket_id")),
                 cursor.getString(cursor.getColumnIndex(MediaStore.MediaColumns.DATA)),
                 cursor.getString(cursor.getColumnIndex("bucket_display_name")),
                 cursor.getLong(cursor.getColumnIndex(AlbumLoader.COLUMN_COUNT)));
+        int coverIdIndex = cursor.getColumnIndex(AlbumIndex.COLUMN_COVER_ID);
+        if (coverIdIndex != -1) {
+            album.mCoverId = cursor.getLong(coverIdIndex);
+            album.mNewestDate = cursor.getLong(cursor.getColumnIndex(AlbumIndex.COLUMN_NEWEST_DATE));
+            album.mImageCount = cursor.getLong(cursor.getColumnIndex(AlbumIndex.COLUMN_IMAGE_COUNT));
+            album.mVideoCount = cursor.getLong(cursor.getColumnIndex(AlbumIndex.COLUMN_VIDEO_COUNT));
+        }
+        return album;
     }
 
     @Override
@@ -85,6 +103,10 @@ public class Album implements Parcelable {
         dest.writeString(mCoverPath);
         dest.writeString(mDisplayName);
         dest.writeLong(mCount);
+        dest.writeLong(mCoverId);
+        dest.writeLong(mNewestDate);
+        dest.writeLong(mImageCount);
+        dest.writeLong(mVideoCount);
     }
 
     public String getId() {
@@ -99,6 +121,28 @@ public class Album implements Parcelable {
         return mCount;
     }
 
+    /**
+     * 封面的_id，没有数据时为-1
+     */
+    public long getCoverId() {
+        return mCoverId;
+    }
+
+    /**
+     * 相册中最新一条数据的日期，没有拍摄日期时为添加日期
+     */
+    public long getNewestDate() {
+        return mNewestDate;
+    }
+
+    public long getImageCount() {
+        return mImageCount;
+    }
+
+    public long getVideoCount() {
+        return mVideoCount;
+    }
+
     public void addCaptureCount() {
         mCount++;
     }
@@ -0,0 +1,96 @@
+package com.miraclehen.monkey.entity;
+
+import android.content.Context;
+
+import com.miraclehen.monkey.utils.DateLabels;
+import com.miraclehen.monkey.utils.DateTimeUtil;
+
+/**
+ * 日期分组的粒度
+ * <p>
+ * 分组只根据每条数据所在的天计算，天为本地时区中距离1970年1月1日的天数。
+ * 数据已经按日期倒序排列，所以只要{@link #keyOf(long)}随天单调不减，同一组的数据就是连续的，
+ * 切换粒度时只需要对已经排好序的数据遍历一遍。
+ * <p>
+ * 除了{@link #DAY}、{@link #WEEK}、{@link #MONTH}、{@link #YEAR}之外，也可以继承此类自定义分组
+ */
+public abstract class DateGrouping {
+
+    /**
+     * 按天分组
+     */
+    public static final DateGrouping DAY = new DateGrouping() {
+        @Override
+        public long keyOf(long day) {
+            return day;
+        }
+
+        @Override
+        public String getLabel(Context context, long key, long date) {
+            return DateLabels.day(context, key);
+        }
+    };
+
+    /**
+     * 按周分组，每周从周一开始
+     */
+    public static final DateGrouping WEEK = new DateGrouping() {
+        @Override
+        public long keyOf(long day) {
+            //1970年1月1日是周四
+            return DateTimeUtil.floorDiv(day + 3, 7);
+        }
+
+        @Override
+        public String getLabel(Context context, long key, long date) {
+            return DateLabels.week(context, key * 7 - 3);
+        }
+    };
+
+    /**
+     * 按月分组
+     */
+    public static final DateGrouping MONTH = new DateGrouping() {
+        @Override
+        public long keyOf(long day) {
+            long yearMonth = DateTimeUtil.yearMonthOfDay(day);
+            return (yearMonth >> 4) * 12 + (yearMonth & 0xF) - 1;
+        }
+
+        @Override
+        public String getLabel(Context context, long key, long date) {
+            long year = DateTimeUtil.floorDiv(key, 12);
+            return DateLabels.month(context, year, (int) (key - year * 12) + 1);
+        }
+    };
+
+    /**
+     * 按年分组
+     */
+    public static final DateGrouping YEAR = new DateGrouping() {
+        @Override
+        public long keyOf(long day) {
+            return DateTimeUtil.yearMonthOfDay(day) >> 4;
+        }
+
+        @Override
+        public String getLabel(Context context, long key, long date) {
+            return DateLabels.year(context, key);
+        }
+    };
+
+    /**
+     * 某一天所在分组的键。必须随天单调不减，同一组的天返回相同的值
+     *
+     * @param day 本地时区中距离1970年1月1日的天数，见{@link DateTimeUtil#toDay(long)}
+     */
+    public abstract long keyOf(long day);
+
+    /**
+     * 日期视图显示的文本，在后台线程中调用。可以使用{@link DateLabels}缓存的文本
+     *
+     * @param key  分组的键
+     * @param date 分组中最新一条数据的时间，单位毫秒
+     */
+    public abstract String getLabel(Context context, long key, long date);
+}
@@ -59,6 +59,13 @@ public class MediaItem implements Parcelable {
     private String bucketId;
     //是否已被选中
     private boolean isChecked = true;
+    //返回结果之前计算的文件摘要，见ResultStages#hash
+    private String contentHash;
+    //返回结果之前压缩的图片路径，见ResultStages#compress
+    private String compressedPath;
+    //mime_type的类型编码，mimeType改变之后重新计算
+    private int mimeCode;
+    private String mimeCodeSource;
 
     public MediaItem() {
 
@@ -66,8 +73,19 @@ public class MediaItem implements Parcelable {
 
     public MediaItem(long id, String mimeType, long size, long duration,
                      double latitude, double longitude, long width, long height, String path, long date, long addDate) {
+        this(id, mimeType, MimeType.codeOf(mimeType), size, duration, latitude, longitude, width, height, path,
+                date, addDate);
+    }
+
+    /**
+     * @param mimeCode 加载时已经计算好的类型编码
+     */
+    MediaItem(long id, String mimeType, int mimeCode, long size, long duration,
+              double latitude, double longitude, long width, long height, String path, long date, long addDate) {
         this.id = id;
         this.mimeType = mimeType == null ? "" : mimeType;
+        this.mimeCode = mimeCode;
+        this.mimeCodeSource = this.mimeType;
         Uri contentUri;
         if (isImage()) {
             contentUri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
@@ -136,36 +154,27 @@ public class MediaItem implements Parcelable {
     }
 
     public boolean isImage() {
-        if (mimeType == null) {
-            return false;
-        }
-        return mimeType.equals(MimeType.JPEG.toString())
-                || mimeType.equals(MimeType.PNG.toString())
-                || mimeType.equals(MimeType.GIF.toString())
-                || mimeType.equals(MimeType.BMP.toString())
-                || mimeType.equals(MimeType.WEBP.toString());
+        return (getMimeCode() & MimeType.CATEGORY_IMAGE) != 0;
     }
 
     public boolean isGif() {
-        if (mimeType == null) {
-            return false;
-        }
-        return mimeType.equals(MimeType.GIF.toString());
+        return (getMimeCode() & MimeType.CATEGORY_GIF) != 0;
     }
 
     public boolean isVideo() {
-        if (mimeType == null) {
-            return false;
+        return (getMimeCode() & MimeType.CATEGORY_VIDEO) != 0;
+    }
+
+    /**
+     * 类型编码，见{@link MimeType#CODE_UNKNOWN}
+     */
+    public int getMimeCode() {
+        //mimeType是公开的字段，可能被直接修改，按引用判断是否需要重新计算
+        if (mimeCodeSource != mimeType) {
+            mimeCode = MimeType.codeOf(mimeType);
+            mimeCodeSource = mimeType;
         }
-        return mimeType.equals(MimeType.MPEG.toString())
-                || mimeType.equals(MimeType.MP4.toString())
-                || mimeType.equals(MimeType.QUICKTIME.toString())
-                || mimeType.equals(MimeType.THREEGPP.toString())
-                || mimeType.equals(MimeType.THREEGPP2.toString())
-                || mimeType.equals(MimeType.MKV.toString())
-                || mimeType.equals(MimeType.WEBM.toString())
-                || mimeType.equals(MimeType.TS.toString())
-                || mimeType.equals(MimeType.AVI.toString());
+        return mimeCode;
     }
 
     @Override
@@ -178,28 +187,12 @@ public class MediaItem implements Parcelable {
         return originalPath != null ? originalPath.equals(item.originalPath) : item.originalPath == null;
     }
 
+    /**
+     * 与{@link #equals(Object)}一致，只使用路径
+     */
     @Override
     public int hashCode() {
-        int result;
-        long temp;
-        result = (int) (id ^ (id >>> 32));
-        result = 31 * result + (mimeType != null ? mimeType.hashCode() : 0);
-        result = 31 * result + (uri != null ? uri.hashCode() : 0);
-        result = 31 * result + (int) (length ^ (length >>> 32));
-        result = 31 * result + (int) (duration ^ (duration >>> 32));
-        temp = Double.doubleToLongBits(latitude);
-        result = 31 * result + (int) (temp ^ (temp >>> 32));
-        temp = Double.doubleToLongBits(longitude);
-        result = 31 * result + (int) (temp ^ (temp >>> 32));
-        result = 31 * result + (int) (createDate ^ (createDate >>> 32));
-        result = 31 * result + (int) (width ^ (width >>> 32));
-        result = 31 * result + (int) (height ^ (height >>> 32));
-        result = 31 * result + (originalPath != null ? originalPath.hashCode() : 0);
-        result = 31 * result + (thumbnailBigPath != null ? thumbnailBigPath.hashCode() : 0);
-        result = 31 * result + (thumbnailSmallPath != null ? thumbnailSmallPath.hashCode() : 0);
-        result = 31 * result + (int) (modifiedDate ^ (modifiedDate >>> 32));
-        result = 31 * result + (bucketId != null ? bucketId.hashCode() : 0);
-        return result;
+        return originalPath != null ? originalPath.hashCode() : 0;
     }
 
     public long getId() {
@@ -338,6 +331,22 @@ public class MediaItem implements Parcelable {
         this.bucketId = bucketId;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getCompressedPath() {
+        return compressedPath;
+    }
+
+    public void setCompressedPath(String compressedPath) {
+        this.compressedPath = compressedPath;
+    }
+
     public boolean isChecked() {
         return isChecked;
     }
@@ -370,6 +379,10 @@ public class MediaItem implements Parcelable {
         dest.writeLong(this.modifiedDate);
         dest.writeString(this.bucketId);
         dest.writeByte(this.isChecked ? (byte) 1 : (byte) 0);
+        dest.writeInt(getMimeCode());
+        dest.writeInt(this.orientation);
+        dest.writeString(this.contentHash);
+        dest.writeString(this.compressedPath);
     }
 
     protected MediaItem(Parcel in) {
@@ -390,6 +403,11 @@ public class MediaItem implements Parcelable {
         this.modifiedDate = in.readLong();
         this.bucketId = in.readString();
         this.isChecked = in.readByte() != 0;
+        this.mimeCode = in.readInt();
+        this.mimeCodeSource = this.mimeType;
+        this.orientation = in.readInt();
+        this.contentHash = in.readString();
+        this.compressedPath = in.readString();
     }
 
     public static final Creator<MediaItem> CREATOR = new Creator<MediaItem>() {
@@ -424,6 +442,8 @@ public class MediaItem implements Parcelable {
                 ", modifiedDate=" + modifiedDate +
                 ", bucketId='" + bucketId + '\'' +
                 ", isChecked=" + isChecked +
+                ", contentHash='" + contentHash + '\'' +
+                ", compressedPath='" + compressedPath + '\'' +
                 '}';
     }
 }
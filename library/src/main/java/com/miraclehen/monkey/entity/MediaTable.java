@@ -0,0 +1,719 @@
+package com.miraclehen.monkey.entity;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.MimeType;
+import com.miraclehen.monkey.loader.MediaTableCursor;
+import com.miraclehen.monkey.utils.DateTimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按列保存的媒体数据
+ * <p>
+ * 每一列是一个基本类型数组，在后台线程中从cursor一次性读取。列表滚动时直接读取数组，
+ * 不需要移动cursor，也不需要为每一个item创建{@link MediaItem}；只有在数据被选中、被预览
+ * 或者需要返回给调用者时，才通过{@link #createItem(int)}创建。
+ * <p>
+ * mime_type以及bucket_id的取值很少，只保存在字典中，每一行记录字典的下标。
+ * <p>
+ * MediaTable创建之后不再变化，可以在多个线程中同时读取。{@link #append(MediaTable)}得到新的MediaTable，
+ * 在容量足够时与原来的MediaTable共用同一组数组，但只写入原来的MediaTable范围之外的位置；
+ * 字典在每次创建MediaTable时冻结一份，之后不再修改。append只能在主线程中调用。
+ * <p>
+ * 也可以通过{@link #wrap(MediaTable, Rows)}直接读取{@link Rows}，例如内存映射的快照，不需要先复制到数组中。
+ */
+public class MediaTable {
+
+    /**
+     * 字典已满时使用的mime编码，真实的mime_type保存在Dictionary.mOverflowMimeTypes中
+     */
+    private static final int MIME_CODE_OVERFLOW = 0xFF;
+
+    private static final MediaTable EMPTY = new Columns(0).publish();
+
+    //生成此MediaTable的Columns，只有最后创建的MediaTable可以在后面直接追加
+    private final Columns mColumns;
+    //创建时的数组以及字典。只读取[0, mSize)，这个范围内的数据不会再被写入
+    private final Storage mStorage;
+    private final Dictionary mDictionary;
+    private final int mSize;
+
+    private MediaTable(Columns columns, Storage storage, Dictionary dictionary, int size) {
+        mColumns = columns;
+        mStorage = storage;
+        mDictionary = dictionary;
+        mSize = size;
+    }
+
+    public static MediaTable empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 读取cursor中的所有数据。如果cursor本身就是由MediaTable生成的，直接返回原来的MediaTable
+     *
+     * @param cursor 列与{@link com.miraclehen.monkey.loader.AlbumLoaderContants#PROJECTION}一致
+     */
+    @WorkerThread
+    public static MediaTable from(Cursor cursor) {
+        if (cursor == null) {
+            return EMPTY;
+        }
+        if (cursor instanceof MediaTableCursor) {
+            return ((MediaTableCursor) cursor).getTable();
+        }
+        int count = cursor.getCount();
+        Columns columns = new Columns(count);
+        columns.addAll(cursor);
+        return columns.publish();
+    }
+
+    /**
+     * 直接读取rows中的数据，不复制
+     *
+     * @param head 显示在rows之前的数据，例如拍照视图
+     */
+    public static MediaTable wrap(MediaTable head, Rows rows) {
+        return new RowsTable(head, rows);
+    }
+
+    /**
+     * 在最后追加另一个MediaTable的数据
+     */
+    public MediaTable append(MediaTable other) {
+        if (other.mSize == 0) {
+            return this;
+        }
+        Columns columns;
+        if (mColumns != null && mColumns.mUsed == mSize && this != EMPTY) {
+            //没有其他MediaTable在这组数组后面追加过，可以直接共用。新数据只写入mSize之后的位置
+            columns = mColumns;
+        } else {
+            columns = new Columns(mSize + other.mSize);
+            columns.addRows(this, 0, mSize);
+        }
+        columns.addRows(other, 0, other.mSize);
+        return columns.publish();
+    }
+
+    /**
+     * 按照行映射生成新的MediaTable
+     *
+     * @param sources 数据来源
+     * @param sourceOf 每一行所在的来源下标
+     * @param rowOf    每一行在来源中的位置
+     */
+    public static MediaTable compose(MediaTable[] sources, int[] sourceOf, int[] rowOf) {
+        Columns columns = new Columns(sourceOf.length);
+        for (int i = 0; i < sourceOf.length; i++) {
+            columns.addRow(sources[sourceOf[i]], rowOf[i]);
+        }
+        return columns.publish();
+    }
+
+    /**
+     * 以cursor的形式访问此MediaTable
+     */
+    public Cursor asCursor() {
+        return new MediaTableCursor(this);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getId(int row) {
+        return mStorage.mIds[row];
+    }
+
+    public boolean isCapture(int row) {
+        return getId(row) == MediaItem.ITEM_ID_CAPTURE;
+    }
+
+    public boolean isRecord(int row) {
+        return getId(row) == MediaItem.ITEM_ID_RECORD;
+    }
+
+    /**
+     * 拍照或者录像视图
+     */
+    public boolean isDummy(int row) {
+        return getId(row) < 0;
+    }
+
+    public long getDateTaken(int row) {
+        return mStorage.mDateTaken[row];
+    }
+
+    public long getDateAdded(int row) {
+        return mStorage.mDateAdded[row];
+    }
+
+    /**
+     * 与{@link com.miraclehen.monkey.loader.AlbumLoaderContants#SORT_KEY}一致的排序值，没有拍摄日期时使用添加日期
+     */
+    public long getSortKey(int row) {
+        long dateTaken = getDateTaken(row);
+        return dateTaken == 0 ? getDateAdded(row) * 1000 : dateTaken;
+    }
+
+    /**
+     * 用于日期分组的时间，单位毫秒
+     */
+    public long getDate(int row) {
+        return mStorage.mDates[row];
+    }
+
+    public String getMimeType(int row) {
+        int code = mStorage.mMimeCodes[row] & 0xFF;
+        if (code == MIME_CODE_OVERFLOW) {
+            return mDictionary.mOverflowMimeTypes.get(row);
+        }
+        return mDictionary.mMimeTypes[code];
+    }
+
+    public boolean isImage(int row) {
+        return (getMimeCode(row) & MimeType.CATEGORY_IMAGE) != 0;
+    }
+
+    public boolean isVideo(int row) {
+        return (getMimeCode(row) & MimeType.CATEGORY_VIDEO) != 0;
+    }
+
+    public boolean isGif(int row) {
+        return (getMimeCode(row) & MimeType.CATEGORY_GIF) != 0;
+    }
+
+    /**
+     * 类型编码，加载时计算，见{@link MimeType#CODE_UNKNOWN}
+     */
+    public int getMimeCode(int row) {
+        int code = mStorage.mMimeCodes[row] & 0xFF;
+        if (code == MIME_CODE_OVERFLOW) {
+            return MimeType.codeOf(mDictionary.mOverflowMimeTypes.get(row));
+        }
+        return mDictionary.mMimeTypeCodes[code];
+    }
+
+    public int getWidth(int row) {
+        return mStorage.mWidths[row];
+    }
+
+    public int getHeight(int row) {
+        return mStorage.mHeights[row];
+    }
+
+    public long getSize(int row) {
+        return mStorage.mSizes[row];
+    }
+
+    /**
+     * 视频时长，单位毫秒
+     */
+    public long getDuration(int row) {
+        return mStorage.mDurations[row];
+    }
+
+    public double getLatitude(int row) {
+        return mStorage.mLatitudes[row];
+    }
+
+    public double getLongitude(int row) {
+        return mStorage.mLongitudes[row];
+    }
+
+    public String getPath(int row) {
+        return mStorage.mPaths[row];
+    }
+
+    public String getDisplayName(int row) {
+        return mStorage.mDisplayNames[row];
+    }
+
+    public String getBucketId(int row) {
+        int ref = mStorage.mBucketRefs[row];
+        return ref < 0 ? null : mDictionary.mBucketIds[ref];
+    }
+
+    /**
+     * 缩略图使用的Uri。第一次访问时创建，之后重复使用。可能在多个线程中同时访问
+     */
+    public Uri getContentUri(int row) {
+        Uri uri = uriCache().get(row);
+        if (uri == null) {
+            Uri contentUri;
+            if (isImage(row)) {
+                contentUri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+            } else if (isVideo(row)) {
+                contentUri = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
+            } else {
+                contentUri = MediaStore.Files.getContentUri("external");
+            }
+            uri = ContentUris.withAppendedId(contentUri, getId(row));
+            uriCache().set(row, uri);
+        }
+        return uri;
+    }
+
+    AtomicReferenceArray<Uri> uriCache() {
+        return mStorage.mUris;
+    }
+
+    /**
+     * timeToMs使用的当前时间
+     */
+    long now() {
+        return mStorage.mNow;
+    }
+
+    /**
+     * 创建某一行的MediaItem
+     */
+    public MediaItem createItem(int row) {
+        long now = now();
+        MediaItem item = new MediaItem(getId(row), getMimeType(row), getMimeCode(row), getSize(row), getDuration(row),
+                getLatitude(row), getLongitude(row), getWidth(row), getHeight(row), getPath(row),
+                DateTimeUtil.timeToMs(getDateTaken(row), now), DateTimeUtil.timeToMs(getDateAdded(row), now));
+        item.setBucketId(getBucketId(row));
+        return item;
+    }
+
+    /**
+     * @return 没有找到时返回-1
+     */
+    public int indexOfId(long id) {
+        for (int i = 0; i < mSize; i++) {
+            if (getId(i) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 没有找到时返回-1
+     */
+    public int indexOfPath(String path) {
+        if (path == null) {
+            return -1;
+        }
+        for (int i = 0; i < mSize; i++) {
+            if (path.equals(getPath(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 可以直接读取的一组数据，列与{@link com.miraclehen.monkey.loader.AlbumLoaderContants#PROJECTION}一致。
+     * 数据不能改变，可能在多个线程中同时读取
+     */
+    public interface Rows {
+
+        int size();
+
+        long getId(int row);
+
+        long getDateTaken(int row);
+
+        long getDateAdded(int row);
+
+        String getMimeType(int row);
+
+        /**
+         * 见{@link MimeType#codeOf(String)}
+         */
+        int getMimeCode(int row);
+
+        int getWidth(int row);
+
+        int getHeight(int row);
+
+        long getSize(int row);
+
+        long getDuration(int row);
+
+        double getLatitude(int row);
+
+        double getLongitude(int row);
+
+        String getPath(int row);
+
+        String getDisplayName(int row);
+
+        String getBucketId(int row);
+    }
+
+    /**
+     * 由head以及{@link Rows}组成的MediaTable，所有数据都直接从来源读取。
+     * 追加数据时复制到数组中，得到普通的MediaTable
+     */
+    private static final class RowsTable extends MediaTable {
+        private final MediaTable mHead;
+        private final int mHeadSize;
+        private final Rows mRows;
+        private final AtomicReferenceArray<Uri> mUris;
+        private final long mNow = System.currentTimeMillis();
+
+        RowsTable(MediaTable head, Rows rows) {
+            super(null, null, null, head.size() + rows.size());
+            mHead = head;
+            mHeadSize = head.size();
+            mRows = rows;
+            mUris = new AtomicReferenceArray<>(size());
+        }
+
+        @Override
+        public long getId(int row) {
+            return row < mHeadSize ? mHead.getId(row) : mRows.getId(row - mHeadSize);
+        }
+
+        @Override
+        public long getDateTaken(int row) {
+            return row < mHeadSize ? mHead.getDateTaken(row) : mRows.getDateTaken(row - mHeadSize);
+        }
+
+        @Override
+        public long getDateAdded(int row) {
+            return row < mHeadSize ? mHead.getDateAdded(row) : mRows.getDateAdded(row - mHeadSize);
+        }
+
+        @Override
+        public long getDate(int row) {
+            if (row < mHeadSize) {
+                return mHead.getDate(row);
+            }
+            long dateTaken = mRows.getDateTaken(row - mHeadSize);
+            return DateTimeUtil.timeToMs(dateTaken != 0 ? dateTaken : mRows.getDateAdded(row - mHeadSize), mNow);
+        }
+
+        @Override
+        public String getMimeType(int row) {
+            return row < mHeadSize ? mHead.getMimeType(row) : mRows.getMimeType(row - mHeadSize);
+        }
+
+        @Override
+        public int getMimeCode(int row) {
+            return row < mHeadSize ? mHead.getMimeCode(row) : mRows.getMimeCode(row - mHeadSize);
+        }
+
+        @Override
+        public int getWidth(int row) {
+            return row < mHeadSize ? mHead.getWidth(row) : mRows.getWidth(row - mHeadSize);
+        }
+
+        @Override
+        public int getHeight(int row) {
+            return row < mHeadSize ? mHead.getHeight(row) : mRows.getHeight(row - mHeadSize);
+        }
+
+        @Override
+        public long getSize(int row) {
+            return row < mHeadSize ? mHead.getSize(row) : mRows.getSize(row - mHeadSize);
+        }
+
+        @Override
+        public long getDuration(int row) {
+            return row < mHeadSize ? mHead.getDuration(row) : mRows.getDuration(row - mHeadSize);
+        }
+
+        @Override
+        public double getLatitude(int row) {
+            return row < mHeadSize ? mHead.getLatitude(row) : mRows.getLatitude(row - mHeadSize);
+        }
+
+        @Override
+        public double getLongitude(int row) {
+            return row < mHeadSize ? mHead.getLongitude(row) : mRows.getLongitude(row - mHeadSize);
+        }
+
+        @Override
+        public String getPath(int row) {
+            return row < mHeadSize ? mHead.getPath(row) : mRows.getPath(row - mHeadSize);
+        }
+
+        @Override
+        public String getDisplayName(int row) {
+            return row < mHeadSize ? mHead.getDisplayName(row) : mRows.getDisplayName(row - mHeadSize);
+        }
+
+        @Override
+        public String getBucketId(int row) {
+            return row < mHeadSize ? mHead.getBucketId(row) : mRows.getBucketId(row - mHeadSize);
+        }
+
+        @Override
+        AtomicReferenceArray<Uri> uriCache() {
+            return mUris;
+        }
+
+        @Override
+        long now() {
+            return mNow;
+        }
+    }
+
+    /**
+     * 所有的列。数组的引用不会改变，扩容时创建新的Storage，已经创建的MediaTable继续使用原来的Storage
+     */
+    private static class Storage {
+        final long[] mIds;
+        final long[] mDateTaken;
+        final long[] mDateAdded;
+        final long[] mDates;
+        final byte[] mMimeCodes;
+        final int[] mWidths;
+        final int[] mHeights;
+        final long[] mSizes;
+        final long[] mDurations;
+        final double[] mLatitudes;
+        final double[] mLongitudes;
+        final String[] mPaths;
+        final String[] mDisplayNames;
+        final int[] mBucketRefs;
+        //缩略图Uri的缓存，可能在多个线程中同时写入
+        final AtomicReferenceArray<Uri> mUris;
+        //timeToMs使用的当前时间，整个MediaTable只取一次
+        final long mNow;
+
+        Storage(int capacity, long now) {
+            mIds = new long[capacity];
+            mDateTaken = new long[capacity];
+            mDateAdded = new long[capacity];
+            mDates = new long[capacity];
+            mMimeCodes = new byte[capacity];
+            mWidths = new int[capacity];
+            mHeights = new int[capacity];
+            mSizes = new long[capacity];
+            mDurations = new long[capacity];
+            mLatitudes = new double[capacity];
+            mLongitudes = new double[capacity];
+            mPaths = new String[capacity];
+            mDisplayNames = new String[capacity];
+            mBucketRefs = new int[capacity];
+            mUris = new AtomicReferenceArray<>(capacity);
+            mNow = now;
+        }
+
+        int capacity() {
+            return mIds.length;
+        }
+
+        /**
+         * 复制[0, used)到容量为capacity的新Storage
+         */
+        Storage grow(int used, int capacity) {
+            Storage s = new Storage(capacity, mNow);
+            System.arraycopy(mIds, 0, s.mIds, 0, used);
+            System.arraycopy(mDateTaken, 0, s.mDateTaken, 0, used);
+            System.arraycopy(mDateAdded, 0, s.mDateAdded, 0, used);
+            System.arraycopy(mDates, 0, s.mDates, 0, used);
+            System.arraycopy(mMimeCodes, 0, s.mMimeCodes, 0, used);
+            System.arraycopy(mWidths, 0, s.mWidths, 0, used);
+            System.arraycopy(mHeights, 0, s.mHeights, 0, used);
+            System.arraycopy(mSizes, 0, s.mSizes, 0, used);
+            System.arraycopy(mDurations, 0, s.mDurations, 0, used);
+            System.arraycopy(mLatitudes, 0, s.mLatitudes, 0, used);
+            System.arraycopy(mLongitudes, 0, s.mLongitudes, 0, used);
+            System.arraycopy(mPaths, 0, s.mPaths, 0, used);
+            System.arraycopy(mDisplayNames, 0, s.mDisplayNames, 0, used);
+            System.arraycopy(mBucketRefs, 0, s.mBucketRefs, 0, used);
+            for (int i = 0; i < used; i++) {
+                s.mUris.lazySet(i, mUris.get(i));
+            }
+            return s;
+        }
+    }
+
+    /**
+     * 冻结的字典，创建之后不再修改
+     */
+    private static class Dictionary {
+        final String[] mMimeTypes;
+        //字典中每一项的类型编码
+        final int[] mMimeTypeCodes;
+        //字典已满之后每一行的mime_type
+        final Map<Integer, String> mOverflowMimeTypes;
+        final String[] mBucketIds;
+
+        Dictionary(String[] mimeTypes, int[] mimeTypeCodes, Map<Integer, String> overflowMimeTypes,
+                   String[] bucketIds) {
+            mMimeTypes = mimeTypes;
+            mMimeTypeCodes = mimeTypeCodes;
+            mOverflowMimeTypes = overflowMimeTypes;
+            mBucketIds = bucketIds;
+        }
+    }
+
+    /**
+     * 写入数据。只会在最后追加数据，已经写入的数据不会再改变。
+     * 只在创建MediaTable的线程中使用，通过{@link #publish()}得到MediaTable之后才交给其他线程
+     */
+    private static class Columns {
+        private int mUsed;
+        private Storage mStorage;
+
+        //mime_type字典
+        private final List<String> mMimeTypes = new ArrayList<>();
+        private final Map<String, Integer> mMimeCodeMap = new HashMap<>();
+        private int[] mMimeTypeCodes = new int[8];
+        private final Map<Integer, String> mOverflowMimeTypes = new HashMap<>();
+        //bucket_id字典
+        private final List<String> mBucketIds = new ArrayList<>();
+        private final Map<String, Integer> mBucketRefMap = new HashMap<>();
+        //上一次冻结的字典，字典变化之后为null
+        private Dictionary mDictionary;
+
+        Columns(int capacity) {
+            mStorage = new Storage(capacity, System.currentTimeMillis());
+        }
+
+        /**
+         * 以当前写入的数据创建MediaTable
+         */
+        MediaTable publish() {
+            if (mDictionary == null) {
+                mDictionary = new Dictionary(mMimeTypes.toArray(new String[mMimeTypes.size()]),
+                        Arrays.copyOf(mMimeTypeCodes, mMimeTypes.size()),
+                        mOverflowMimeTypes.isEmpty() ? Collections.<Integer, String>emptyMap()
+                                : new HashMap<>(mOverflowMimeTypes),
+                        mBucketIds.toArray(new String[mBucketIds.size()]));
+            }
+            return new MediaTable(this, mStorage, mDictionary, mUsed);
+        }
+
+        void addAll(Cursor cursor) {
+            int idIndex = cursor.getColumnIndex(MediaStore.Files.FileColumns._ID);
+            int displayNameIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DISPLAY_NAME);
+            int mimeTypeIndex = cursor.getColumnIndex(MediaStore.MediaColumns.MIME_TYPE);
+            int sizeIndex = cursor.getColumnIndex(MediaStore.MediaColumns.SIZE);
+            int dateTakenIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN);
+            int dateAddedIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_ADDED);
+            int latitudeIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.LATITUDE);
+            int longitudeIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.LONGITUDE);
+            int widthIndex = cursor.getColumnIndex(MediaStore.MediaColumns.WIDTH);
+            int heightIndex = cursor.getColumnIndex(MediaStore.MediaColumns.HEIGHT);
+            int dataIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DATA);
+            int durationIndex = cursor.getColumnIndex("duration");
+            int bucketIdIndex = cursor.getColumnIndex("bucket_id");
+
+            ensureCapacity(mUsed + cursor.getCount());
+            Storage s = mStorage;
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                int row = mUsed++;
+                s.mIds[row] = cursor.getLong(idIndex);
+                s.mDisplayNames[row] = cursor.getString(displayNameIndex);
+                setMimeType(row, cursor.getString(mimeTypeIndex));
+                s.mSizes[row] = cursor.getLong(sizeIndex);
+                long dateTaken = cursor.getLong(dateTakenIndex);
+                long dateAdded = cursor.getLong(dateAddedIndex);
+                s.mDateTaken[row] = dateTaken;
+                s.mDateAdded[row] = dateAdded;
+                s.mDates[row] = DateTimeUtil.timeToMs(dateTaken != 0 ? dateTaken : dateAdded, s.mNow);
+                s.mLatitudes[row] = cursor.getDouble(latitudeIndex);
+                s.mLongitudes[row] = cursor.getDouble(longitudeIndex);
+                s.mWidths[row] = cursor.getInt(widthIndex);
+                s.mHeights[row] = cursor.getInt(heightIndex);
+                s.mPaths[row] = cursor.getString(dataIndex);
+                s.mDurations[row] = cursor.getLong(durationIndex);
+                s.mBucketRefs[row] = bucketIdIndex == -1 ? -1 : bucketRefOf(cursor.getString(bucketIdIndex));
+            }
+            cursor.moveToPosition(-1);
+        }
+
+        void addRows(MediaTable table, int from, int to) {
+            ensureCapacity(mUsed + to - from);
+            for (int i = from; i < to; i++) {
+                addRow(table, i);
+            }
+        }
+
+        void addRow(MediaTable table, int source) {
+            ensureCapacity(mUsed + 1);
+            Storage s = mStorage;
+            int row = mUsed++;
+            if (table.mColumns == this) {
+                //字典相同，直接复制下标
+                Storage c = table.mStorage;
+                s.mMimeCodes[row] = c.mMimeCodes[source];
+                if ((c.mMimeCodes[source] & 0xFF) == MIME_CODE_OVERFLOW) {
+                    mOverflowMimeTypes.put(row, table.getMimeType(source));
+                    mDictionary = null;
+                }
+                s.mBucketRefs[row] = c.mBucketRefs[source];
+            } else {
+                setMimeType(row, table.getMimeType(source));
+                s.mBucketRefs[row] = bucketRefOf(table.getBucketId(source));
+            }
+            s.mIds[row] = table.getId(source);
+            s.mDisplayNames[row] = table.getDisplayName(source);
+            s.mSizes[row] = table.getSize(source);
+            s.mDateTaken[row] = table.getDateTaken(source);
+            s.mDateAdded[row] = table.getDateAdded(source);
+            s.mDates[row] = table.getDate(source);
+            s.mLatitudes[row] = table.getLatitude(source);
+            s.mLongitudes[row] = table.getLongitude(source);
+            s.mWidths[row] = table.getWidth(source);
+            s.mHeights[row] = table.getHeight(source);
+            s.mPaths[row] = table.getPath(source);
+            s.mDurations[row] = table.getDuration(source);
+            s.mUris.lazySet(row, table.uriCache().get(source));
+        }
+
+        private void setMimeType(int row, String mimeType) {
+            Integer code = mMimeCodeMap.get(mimeType);
+            if (code == null) {
+                mDictionary = null;
+                if (mMimeTypes.size() == MIME_CODE_OVERFLOW) {
+                    //字典已满，只可能是非常规的数据
+                    mStorage.mMimeCodes[row] = (byte) MIME_CODE_OVERFLOW;
+                    mOverflowMimeTypes.put(row, mimeType);
+                    return;
+                }
+                code = mMimeTypes.size();
+                mMimeTypes.add(mimeType);
+                mMimeCodeMap.put(mimeType, code);
+                if (code == mMimeTypeCodes.length) {
+                    mMimeTypeCodes = Arrays.copyOf(mMimeTypeCodes, code * 2);
+                }
+                mMimeTypeCodes[code] = MimeType.codeOf(mimeType);
+            }
+            mStorage.mMimeCodes[row] = (byte) (int) code;
+        }
+
+        private int bucketRefOf(String bucketId) {
+            if (bucketId == null) {
+                return -1;
+            }
+            Integer ref = mBucketRefMap.get(bucketId);
+            if (ref == null) {
+                mDictionary = null;
+                ref = mBucketIds.size();
+                mBucketIds.add(bucketId);
+                mBucketRefMap.put(bucketId, ref);
+            }
+            return ref;
+        }
+
+        private void ensureCapacity(int capacity) {
+            int current = mStorage.capacity();
+            if (capacity <= current) {
+                return;
+            }
+            mStorage = mStorage.grow(mUsed, Math.max(capacity, current + (current >> 1)));
+        }
+    }
+}
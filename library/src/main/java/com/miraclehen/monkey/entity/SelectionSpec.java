@@ -25,9 +25,11 @@ import com.miraclehen.monkey.R;
 import com.miraclehen.monkey.engine.ImageEngine;
 import com.miraclehen.monkey.engine.impl.GlideEngine;
 import com.miraclehen.monkey.filter.Filter;
+import com.miraclehen.monkey.filter.QueryFilter;
 import com.miraclehen.monkey.listener.CatchSpecMediaItemCallback;
 import com.miraclehen.monkey.listener.InflateItemViewCallback;
 import com.miraclehen.monkey.listener.OnItemCheckChangeListener;
+import com.miraclehen.monkey.model.ResultStage;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -69,6 +71,16 @@ public final class SelectionSpec {
      */
     public List<Filter> filters;
 
+    /**
+     * 查询条件过滤器，不符合条件的数据不会被加载
+     */
+    public QueryFilter queryFilter;
+
+    /**
+     * 返回结果之前对每个选中数据执行的处理
+     */
+    public List<ResultStage> resultStages;
+
     /**
      * 拍摄类型，拍摄照片，录制视频，或者都不
      */
@@ -100,6 +112,28 @@ public final class SelectionSpec {
      */
     public boolean groupByDate;
 
+    /**
+     * 日期分组的粒度，由细到粗排列，第一个为初始粒度
+     * 有多个粒度时，可以在列表中双指缩放切换相邻的粒度。为null时按天分组
+     */
+    public List<DateGrouping> dateGroupings;
+
+    /**
+     * 是否在列表右侧显示可以拖动的时间轴
+     */
+    public boolean timelineScroller;
+
+    /**
+     * 日期视图是否以ItemDecoration的方式绘制并且吸顶
+     * 为true时适配器中只有数据，没有日期视图
+     */
+    public boolean stickyDateHeader;
+
+    /**
+     * 是否支持长按之后滑动多选
+     */
+    public boolean dragSelect;
+
     /**
      * 一行的item数量
      */
@@ -132,6 +166,12 @@ public final class SelectionSpec {
      */
     public CatchSpecMediaItemCallback.dateCallback catchDateSpecCallback;
 
+    /**
+     * 获取数据的日期区间，单位毫秒，包括两端
+     */
+    public long catchDateStart;
+    public long catchDateEnd;
+
     /**
      * 获取日期最新的一条数据MediaItem之后回调相应的方法
      */
@@ -148,6 +188,17 @@ public final class SelectionSpec {
      */
     public long autoScrollDate = 0;
 
+    /**
+     * 分页加载时每一页的数量
+     * 0为不分页，一次加载相册中的所有数据
+     */
+    public int pageSize;
+
+    /**
+     * 是否在缓存目录中保存媒体数据快照
+     * 下次打开时先显示快照，再在后台确认数据是否有变化
+     */
+    public boolean mediaSnapshot;
 
 
     private SelectionSpec() {
@@ -170,6 +221,8 @@ public final class SelectionSpec {
         countable = false;
         maxSelectable = 1;
         filters = null;
+        queryFilter = null;
+        resultStages = null;
         captureType = CaptureType.None;
         captureStrategy = null;
         captureFinishBack = false;
@@ -177,17 +230,32 @@ public final class SelectionSpec {
         thumbnailScale = 0.85f;
         imageEngine = new GlideEngine();
         groupByDate = true;
+        dateGroupings = null;
+        timelineScroller = false;
+        stickyDateHeader = false;
+        dragSelect = false;
         singleResultModel = false;
         toolbarLayoutId = -1;
         selectedDataList.clear();
         autoScrollDate = 0;
+        pageSize = 0;
+        mediaSnapshot = false;
 
         checkListener = null;
         catchDateSpecCallback = null;
+        catchDateStart = 0;
+        catchDateEnd = 0;
         catchNewestSpecCallback = null;
         inflateItemViewCallback = null;
     }
 
+    /**
+     * 初始的日期分组粒度
+     */
+    public DateGrouping getDefaultDateGrouping() {
+        return dateGroupings == null || dateGroupings.isEmpty() ? DateGrouping.DAY : dateGroupings.get(0);
+    }
+
     public boolean singleSelectionModeEnabled() {
         return !countable && maxSelectable == 1;
     }
@@ -0,0 +1,58 @@
+package com.miraclehen.monkey.entity;
+
+/**
+ * 从视频文件头中读取的信息
+ */
+public final class VideoMetadata {
+
+    /**
+     * 视频轨道的宽高，没有旋转之前，单位像素
+     */
+    public final int width;
+    public final int height;
+    /**
+     * 播放时顺时针旋转的角度，0、90、180或者270
+     */
+    public final int rotation;
+    /**
+     * 时长，单位毫秒
+     */
+    public final long duration;
+    /**
+     * 整个文件的平均码率，单位bit/s，由文件大小和时长计算
+     */
+    public final long bitrate;
+
+    public VideoMetadata(int width, int height, int rotation, long duration, long bitrate) {
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.duration = duration;
+        this.bitrate = bitrate;
+    }
+
+    /**
+     * 旋转之后显示的宽度
+     */
+    public int getDisplayWidth() {
+        return rotation % 180 == 0 ? width : height;
+    }
+
+    /**
+     * 旋转之后显示的高度
+     */
+    public int getDisplayHeight() {
+        return rotation % 180 == 0 ? height : width;
+    }
+
+    @Override
+    public String toString() {
+        return "VideoMetadata{" +
+                "width=" + width +
+                ", height=" + height +
+                ", rotation=" + rotation +
+                ", duration=" + duration +
+                ", bitrate=" + bitrate +
+                '}';
+    }
+}
@@ -20,6 +20,7 @@ import android.content.Context;
 import com.miraclehen.monkey.MimeType;
 import com.miraclehen.monkey.entity.IncapableCause;
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.utils.MimeTypeDetector;
 
 import java.util.Set;
 
@@ -47,7 +48,7 @@ public abstract class Filter {
     protected abstract Set<MimeType> constraintTypes();
 
     /**
-     * Invoked for filtering each item.
+     * Invoked for filtering each item. May be invoked concurrently from background threads.
      *
      * @return null if selectable, {@link IncapableCause} if not selectable.
      */
@@ -57,8 +58,17 @@ public abstract class Filter {
      * Whether an {@link MediaItem} need filtering.
      */
     protected boolean needFiltering(Context context, MediaItem item) {
+        MimeType mimeType = MimeType.fromCode(item.getMimeCode());
+        if (mimeType != null) {
+            //mime_type列可以确定类型时不需要查询ContentResolver
+            return constraintTypes().contains(mimeType);
+        }
+        mimeType = MimeTypeDetector.detect(context, item);
+        if (mimeType != null) {
+            return constraintTypes().contains(mimeType);
+        }
         for (MimeType type : constraintTypes()) {
-            if (type.checkType(context.getContentResolver(), item.getContentUri())) {
+            if (type.checkExtension(context.getContentResolver(), item.getContentUri())) {
                 return true;
             }
         }
@@ -0,0 +1,172 @@
+package com.miraclehen.monkey.filter;
+
+import android.provider.MediaStore;
+
+import com.miraclehen.monkey.loader.AlbumLoaderContants;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 查询条件过滤器
+ * <p>
+ * 与{@link Filter}不同，这里的条件在查询MediaStore时作为WHERE子句，不符合条件的数据不会被加载，
+ * 不会出现在列表中，也不计入相册的数量。只能使用MediaStore中已有的列，更复杂的判断仍然使用{@link Filter}。
+ * <p>
+ * 部分机型上MediaStore的width、height为0，设置了宽高的下限时这些数据也会被排除。
+ */
+public final class QueryFilter {
+
+    private long mMinSize;
+    private long mMaxSize = Long.MAX_VALUE;
+    private int mMinWidth;
+    private int mMaxWidth = Integer.MAX_VALUE;
+    private int mMinHeight;
+    private int mMaxHeight = Integer.MAX_VALUE;
+    private long mMaxVideoDuration = Long.MAX_VALUE;
+    private long mDateStart = Long.MIN_VALUE;
+    private long mDateEnd = Long.MAX_VALUE;
+    private final Set<String> mIncludedBuckets = new LinkedHashSet<>();
+    private final Set<String> mExcludedBuckets = new LinkedHashSet<>();
+
+    /**
+     * 文件大小的范围，包括两端
+     *
+     * @param minBytes 最小值，单位字节
+     * @param maxBytes 最大值，单位字节，不限制时传入{@link Long#MAX_VALUE}
+     */
+    public QueryFilter size(long minBytes, long maxBytes) {
+        mMinSize = minBytes;
+        mMaxSize = maxBytes;
+        return this;
+    }
+
+    /**
+     * 宽度的范围，包括两端，单位像素。不限制上限时传入{@link Filter#MAX}
+     */
+    public QueryFilter width(int min, int max) {
+        mMinWidth = min;
+        mMaxWidth = max;
+        return this;
+    }
+
+    /**
+     * 高度的范围，包括两端，单位像素。不限制上限时传入{@link Filter#MAX}
+     */
+    public QueryFilter height(int min, int max) {
+        mMinHeight = min;
+        mMaxHeight = max;
+        return this;
+    }
+
+    /**
+     * 视频的最大时长，包括此时长，对图片没有影响
+     *
+     * @param durationMs 单位毫秒
+     */
+    public QueryFilter maxVideoDuration(long durationMs) {
+        mMaxVideoDuration = durationMs;
+        return this;
+    }
+
+    /**
+     * 日期的范围，包括两端。与列表分组使用同一个日期：有拍摄日期时使用拍摄日期，否则使用添加日期
+     *
+     * @param startMs 开始时间，单位毫秒
+     * @param endMs   结束时间，单位毫秒
+     */
+    public QueryFilter date(long startMs, long endMs) {
+        mDateStart = startMs;
+        mDateEnd = endMs;
+        return this;
+    }
+
+    /**
+     * 只显示这些相册中的数据，可以多次调用
+     *
+     * @param bucketIds {@link com.miraclehen.monkey.entity.Album#getId()}
+     */
+    public QueryFilter includeBuckets(String... bucketIds) {
+        Collections.addAll(mIncludedBuckets, bucketIds);
+        return this;
+    }
+
+    /**
+     * 不显示这些相册中的数据，可以多次调用
+     *
+     * @param bucketIds {@link com.miraclehen.monkey.entity.Album#getId()}
+     */
+    public QueryFilter excludeBuckets(String... bucketIds) {
+        Collections.addAll(mExcludedBuckets, bucketIds);
+        return this;
+    }
+
+    /**
+     * 把条件追加到selection之后，只生成设置过的条件
+     *
+     * @param selection     原有的selection，条件以" AND "连接
+     * @param selectionArgs 原有的参数，条件的参数依次追加在后面
+     */
+    public void appendTo(StringBuilder selection, List<String> selectionArgs) {
+        if (mMinSize > 0) {
+            appendClause(selection, MediaStore.MediaColumns.SIZE + ">=?");
+            selectionArgs.add(String.valueOf(mMinSize));
+        }
+        if (mMaxSize != Long.MAX_VALUE) {
+            appendClause(selection, MediaStore.MediaColumns.SIZE + "<=?");
+            selectionArgs.add(String.valueOf(mMaxSize));
+        }
+        if (mMinWidth > 0) {
+            appendClause(selection, MediaStore.MediaColumns.WIDTH + ">=?");
+            selectionArgs.add(String.valueOf(mMinWidth));
+        }
+        if (mMaxWidth != Integer.MAX_VALUE) {
+            appendClause(selection, MediaStore.MediaColumns.WIDTH + "<=?");
+            selectionArgs.add(String.valueOf(mMaxWidth));
+        }
+        if (mMinHeight > 0) {
+            appendClause(selection, MediaStore.MediaColumns.HEIGHT + ">=?");
+            selectionArgs.add(String.valueOf(mMinHeight));
+        }
+        if (mMaxHeight != Integer.MAX_VALUE) {
+            appendClause(selection, MediaStore.MediaColumns.HEIGHT + "<=?");
+            selectionArgs.add(String.valueOf(mMaxHeight));
+        }
+        if (mMaxVideoDuration != Long.MAX_VALUE) {
+            appendClause(selection, "(" + MediaStore.Files.FileColumns.MEDIA_TYPE + "<>? OR duration<=?)");
+            selectionArgs.add(String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO));
+            selectionArgs.add(String.valueOf(mMaxVideoDuration));
+        }
+        //SORT_KEY是表达式，参数需要CAST，否则会按字符串比较
+        if (mDateStart != Long.MIN_VALUE) {
+            appendClause(selection, AlbumLoaderContants.SORT_KEY + ">=CAST(? AS INTEGER)");
+            selectionArgs.add(String.valueOf(mDateStart));
+        }
+        if (mDateEnd != Long.MAX_VALUE) {
+            appendClause(selection, AlbumLoaderContants.SORT_KEY + "<=CAST(? AS INTEGER)");
+            selectionArgs.add(String.valueOf(mDateEnd));
+        }
+        if (!mIncludedBuckets.isEmpty()) {
+            appendClause(selection, "bucket_id IN (" + placeholders(mIncludedBuckets.size()) + ")");
+            selectionArgs.addAll(mIncludedBuckets);
+        }
+        if (!mExcludedBuckets.isEmpty()) {
+            appendClause(selection, "bucket_id NOT IN (" + placeholders(mExcludedBuckets.size()) + ")");
+            selectionArgs.addAll(mExcludedBuckets);
+        }
+    }
+
+    private static void appendClause(StringBuilder selection, String clause) {
+        selection.append(" AND ").append(clause);
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.toString();
+    }
+}
@@ -1,11 +1,13 @@
 package com.miraclehen.monkey.listener;
 
+import android.content.Context;
 import android.database.Cursor;
 
 import com.miraclehen.monkey.entity.Album;
 import com.miraclehen.monkey.entity.MediaItem;
 import com.miraclehen.monkey.entity.SelectionSpec;
-import com.miraclehen.monkey.ui.adapter.CursorBean;
+import com.miraclehen.monkey.loader.DateRangeQuery;
+import com.miraclehen.monkey.ui.adapter.SectionIndex;
 
 import java.util.List;
 
@@ -18,9 +20,9 @@ public class CatchSpecCallbackInvoker {
     /**
      * 获取日期最新的一条数据
      * @param album
-     * @param dataList 排序之后的列表数据
+     * @param index 日期分组
      */
-    public static void invokeNewestCallback(Album album, List<CursorBean> dataList, Cursor cursor) {
+    public static void invokeNewestCallback(Album album, SectionIndex index, Cursor cursor) {
         SelectionSpec spec = SelectionSpec.getInstance();
         if (spec.catchNewestSpecCallback == null) {
             return;
@@ -32,27 +34,13 @@ public class CatchSpecCallbackInvoker {
             return;
         }
 
-        //最新一条数据的位置
-        int catchPos = 0;
-        if (spec.groupByDate) {
-            //跳过日期视图
-            catchPos++;
-            if (dataList.size() == catchPos) {
-                return;
-            }
-        }
-        if (spec.isCapture()) {
-            //跳过拍摄视图
-            catchPos++;
-            if (dataList.size() == catchPos) {
-                return;
-            }
-        }
-
-        int reachPos = dataList.get(catchPos).getCursorPosition();
-        if (reachPos == -1) {
+        //最新一条数据的位置，不包括日期视图，跳过拍摄视图
+        int catchPos = spec.isCapture() ? 1 : 0;
+        if (index.getDataCount() <= catchPos) {
             return;
         }
+
+        int reachPos = index.rowOfItem(catchPos);
         boolean reachable = cursor.moveToPosition(reachPos);
         if (reachable) {
             spec.catchNewestSpecCallback.catched(MediaItem.valueOf(cursor));
@@ -60,7 +48,29 @@ public class CatchSpecCallbackInvoker {
         spec.catchNewestSpecCallback = null;
     }
 
-    public static void invokeDateCallback(List<MediaItem> mediaItemList) {
+    /**
+     * 获取指定日期区间的数据
+     * 区间作为条件直接查询MediaStore，结果分批回调，只执行一次
+     */
+    public static void invokeDateCallback(Context context) {
+        SelectionSpec spec = SelectionSpec.getInstance();
+        final CatchSpecMediaItemCallback.dateCallback callback = spec.catchDateSpecCallback;
+        if (callback == null) {
+            return;
+        }
+        spec.catchDateSpecCallback = null;
+        DateRangeQuery.start(context, spec.catchDateStart, spec.catchDateEnd, new DateRangeQuery.Callback() {
+            @Override
+            public void onBatch(List<MediaItem> items) {
+                callback.catched(items);
+            }
 
+            @Override
+            public void onFinished(int total) {
+                if (callback instanceof CatchSpecMediaItemCallback.dateRangeCallback) {
+                    ((CatchSpecMediaItemCallback.dateRangeCallback) callback).finished(total);
+                }
+            }
+        });
     }
 }
@@ -22,10 +22,23 @@ public class CatchSpecMediaItemCallback {
 
     /**
      * 获取指定日期区间的数据
+     * 数据按日期倒序分批回调，每一批回调一次
      */
     public interface dateCallback{
         void catched(List<MediaItem> mediaItemList);
     }
 
+    /**
+     * 获取指定日期区间的数据，并且在所有批次回调之后得到通知
+     */
+    public interface dateRangeCallback extends dateCallback {
+        /**
+         * 所有数据都已经回调
+         *
+         * @param total 数据的总数
+         */
+        void finished(int total);
+    }
+
 
 }
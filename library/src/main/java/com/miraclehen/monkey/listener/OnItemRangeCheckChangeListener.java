@@ -0,0 +1,22 @@
+package com.miraclehen.monkey.listener;
+
+import com.miraclehen.monkey.entity.MediaItem;
+
+import java.util.List;
+
+/**
+ * 滑动多选时，每一帧的勾选变化合并成一次回调
+ * <p>
+ * 设置为{@link com.miraclehen.monkey.SelectionCreator#checkListener(OnItemCheckChangeListener)}时，
+ * 滑动多选不再逐个回调{@link #onCheck(MediaItem, boolean)}
+ */
+public interface OnItemRangeCheckChangeListener extends OnItemCheckChangeListener {
+
+    /**
+     * 一批Item的勾选状态发生变化
+     *
+     * @param checked   被勾选的Item，按勾选的顺序
+     * @param unchecked 取消勾选的Item
+     */
+    void onCheckRange(List<MediaItem> checked, List<MediaItem> unchecked);
+}
@@ -0,0 +1,217 @@
+package com.miraclehen.monkey.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.provider.MediaStore;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.entity.Album;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 相册索引
+ * <p>
+ * 只查询一次MediaStore，按日期倒序扫描所有数据，同时统计出每一本相册的数量、封面、最新日期以及图片和视频各自的数量。
+ * 不再依赖在selection中拼接") GROUP BY (bucket_id"，也不需要再遍历一遍结果来计算"所有相册"。
+ * <p>
+ * 扫描的结果会被缓存，{@link AlbumLoader}与{@link CaptureLoader}共用同一份索引，
+ * 在查询条件没有变化并且没有调用{@link #invalidate()}之前，不会再次查询MediaStore。
+ */
+public class AlbumIndex {
+
+    public static final String COLUMN_COVER_ID = "cover_id";
+    public static final String COLUMN_NEWEST_DATE = "newest_date";
+    public static final String COLUMN_IMAGE_COUNT = "image_count";
+    public static final String COLUMN_VIDEO_COUNT = "video_count";
+
+    /**
+     * 输出的cursor的列，{@link Album#valueOf(Cursor)}从这些列中读取数据
+     */
+    public static final String[] COLUMNS = {
+            MediaStore.Files.FileColumns._ID,
+            "bucket_id",
+            "bucket_display_name",
+            MediaStore.MediaColumns.DATA,
+            AlbumLoader.COLUMN_COUNT,
+            COLUMN_COVER_ID,
+            COLUMN_NEWEST_DATE,
+            COLUMN_IMAGE_COUNT,
+            COLUMN_VIDEO_COUNT};
+
+    private static final String[] PROJECTION = {
+            MediaStore.Files.FileColumns._ID,
+            "bucket_id",
+            "bucket_display_name",
+            MediaStore.MediaColumns.DATA,
+            MediaStore.Files.FileColumns.MEDIA_TYPE,
+            MediaStore.Images.ImageColumns.DATE_TAKEN,
+            MediaStore.Images.ImageColumns.DATE_ADDED};
+
+    private static final Object LOCK = new Object();
+    //缓存的索引，以及生成它时使用的查询条件
+    private static AlbumIndex sCachedIndex;
+    private static String sCachedKey;
+
+    //"所有相册"排在第一位，其他相册按最新日期倒序
+    private final List<Bucket> mBuckets;
+
+    private AlbumIndex(List<Bucket> buckets) {
+        mBuckets = buckets;
+    }
+
+    /**
+     * 获取相册索引。如果有可用的缓存则直接返回缓存
+     */
+    @WorkerThread
+    public static AlbumIndex obtain(Context context) {
+        AlbumMediaQuery query = AlbumMediaQuery.ofAll();
+        String key = query.selection + Arrays.toString(query.selectionArgs);
+        synchronized (LOCK) {
+            if (sCachedIndex != null && key.equals(sCachedKey)) {
+                return sCachedIndex;
+            }
+        }
+        AlbumIndex index = scan(context, query);
+        synchronized (LOCK) {
+            sCachedIndex = index;
+            sCachedKey = key;
+        }
+        return index;
+    }
+
+    /**
+     * 媒体库发生变化之后，丢弃缓存的索引
+     */
+    public static void invalidate() {
+        synchronized (LOCK) {
+            sCachedIndex = null;
+            sCachedKey = null;
+        }
+    }
+
+    /**
+     * 扫描一遍MediaStore，生成索引
+     */
+    @WorkerThread
+    private static AlbumIndex scan(Context context, AlbumMediaQuery query) {
+        Bucket all = new Bucket(Album.ALBUM_ID_ALL, Album.ALBUM_NAME_ALL);
+        List<Bucket> buckets = new ArrayList<>();
+        buckets.add(all);
+
+        Cursor cursor = context.getContentResolver().query(AlbumLoaderContants.QUERY_URI, PROJECTION,
+                query.selection, query.selectionArgs, AlbumLoaderContants.ORDER_BY);
+        if (cursor == null) {
+            return new AlbumIndex(buckets);
+        }
+        try {
+            int idIndex = cursor.getColumnIndex(MediaStore.Files.FileColumns._ID);
+            int bucketIdIndex = cursor.getColumnIndex("bucket_id");
+            int bucketNameIndex = cursor.getColumnIndex("bucket_display_name");
+            int dataIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DATA);
+            int mediaTypeIndex = cursor.getColumnIndex(MediaStore.Files.FileColumns.MEDIA_TYPE);
+            int dateTakenIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN);
+            int dateAddedIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_ADDED);
+
+            Map<String, Bucket> bucketMap = new HashMap<>();
+            while (cursor.moveToNext()) {
+                String bucketId = cursor.getString(bucketIdIndex);
+                Bucket bucket = bucketMap.get(bucketId);
+                if (bucket == null) {
+                    bucket = new Bucket(bucketId, cursor.getString(bucketNameIndex));
+                    bucketMap.put(bucketId, bucket);
+                    buckets.add(bucket);
+                }
+                //按日期倒序扫描，每本相册遇到的第一条数据就是封面
+                if (bucket.count == 0 || all.count == 0) {
+                    long id = cursor.getLong(idIndex);
+                    String path = cursor.getString(dataIndex);
+                    long dateTaken = cursor.getLong(dateTakenIndex);
+                    //与SORT_KEY一致，date_added的单位是秒
+                    long date = dateTaken == 0 ? cursor.getLong(dateAddedIndex) * 1000 : dateTaken;
+                    if (bucket.count == 0) {
+                        bucket.setCover(id, path, date);
+                    }
+                    if (all.count == 0) {
+                        all.setCover(id, path, date);
+                    }
+                }
+                boolean isVideo = cursor.getInt(mediaTypeIndex) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+                bucket.add(isVideo);
+                all.add(isVideo);
+            }
+        } finally {
+            cursor.close();
+        }
+        return new AlbumIndex(buckets);
+    }
+
+    /**
+     * 相册数量，包括"所有相册"
+     */
+    public int size() {
+        return mBuckets.size();
+    }
+
+    /**
+     * 生成供{@link Album#valueOf(Cursor)}以及{@link com.miraclehen.monkey.ui.adapter.AlbumsAdapter}使用的cursor。
+     * 每次调用都会返回一个新的cursor，可以交给Loader管理和关闭
+     */
+    public Cursor toCursor() {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, mBuckets.size());
+        for (Bucket bucket : mBuckets) {
+            cursor.addRow(new Object[]{
+                    bucket.isAll() ? Album.ALBUM_ID_ALL : String.valueOf(bucket.coverId),
+                    bucket.id,
+                    bucket.name,
+                    bucket.coverPath,
+                    bucket.count,
+                    bucket.coverId,
+                    bucket.newestDate,
+                    bucket.imageCount,
+                    bucket.videoCount});
+        }
+        return cursor;
+    }
+
+    private static class Bucket {
+        final String id;
+        final String name;
+        long coverId = -1;
+        String coverPath = "";
+        //封面数据的时间，单位毫秒
+        long newestDate;
+        int count;
+        int imageCount;
+        int videoCount;
+
+        Bucket(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        void setCover(long coverId, String coverPath, long newestDate) {
+            this.coverId = coverId;
+            this.coverPath = coverPath;
+            this.newestDate = newestDate;
+        }
+
+        void add(boolean isVideo) {
+            count++;
+            if (isVideo) {
+                videoCount++;
+            } else {
+                imageCount++;
+            }
+        }
+
+        boolean isAll() {
+            return Album.ALBUM_ID_ALL.equals(id);
+        }
+    }
+}
@@ -18,106 +18,31 @@ package com.miraclehen.monkey.loader;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.database.MatrixCursor;
-import android.database.MergeCursor;
-import android.net.Uri;
-import android.provider.MediaStore;
 import android.support.v4.content.CursorLoader;
 
-import com.miraclehen.monkey.entity.Album;
-import com.miraclehen.monkey.entity.SelectionSpec;
-
 
 /**
- * Load all albums (grouped by bucket_id) into a single cursor.
+ * Load all albums into a single cursor.
+ * The albums come from {@link AlbumIndex}, which scans MediaStore once and caches the result.
  */
 public class AlbumLoader extends CursorLoader {
     public static final String COLUMN_COUNT = "count";
-    private static final Uri QUERY_URI = MediaStore.Files.getContentUri("external");
-    private static final String[] COLUMNS = {
-            MediaStore.Files.FileColumns._ID,
-            "bucket_id",
-            "bucket_display_name",
-            MediaStore.MediaColumns.DATA,
-            MediaStore.Images.ImageColumns.LATITUDE,
-            MediaStore.Images.ImageColumns.LONGITUDE,
-            COLUMN_COUNT};
-    private static final String[] PROJECTION = {
-            MediaStore.Files.FileColumns._ID,
-            "bucket_id",
-            "bucket_display_name",
-            MediaStore.MediaColumns.DATA,
-            "COUNT(*) AS " + COLUMN_COUNT};
-
-    // === params for showSingleMediaType: false ===
-    private static final String SELECTION =
-            "(" + MediaStore.Files.FileColumns.MEDIA_TYPE + "=?"
-                    + " OR "
-                    + MediaStore.Files.FileColumns.MEDIA_TYPE + "=?)"
-                    + " AND " + MediaStore.MediaColumns.SIZE + ">0"
-                    + ") GROUP BY (bucket_id";
-    private static final String[] SELECTION_ARGS = {
-            String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE),
-            String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO),
-    };
-    // =============================================
 
-    // === params for showSingleMediaType: true ===
-    private static final String SELECTION_FOR_SINGLE_MEDIA_TYPE =
-            MediaStore.Files.FileColumns.MEDIA_TYPE + "=?"
-                    + " AND " + MediaStore.MediaColumns.SIZE + ">0"
-                    + ") GROUP BY (bucket_id";
-
-    private static String[] getSelectionArgsForSingleMediaType(int mediaType) {
-        return new String[]{String.valueOf(mediaType)};
-    }
-    // =============================================
-
-    private static final String BUCKET_ORDER_BY = "datetaken DESC";
-
-    private AlbumLoader(Context context, String selection, String[] selectionArgs) {
-        super(context, QUERY_URI, PROJECTION, selection, selectionArgs, BUCKET_ORDER_BY);
+    private AlbumLoader(Context context) {
+        super(context, AlbumLoaderContants.QUERY_URI, AlbumIndex.COLUMNS, null, null, null);
     }
 
     public static CursorLoader newInstance(Context context) {
-        String selection;
-        String[] selectionArgs;
-        if (SelectionSpec.getInstance().onlyShowImages()) {
-            selection = SELECTION_FOR_SINGLE_MEDIA_TYPE;
-            selectionArgs = getSelectionArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
-        } else if (SelectionSpec.getInstance().onlyShowVideos()) {
-            selection = SELECTION_FOR_SINGLE_MEDIA_TYPE;
-            selectionArgs = getSelectionArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO);
-        } else {
-            selection = SELECTION;
-            selectionArgs = SELECTION_ARGS;
-        }
-        return new AlbumLoader(context, selection, selectionArgs);
+        return new AlbumLoader(context);
     }
 
     @Override
     public Cursor loadInBackground() {
-        Cursor albums = super.loadInBackground();
-        MatrixCursor allAlbum = new MatrixCursor(COLUMNS);
-        int totalCount = 0;
-        String allAlbumCoverPath = "";
-        if (albums != null) {
-            while (albums.moveToNext()) {
-                totalCount += albums.getInt(albums.getColumnIndex(COLUMN_COUNT));
-            }
-            if (albums.moveToFirst()) {
-                allAlbumCoverPath = albums.getString(albums.getColumnIndex(MediaStore.MediaColumns.DATA));
-            }
-        }
-        allAlbum.addRow(new String[]{Album.ALBUM_ID_ALL, Album.ALBUM_ID_ALL, Album.ALBUM_NAME_ALL,
-                allAlbumCoverPath, Album.ALBUM_ID_ALL, Album.ALBUM_ID_ALL,
-                String.valueOf(totalCount)});
-
-        return new MergeCursor(new Cursor[]{allAlbum, albums});
+        return AlbumIndex.obtain(getContext()).toCursor();
     }
 
     @Override
     public void onContentChanged() {
-        // FIXME a dirty way to fix loading multiple times
+        // 媒体库变化时AlbumIndex会失效，下一次加载时重新生成
     }
 }
\ No newline at end of file
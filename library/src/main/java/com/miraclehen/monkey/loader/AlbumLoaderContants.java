@@ -22,7 +22,8 @@ public class AlbumLoaderContants {
             MediaStore.MediaColumns.WIDTH,
             MediaStore.MediaColumns.HEIGHT,
             MediaStore.MediaColumns.DATA,
-            "duration"};
+            "duration",
+            "bucket_id"};
 
     // === params for album ALL && showSingleMediaType: false ===
     public static final String SELECTION_ALL =
@@ -78,6 +79,47 @@ public class AlbumLoaderContants {
     // ===============================================================
 
     //    private static final String ORDER_BY = MediaStore.Images.Media.DATE_TAKEN + " DESC";
-    public static final String ORDER_BY = " CASE WHEN " + MediaStore.Images.Media.DATE_TAKEN + " == 0 "
-            + " THEN " + MediaStore.Images.Media.DATE_ADDED + " ELSE " + MediaStore.Images.Media.DATE_TAKEN + " END DESC ";
+    /**
+     * 排序使用的日期，单位毫秒。没有拍摄日期的数据使用添加日期，添加日期的单位是秒，需要换算成毫秒，
+     * 否则这些数据总是排在最后，与按天分组的顺序不一致
+     */
+    public static final String SORT_KEY = " CASE WHEN " + MediaStore.Images.Media.DATE_TAKEN + " == 0 "
+            + " THEN " + MediaStore.Images.Media.DATE_ADDED + " * 1000 ELSE " + MediaStore.Images.Media.DATE_TAKEN + " END ";
+    /**
+     * 加上_id保证同一时间的数据顺序稳定，与{@link #getPagedOrderBy(int)}以及增量合并时的查找一致
+     */
+    public static final String ORDER_BY = SORT_KEY + "DESC, " + MediaStore.Files.FileColumns._ID + " DESC ";
+
+    // === params for keyset paging ===
+    /**
+     * 分页加载时，默认一页的数量
+     */
+    public static final int DEFAULT_PAGE_SIZE = 240;
+
+    /**
+     * 分页排序。加上_id保证排序稳定，同一时间拍摄的数据不会在两页之间丢失或者重复
+     */
+    public static String getPagedOrderBy(int pageSize) {
+        return SORT_KEY + "DESC, " + MediaStore.Files.FileColumns._ID + " DESC LIMIT " + pageSize;
+    }
+
+    /**
+     * 在原有的selection上加上分页条件，只查询(sortKey, _id)之后的数据
+     * <p>
+     * SORT_KEY是表达式，没有INTEGER亲和性，参数需要CAST，否则会按字符串比较
+     */
+    public static String getPagedSelection(String selection) {
+        return "(" + selection + ") AND (" + SORT_KEY + "<CAST(? AS INTEGER) OR (" + SORT_KEY + "=CAST(? AS INTEGER) AND "
+                + MediaStore.Files.FileColumns._ID + "<?))";
+    }
+
+    public static String[] getPagedSelectionArgs(String[] selectionArgs, long sortKey, long id) {
+        String[] result = new String[selectionArgs.length + 3];
+        System.arraycopy(selectionArgs, 0, result, 0, selectionArgs.length);
+        result[selectionArgs.length] = String.valueOf(sortKey);
+        result[selectionArgs.length + 1] = String.valueOf(sortKey);
+        result[selectionArgs.length + 2] = String.valueOf(id);
+        return result;
+    }
+    // ================================
 }
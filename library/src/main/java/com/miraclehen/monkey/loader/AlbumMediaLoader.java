@@ -20,14 +20,16 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.database.MergeCursor;
-import android.provider.MediaStore;
 import android.support.v4.content.CursorLoader;
 
 import com.miraclehen.monkey.CaptureType;
 import com.miraclehen.monkey.entity.Album;
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
 import com.miraclehen.monkey.entity.SelectionSpec;
+import com.miraclehen.monkey.model.MediaChangeTracker;
 import com.miraclehen.monkey.utils.MediaStoreCompat;
+import com.miraclehen.monkey.utils.TaskExecutor;
 
 
 /**
@@ -38,79 +40,167 @@ public class AlbumMediaLoader extends CursorLoader {
 
 
     private CaptureType captureType;
+    /**
+     * 媒体数据快照，为null时不使用快照
+     */
+    private final MediaSnapshot mSnapshot;
+    /**
+     * 快照已经过期，重新加载时直接查询MediaStore
+     */
+    private volatile boolean mSkipSnapshot;
+    /**
+     * 调用者通过{@link MediaChangeTracker}增量更新快照之后的变化，不需要重新加载
+     */
+    private boolean mTrackChanges;
+    /**
+     * 最近一次返回快照时快照记录的状态，返回MediaStore的查询结果时为null
+     */
+    private volatile MediaSnapshot.Stamp mSnapshotStamp;
 
-    private AlbumMediaLoader(Context context, String selection, String[] selectionArgs,CaptureType capture) {
+    private AlbumMediaLoader(Context context, String selection, String[] selectionArgs, CaptureType capture,
+                             MediaSnapshot snapshot) {
         super(context, AlbumLoaderContants.QUERY_URI, AlbumLoaderContants.PROJECTION, selection, selectionArgs, AlbumLoaderContants.ORDER_BY);
         captureType = capture;
+        mSnapshot = snapshot;
     }
 
     public static CursorLoader newInstance(Context context, Album album, CaptureType captureType) {
-        String selection;
-        String[] selectionArgs;
-        CaptureType capture = CaptureType.None;
-        //所有相册
-        if (album.isAll()) {
-            if (SelectionSpec.getInstance().onlyShowImages()) {
-                //只有图片
-                selection = AlbumLoaderContants.SELECTION_ALL_FOR_SINGLE_MEDIA_TYPE;
-                selectionArgs = AlbumLoaderContants.getSelectionArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
-            } else if (SelectionSpec.getInstance().onlyShowVideos()) {
-                //只有视频
-                selection = AlbumLoaderContants.SELECTION_ALL_FOR_SINGLE_MEDIA_TYPE;
-                selectionArgs = AlbumLoaderContants.getSelectionArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO);
-            } else {
-                //包括图片和视频
-                selection = AlbumLoaderContants.SELECTION_ALL;
-                selectionArgs = AlbumLoaderContants.SELECTION_ALL_ARGS;
-            }
-            //如果是所有相册，可以出现拍摄图标功能
-            capture = captureType;
-        } else {
-            //单一相册
-            if (SelectionSpec.getInstance().onlyShowImages()) {
-                //单一相册中只有图片
-                selection = AlbumLoaderContants.SELECTION_ALBUM_FOR_SINGLE_MEDIA_TYPE;
-                selectionArgs = AlbumLoaderContants.getSelectionAlbumArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE,
-                        album.getId());
-            } else if (SelectionSpec.getInstance().onlyShowVideos()) {
-                //单一相册中只有视频
-                selection = AlbumLoaderContants.SELECTION_ALBUM_FOR_SINGLE_MEDIA_TYPE;
-                selectionArgs = AlbumLoaderContants.getSelectionAlbumArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO,
-                        album.getId());
-            } else {
-                //单一相册中包括图片和视频
-                selection = AlbumLoaderContants.SELECTION_ALBUM;
-                selectionArgs = AlbumLoaderContants.getSelectionAlbumArgs(album.getId());
-            }
-        }
-        return new AlbumMediaLoader(context, selection, selectionArgs, capture);
+        return newInstance(context, album, captureType, true, false);
+    }
+
+    /**
+     * @param useSnapshot   是否可以先显示上一次保存的快照。刚刚拍摄完成时快照一定已经过期，应该传入false
+     * @param trackChanges  调用者是否会以{@link #getSnapshotStamp()}为起点启动{@link MediaChangeTracker}。
+     *                      为false时快照过期之后重新加载
+     */
+    public static CursorLoader newInstance(Context context, Album album, CaptureType captureType, boolean useSnapshot,
+                                           boolean trackChanges) {
+        AlbumMediaQuery query = AlbumMediaQuery.of(album);
+        //如果是所有相册，可以出现拍摄图标功能
+        CaptureType capture = album.isAll() ? captureType : CaptureType.None;
+        //只为所有相册保存快照
+        MediaSnapshot snapshot = SelectionSpec.getInstance().mediaSnapshot && album.isAll()
+                ? new MediaSnapshot(context, query) : null;
+        AlbumMediaLoader loader = new AlbumMediaLoader(context, query.selection, query.selectionArgs, capture, snapshot);
+        loader.mSkipSnapshot = !useSnapshot;
+        loader.mTrackChanges = trackChanges;
+        return loader;
+    }
+
+    /**
+     * 最近一次返回的数据是快照时，快照记录的MediaStore状态，之后的变化需要增量更新
+     *
+     * @return 最近一次返回的是MediaStore的查询结果时返回null
+     */
+    public MediaSnapshot.Stamp getSnapshotStamp() {
+        return mSnapshotStamp;
     }
 
     @Override
     public Cursor loadInBackground() {
-        Cursor result = super.loadInBackground();
+        mSnapshotStamp = null;
+        if (mSnapshot == null) {
+            return toTableCursor(withCaptureItem(getContext(), super.loadInBackground(), captureType));
+        }
+        if (!mSkipSnapshot && mSnapshot.exists()) {
+            MediaSnapshotRows cached = mSnapshot.open();
+            if (cached != null) {
+                //先显示快照，再在后台确认快照是否过期。直接读取映射的数据，不复制到MediaTable的数组中
+                reconcileSnapshot(cached.getStamp());
+                mSnapshotStamp = cached.getStamp();
+                MediaTable head = MediaTable.from(withCaptureItem(getContext(), null, captureType));
+                return MediaTable.wrap(head, cached).asCursor();
+            }
+        }
+        //在查询之前获取状态，查询过程中发生的变化会在下一次打开时被发现
+        MediaSnapshot.Stamp stamp = mSnapshot.queryStamp(getContext());
+        Cursor cursor = super.loadInBackground();
+        if (cursor != null && stamp != null) {
+            mSnapshot.write(cursor, stamp);
+        }
+        return toTableCursor(withCaptureItem(getContext(), cursor, captureType));
+    }
+
+    /**
+     * 把查询结果读入{@link MediaTable}，并关闭原来的cursor。
+     * 之后适配器直接读取MediaTable中的数组，不再持有CursorWindow
+     *
+     * @param cursor 查询结果
+     * @return 读取MediaTable的cursor
+     */
+    static Cursor toTableCursor(Cursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return MediaTable.from(cursor).asCursor();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 比较快照与MediaStore的数量以及最大的date_modified。
+     * 调用者增量更新时只在无法查询状态时重新查询MediaStore，否则在不一致时重新查询
+     *
+     * @param stored 快照记录的状态
+     */
+    private void reconcileSnapshot(final MediaSnapshot.Stamp stored) {
+        final Context context = getContext();
+        TaskExecutor.executeOnIo(new Runnable() {
+            @Override
+            public void run() {
+                MediaSnapshot.Stamp current = mSnapshot.queryStamp(context);
+                if (current != null && (mTrackChanges || current.equals(stored))) {
+                    return;
+                }
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isStarted() && !isAbandoned()) {
+                            mSkipSnapshot = true;
+                            forceLoad();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 在数据的最前面加上拍照或者录像视图
+     *
+     * @param context
+     * @param result      查询结果，为null时只返回拍摄视图
+     * @param captureType 拍摄类型
+     * @return 如果不需要拍摄视图，直接返回result
+     */
+    static Cursor withCaptureItem(Context context, Cursor result, CaptureType captureType) {
         //手机没有拍照功能
-        if (!MediaStoreCompat.hasCameraFeature(getContext())) {
+        if (!MediaStoreCompat.hasCameraFeature(context)) {
             return result;
         }
-        if (captureType==CaptureType.None) {
+        if (captureType == CaptureType.None) {
             return result;
         }
         MatrixCursor dummy = new MatrixCursor(AlbumLoaderContants.PROJECTION);
         if (captureType == CaptureType.Image) {
             //添加拍照视图
             dummy.addRow(new Object[]{MediaItem.ITEM_ID_CAPTURE,
-                    MediaItem.ITEM_DISPLAY_NAME_CAPTURE, "", 0, System.currentTimeMillis(), System.currentTimeMillis(), 0D, 0D, 0L, 0L, "", 0});
+                    MediaItem.ITEM_DISPLAY_NAME_CAPTURE, "", 0, System.currentTimeMillis(), System.currentTimeMillis(), 0D, 0D, 0L, 0L, "", 0, null});
         } else {
             //添加录像视图
             dummy.addRow(new Object[]{MediaItem.ITEM_ID_RECORD,
-                    MediaItem.ITEM_DISPLAY_NAME_RECORD, "", 0, System.currentTimeMillis(), System.currentTimeMillis(), 0D, 0D, 0L, 0L, "", 0});
+                    MediaItem.ITEM_DISPLAY_NAME_RECORD, "", 0, System.currentTimeMillis(), System.currentTimeMillis(), 0D, 0D, 0L, 0L, "", 0, null});
+        }
+        if (result == null) {
+            return dummy;
         }
         return new MergeCursor(new Cursor[]{dummy, result});
     }
 
     @Override
     public void onContentChanged() {
-        // FIXME a dirty way to fix loading multiple times
+        // 媒体库的变化由MediaChangeTracker增量处理，不需要重新加载
     }
 }
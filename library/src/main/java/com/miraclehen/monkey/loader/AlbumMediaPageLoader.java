@@ -0,0 +1,90 @@
+package com.miraclehen.monkey.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.MediaStore;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.CaptureType;
+import com.miraclehen.monkey.entity.Album;
+
+/**
+ * 分页加载一本相册的内容
+ * <p>
+ * 使用(sortKey, _id)作为游标进行keyset分页，每一页只查询pageSize条数据，
+ * 不会像{@link AlbumMediaLoader}一样一次把整个媒体库读进同一个cursor。
+ * <p>
+ * 此类不是线程安全的，所有的load方法需要在同一个工作线程中调用。
+ */
+public class AlbumMediaPageLoader {
+
+    private final Context mContext;
+    private final AlbumMediaQuery mQuery;
+    private final CaptureType mCaptureType;
+    private final int mPageSize;
+
+    private boolean mFirstPage = true;
+    private boolean mHasMore = true;
+    //上一页最后一条数据的排序日期以及_id
+    private long mLastSortKey;
+    private long mLastId;
+
+    public AlbumMediaPageLoader(Context context, Album album, CaptureType captureType, int pageSize) {
+        mContext = context.getApplicationContext();
+        mQuery = AlbumMediaQuery.of(album);
+        mCaptureType = album.isAll() ? captureType : CaptureType.None;
+        mPageSize = pageSize > 0 ? pageSize : AlbumLoaderContants.DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * 加载下一页
+     *
+     * @return 下一页的数据，已经读入{@link com.miraclehen.monkey.entity.MediaTable}。第一页会包含拍摄视图。如果没有更多数据，返回null
+     */
+    @WorkerThread
+    public Cursor loadNextPage() {
+        if (!mHasMore) {
+            return null;
+        }
+        String selection;
+        String[] selectionArgs;
+        if (mFirstPage) {
+            selection = mQuery.selection;
+            selectionArgs = mQuery.selectionArgs;
+        } else {
+            selection = AlbumLoaderContants.getPagedSelection(mQuery.selection);
+            selectionArgs = AlbumLoaderContants.getPagedSelectionArgs(mQuery.selectionArgs, mLastSortKey, mLastId);
+        }
+        Cursor page = mContext.getContentResolver().query(AlbumLoaderContants.QUERY_URI,
+                AlbumLoaderContants.PROJECTION, selection, selectionArgs,
+                AlbumLoaderContants.getPagedOrderBy(mPageSize));
+        if (page == null) {
+            mHasMore = false;
+            return null;
+        }
+        int count = page.getCount();
+        mHasMore = count == mPageSize;
+        if (count > 0 && page.moveToLast()) {
+            long dateTaken = page.getLong(page.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN));
+            mLastSortKey = dateTaken == 0
+                    ? page.getLong(page.getColumnIndex(MediaStore.Images.ImageColumns.DATE_ADDED)) * 1000
+                    : dateTaken;
+            mLastId = page.getLong(page.getColumnIndex(MediaStore.Files.FileColumns._ID));
+        }
+        page.moveToPosition(-1);
+
+        if (mFirstPage) {
+            mFirstPage = false;
+            return AlbumMediaLoader.toTableCursor(AlbumMediaLoader.withCaptureItem(mContext, page, mCaptureType));
+        }
+        if (count == 0) {
+            page.close();
+            return null;
+        }
+        return AlbumMediaLoader.toTableCursor(page);
+    }
+
+    public boolean hasMore() {
+        return mHasMore;
+    }
+}
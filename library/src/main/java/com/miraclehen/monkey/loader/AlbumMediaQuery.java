@@ -0,0 +1,87 @@
+package com.miraclehen.monkey.loader;
+
+import android.provider.MediaStore;
+
+import com.miraclehen.monkey.entity.Album;
+import com.miraclehen.monkey.entity.SelectionSpec;
+import com.miraclehen.monkey.filter.QueryFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一本相册的查询条件
+ * <p>
+ * 根据相册以及{@link SelectionSpec}中的数据类型，生成查询MediaStore的selection和selectionArgs。
+ * 设置了{@link SelectionSpec#queryFilter}时，过滤条件也加在selection中。
+ * {@link AlbumMediaLoader}、{@link AlbumMediaPageLoader}以及{@link AlbumIndex}共用此条件。
+ */
+public class AlbumMediaQuery {
+
+    public final String selection;
+    public final String[] selectionArgs;
+
+    private AlbumMediaQuery(String selection, String[] selectionArgs) {
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+    }
+
+    /**
+     * 所有相册的查询条件
+     */
+    public static AlbumMediaQuery ofAll() {
+        return of(null);
+    }
+
+    /**
+     * @param album 为null时表示所有相册
+     */
+    public static AlbumMediaQuery of(Album album) {
+        String selection;
+        String[] selectionArgs;
+        SelectionSpec spec = SelectionSpec.getInstance();
+        //所有相册
+        if (album == null || album.isAll()) {
+            if (spec.onlyShowImages()) {
+                //只有图片
+                selection = AlbumLoaderContants.SELECTION_ALL_FOR_SINGLE_MEDIA_TYPE;
+                selectionArgs = AlbumLoaderContants.getSelectionArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
+            } else if (spec.onlyShowVideos()) {
+                //只有视频
+                selection = AlbumLoaderContants.SELECTION_ALL_FOR_SINGLE_MEDIA_TYPE;
+                selectionArgs = AlbumLoaderContants.getSelectionArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO);
+            } else {
+                //包括图片和视频
+                selection = AlbumLoaderContants.SELECTION_ALL;
+                selectionArgs = AlbumLoaderContants.SELECTION_ALL_ARGS;
+            }
+        } else {
+            //单一相册
+            if (spec.onlyShowImages()) {
+                //单一相册中只有图片
+                selection = AlbumLoaderContants.SELECTION_ALBUM_FOR_SINGLE_MEDIA_TYPE;
+                selectionArgs = AlbumLoaderContants.getSelectionAlbumArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE,
+                        album.getId());
+            } else if (spec.onlyShowVideos()) {
+                //单一相册中只有视频
+                selection = AlbumLoaderContants.SELECTION_ALBUM_FOR_SINGLE_MEDIA_TYPE;
+                selectionArgs = AlbumLoaderContants.getSelectionAlbumArgsForSingleMediaType(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO,
+                        album.getId());
+            } else {
+                //单一相册中包括图片和视频
+                selection = AlbumLoaderContants.SELECTION_ALBUM;
+                selectionArgs = AlbumLoaderContants.getSelectionAlbumArgs(album.getId());
+            }
+        }
+        QueryFilter filter = spec.queryFilter;
+        if (filter != null) {
+            StringBuilder builder = new StringBuilder("(").append(selection).append(")");
+            List<String> args = new ArrayList<>(Arrays.asList(selectionArgs));
+            filter.appendTo(builder, args);
+            selection = builder.toString();
+            selectionArgs = args.toArray(new String[args.size()]);
+        }
+        return new AlbumMediaQuery(selection, selectionArgs);
+    }
+}
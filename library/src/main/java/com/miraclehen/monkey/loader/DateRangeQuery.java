@@ -0,0 +1,152 @@
+package com.miraclehen.monkey.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.MediaStore;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 查询某个时间区间内的所有数据
+ * <p>
+ * 时间区间作为条件交给MediaStore，不遍历适配器中的数据。结果按日期倒序分批查询，
+ * 每一批在IO线程中查询完成之后在主线程中回调，下一批作为新的任务排在IO线程中，不会长时间占用IO线程，
+ * 也不会同时持有所有数据。
+ */
+public class DateRangeQuery {
+
+    /**
+     * 每一批的数量
+     */
+    public static final int BATCH_SIZE = 500;
+
+    /**
+     * 拍摄日期在区间内，或者没有拍摄日期时添加日期在区间内。添加日期的单位是秒
+     */
+    private static final String SELECTION_RANGE = "((" + MediaStore.Images.ImageColumns.DATE_TAKEN + " BETWEEN ? AND ?)"
+            + " OR (" + MediaStore.Images.ImageColumns.DATE_TAKEN + "=0 AND "
+            + MediaStore.MediaColumns.DATE_ADDED + " BETWEEN ? AND ?))";
+
+    private final Context mContext;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final Callback mCallback;
+    private volatile boolean mCanceled;
+    private int mTotal;
+
+    private DateRangeQuery(Context context, long start, long end, Callback callback) {
+        mContext = context.getApplicationContext();
+        mCallback = callback;
+        AlbumMediaQuery query = AlbumMediaQuery.ofAll();
+        mSelection = "(" + query.selection + ") AND " + SELECTION_RANGE;
+        int length = query.selectionArgs.length;
+        mSelectionArgs = new String[length + 4];
+        System.arraycopy(query.selectionArgs, 0, mSelectionArgs, 0, length);
+        mSelectionArgs[length] = String.valueOf(start);
+        mSelectionArgs[length + 1] = String.valueOf(end);
+        mSelectionArgs[length + 2] = String.valueOf(start / 1000);
+        mSelectionArgs[length + 3] = String.valueOf(end / 1000);
+    }
+
+    /**
+     * 开始查询，所有回调都在主线程中执行
+     *
+     * @param start    开始时间，单位毫秒，包括此时间
+     * @param end      结束时间，单位毫秒，包括此时间
+     * @param callback 回调
+     */
+    public static DateRangeQuery start(Context context, long start, long end, Callback callback) {
+        DateRangeQuery query = new DateRangeQuery(context, start, end, callback);
+        query.queryNext(false, 0, 0);
+        return query;
+    }
+
+    /**
+     * 取消查询，之后不再回调
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    /**
+     * 查询下一批
+     *
+     * @param paged   是否已经查询过至少一批
+     * @param sortKey 上一批最后一条数据的排序值
+     * @param id      上一批最后一条数据的_id
+     */
+    private void queryNext(final boolean paged, final long sortKey, final long id) {
+        TaskExecutor.executeOnIo(new Runnable() {
+            @Override
+            public void run() {
+                if (mCanceled) {
+                    return;
+                }
+                MediaTable table = queryBatch(paged, sortKey, id);
+                int count = table == null ? 0 : table.size();
+                final List<MediaItem> items = new ArrayList<>(count);
+                for (int row = 0; row < count; row++) {
+                    items.add(table.createItem(row));
+                }
+                final boolean hasMore = count == BATCH_SIZE;
+                if (hasMore) {
+                    queryNext(true, table.getSortKey(count - 1), table.getId(count - 1));
+                }
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCanceled) {
+                            return;
+                        }
+                        mTotal += items.size();
+                        if (!items.isEmpty()) {
+                            mCallback.onBatch(items);
+                        }
+                        if (!hasMore) {
+                            mCallback.onFinished(mTotal);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @WorkerThread
+    private MediaTable queryBatch(boolean paged, long sortKey, long id) {
+        String selection = paged ? AlbumLoaderContants.getPagedSelection(mSelection) : mSelection;
+        String[] selectionArgs = paged
+                ? AlbumLoaderContants.getPagedSelectionArgs(mSelectionArgs, sortKey, id) : mSelectionArgs;
+        Cursor cursor = mContext.getContentResolver().query(AlbumLoaderContants.QUERY_URI,
+                AlbumLoaderContants.PROJECTION, selection, selectionArgs,
+                AlbumLoaderContants.getPagedOrderBy(BATCH_SIZE));
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return MediaTable.from(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public interface Callback {
+
+        /**
+         * 查询到一批数据，按日期倒序
+         */
+        void onBatch(List<MediaItem> items);
+
+        /**
+         * 查询完成
+         *
+         * @param total 数据的总数
+         */
+        void onFinished(int total);
+    }
+}
@@ -0,0 +1,305 @@
+package com.miraclehen.monkey.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.MediaStore;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 媒体数据快照
+ * <p>
+ * 把一次完整查询的结果以紧凑的二进制格式保存在应用的缓存目录中。下一次打开时直接内存映射这个文件，
+ * 通过{@link MediaSnapshotRows}直接显示列表，不需要等待MediaStore的全量查询。
+ * 快照记录了生成时MediaStore的数量以及最大的date_modified，用来判断快照是否已经过期。
+ * <p>
+ * 文件格式：
+ * <pre>
+ * header : magic(int) version(int) rowCount(int) stampCount(int) stampMaxModified(long)
+ * records: rowCount * RECORD_SIZE，每条数据定长，字符串保存为字符串区的偏移
+ * strings: length(int) + UTF-8字节，相同的字符串（例如mime_type）只保存一次
+ * </pre>
+ */
+public class MediaSnapshot {
+
+    private static final String TAG = "MediaSnapshot";
+    private static final String DIR_NAME = "monkey_snapshot";
+
+    private static final int MAGIC = 0x4d4b534e;
+    //3: 数据按(sortKey, _id)排序
+    private static final int VERSION = 3;
+    static final int HEADER_SIZE = 24;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // === 每条数据的布局 ===
+    static final int OFFSET_ID = 0;
+    static final int OFFSET_DATE_TAKEN = 8;
+    static final int OFFSET_DATE_ADDED = 16;
+    static final int OFFSET_SIZE = 24;
+    static final int OFFSET_DURATION = 32;
+    static final int OFFSET_LATITUDE = 40;
+    static final int OFFSET_LONGITUDE = 48;
+    static final int OFFSET_WIDTH = 56;
+    static final int OFFSET_HEIGHT = 60;
+    static final int OFFSET_DISPLAY_NAME = 64;
+    static final int OFFSET_MIME_TYPE = 68;
+    static final int OFFSET_DATA = 72;
+    static final int OFFSET_BUCKET_ID = 76;
+    static final int RECORD_SIZE = 80;
+    // =====================
+
+    private static final String[] STAMP_PROJECTION = {
+            "COUNT(*)",
+            "MAX(" + MediaStore.MediaColumns.DATE_MODIFIED + ")"};
+
+    private final File mFile;
+    private final AlbumMediaQuery mQuery;
+
+    public MediaSnapshot(Context context, AlbumMediaQuery query) {
+        mQuery = query;
+        String key = query.selection + Arrays.toString(query.selectionArgs);
+        File dir = new File(context.getCacheDir(), DIR_NAME);
+        mFile = new File(dir, Integer.toHexString(key.hashCode()) + ".snap");
+    }
+
+    public boolean exists() {
+        return mFile.exists();
+    }
+
+    /**
+     * 查询MediaStore当前的数量以及最大的date_modified
+     *
+     * @return 查询失败时返回null
+     */
+    @WorkerThread
+    @Nullable
+    public Stamp queryStamp(Context context) {
+        return queryStamp(context, mQuery);
+    }
+
+    /**
+     * 查询MediaStore当前符合查询条件的数量以及最大的date_modified
+     *
+     * @return 查询失败时返回null
+     */
+    @WorkerThread
+    @Nullable
+    public static Stamp queryStamp(Context context, AlbumMediaQuery query) {
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(AlbumLoaderContants.QUERY_URI, STAMP_PROJECTION,
+                    query.selection, query.selectionArgs, null);
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            return new Stamp(cursor.getInt(0), cursor.getLong(1));
+        } catch (RuntimeException e) {
+            //部分机型不支持在projection中使用聚合函数
+            Log.w(TAG, "query stamp failed", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * 内存映射快照文件
+     *
+     * @return 文件不存在或者已经损坏时返回null
+     */
+    @WorkerThread
+    @Nullable
+    public MediaSnapshotRows open() {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                delete();
+                return null;
+            }
+            int rowCount = buffer.getInt(8);
+            if (rowCount < 0 || (long) HEADER_SIZE + (long) rowCount * RECORD_SIZE > buffer.capacity()) {
+                delete();
+                return null;
+            }
+            return new MediaSnapshotRows(buffer, rowCount, new Stamp(buffer.getInt(12), buffer.getLong(16)));
+        } catch (IOException e) {
+            Log.w(TAG, "open snapshot failed", e);
+            return null;
+        } finally {
+            //映射之后关闭文件不影响已经映射的内存
+            closeQuietly(file);
+        }
+    }
+
+    /**
+     * 把查询结果写入快照。先写入临时文件，完成之后再替换，读取的一方不会读到写了一半的文件
+     *
+     * @param cursor 查询结果，列必须与{@link AlbumLoaderContants#PROJECTION}一致。写入之后cursor位于-1
+     * @param stamp  查询之前得到的MediaStore状态
+     */
+    @WorkerThread
+    public void write(Cursor cursor, Stamp stamp) {
+        File dir = mFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        //每次写入使用不同的临时文件，同时写入同一个快照时不会互相覆盖
+        File tmp;
+        try {
+            tmp = File.createTempFile(mFile.getName(), ".tmp", dir);
+        } catch (IOException e) {
+            Log.w(TAG, "create snapshot temp file failed", e);
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(cursor.getCount());
+            out.writeInt(stamp.count);
+            out.writeLong(stamp.maxDateModified);
+
+            int idIndex = cursor.getColumnIndex(MediaStore.Files.FileColumns._ID);
+            int displayNameIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DISPLAY_NAME);
+            int mimeTypeIndex = cursor.getColumnIndex(MediaStore.MediaColumns.MIME_TYPE);
+            int sizeIndex = cursor.getColumnIndex(MediaStore.MediaColumns.SIZE);
+            int dateTakenIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN);
+            int dateAddedIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_ADDED);
+            int latitudeIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.LATITUDE);
+            int longitudeIndex = cursor.getColumnIndex(MediaStore.Images.ImageColumns.LONGITUDE);
+            int widthIndex = cursor.getColumnIndex(MediaStore.MediaColumns.WIDTH);
+            int heightIndex = cursor.getColumnIndex(MediaStore.MediaColumns.HEIGHT);
+            int dataIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DATA);
+            int durationIndex = cursor.getColumnIndex("duration");
+            int bucketIdIndex = cursor.getColumnIndex("bucket_id");
+
+            StringTable strings = new StringTable();
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                out.writeLong(cursor.getLong(idIndex));
+                out.writeLong(cursor.getLong(dateTakenIndex));
+                out.writeLong(cursor.getLong(dateAddedIndex));
+                out.writeLong(cursor.getLong(sizeIndex));
+                out.writeLong(cursor.getLong(durationIndex));
+                out.writeDouble(cursor.getDouble(latitudeIndex));
+                out.writeDouble(cursor.getDouble(longitudeIndex));
+                out.writeInt(cursor.getInt(widthIndex));
+                out.writeInt(cursor.getInt(heightIndex));
+                out.writeInt(strings.offsetOf(cursor.getString(displayNameIndex)));
+                out.writeInt(strings.offsetOf(cursor.getString(mimeTypeIndex)));
+                out.writeInt(strings.offsetOf(cursor.getString(dataIndex)));
+                out.writeInt(strings.offsetOf(cursor.getString(bucketIdIndex)));
+            }
+            cursor.moveToPosition(-1);
+            strings.writeTo(out);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(mFile)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "write snapshot failed", e);
+        } finally {
+            closeQuietly(out);
+            //重命名成功之后临时文件已经不存在
+            tmp.delete();
+        }
+    }
+
+    public void delete() {
+        mFile.delete();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 字符串区。相同的字符串只保存一次
+     */
+    private static class StringTable {
+        private final ByteArrayOutputStream mBytes = new ByteArrayOutputStream(64 * 1024);
+        private final Map<String, Integer> mOffsets = new HashMap<>();
+
+        int offsetOf(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer offset = mOffsets.get(value);
+            if (offset != null) {
+                return offset;
+            }
+            int result = mBytes.size();
+            byte[] bytes = value.getBytes(UTF_8);
+            byte[] length = ByteBuffer.allocate(4).putInt(bytes.length).array();
+            mBytes.write(length, 0, length.length);
+            mBytes.write(bytes, 0, bytes.length);
+            mOffsets.put(value, result);
+            return result;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            mBytes.writeTo(out);
+        }
+    }
+
+    /**
+     * MediaStore的状态：数量以及最大的date_modified
+     */
+    public static class Stamp {
+        public final int count;
+        public final long maxDateModified;
+
+        public Stamp(int count, long maxDateModified) {
+            this.count = count;
+            this.maxDateModified = maxDateModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Stamp stamp = (Stamp) o;
+            return count == stamp.count && maxDateModified == stamp.maxDateModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * count + (int) (maxDateModified ^ (maxDateModified >>> 32));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.miraclehen.monkey.loader;
+
+import com.miraclehen.monkey.MimeType;
+import com.miraclehen.monkey.entity.MediaTable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 直接读取内存映射的{@link MediaSnapshot}
+ * <p>
+ * 通过{@link MediaTable#wrap(MediaTable, MediaTable.Rows)}交给适配器使用。数据不会被复制到数组或者CursorWindow中，
+ * 只有访问到的那一部分才会被读入内存；字符串在访问时才解码。
+ * <p>
+ * 只使用绝对位置的读取，不改变ByteBuffer的position，可以在多个线程中同时读取。
+ */
+public class MediaSnapshotRows implements MediaTable.Rows {
+
+    private static final MimeEntry[] NO_MIME_ENTRIES = new MimeEntry[0];
+
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final int mStringsStart;
+    //生成快照时MediaStore的状态
+    private final MediaSnapshot.Stamp mStamp;
+
+    //mime_type的取值很少，按字符串区的偏移缓存解码的结果以及类型编码。只在加锁时替换为新的数组
+    private volatile MimeEntry[] mMimeEntries = NO_MIME_ENTRIES;
+
+    MediaSnapshotRows(ByteBuffer buffer, int count, MediaSnapshot.Stamp stamp) {
+        mBuffer = buffer;
+        mCount = count;
+        mStamp = stamp;
+        mStringsStart = MediaSnapshot.HEADER_SIZE + count * MediaSnapshot.RECORD_SIZE;
+    }
+
+    /**
+     * 生成快照时MediaStore的数量以及最大的date_modified，作为增量更新的起点
+     */
+    public MediaSnapshot.Stamp getStamp() {
+        return mStamp;
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    private int fieldOffset(int row, int offset) {
+        if (row < 0 || row >= mCount) {
+            throw new IndexOutOfBoundsException("row " + row + ", size " + mCount);
+        }
+        return MediaSnapshot.HEADER_SIZE + row * MediaSnapshot.RECORD_SIZE + offset;
+    }
+
+    @Override
+    public long getId(int row) {
+        return mBuffer.getLong(fieldOffset(row, MediaSnapshot.OFFSET_ID));
+    }
+
+    @Override
+    public long getDateTaken(int row) {
+        return mBuffer.getLong(fieldOffset(row, MediaSnapshot.OFFSET_DATE_TAKEN));
+    }
+
+    @Override
+    public long getDateAdded(int row) {
+        return mBuffer.getLong(fieldOffset(row, MediaSnapshot.OFFSET_DATE_ADDED));
+    }
+
+    @Override
+    public String getMimeType(int row) {
+        return mimeEntryOf(row).mimeType;
+    }
+
+    @Override
+    public int getMimeCode(int row) {
+        return mimeEntryOf(row).code;
+    }
+
+    @Override
+    public int getWidth(int row) {
+        return mBuffer.getInt(fieldOffset(row, MediaSnapshot.OFFSET_WIDTH));
+    }
+
+    @Override
+    public int getHeight(int row) {
+        return mBuffer.getInt(fieldOffset(row, MediaSnapshot.OFFSET_HEIGHT));
+    }
+
+    @Override
+    public long getSize(int row) {
+        return mBuffer.getLong(fieldOffset(row, MediaSnapshot.OFFSET_SIZE));
+    }
+
+    @Override
+    public long getDuration(int row) {
+        return mBuffer.getLong(fieldOffset(row, MediaSnapshot.OFFSET_DURATION));
+    }
+
+    @Override
+    public double getLatitude(int row) {
+        return mBuffer.getDouble(fieldOffset(row, MediaSnapshot.OFFSET_LATITUDE));
+    }
+
+    @Override
+    public double getLongitude(int row) {
+        return mBuffer.getDouble(fieldOffset(row, MediaSnapshot.OFFSET_LONGITUDE));
+    }
+
+    @Override
+    public String getPath(int row) {
+        return readString(mBuffer.getInt(fieldOffset(row, MediaSnapshot.OFFSET_DATA)));
+    }
+
+    @Override
+    public String getDisplayName(int row) {
+        return readString(mBuffer.getInt(fieldOffset(row, MediaSnapshot.OFFSET_DISPLAY_NAME)));
+    }
+
+    @Override
+    public String getBucketId(int row) {
+        return readString(mBuffer.getInt(fieldOffset(row, MediaSnapshot.OFFSET_BUCKET_ID)));
+    }
+
+    private MimeEntry mimeEntryOf(int row) {
+        int offset = mBuffer.getInt(fieldOffset(row, MediaSnapshot.OFFSET_MIME_TYPE));
+        MimeEntry entry = findMimeEntry(mMimeEntries, offset);
+        if (entry != null) {
+            return entry;
+        }
+        synchronized (this) {
+            MimeEntry[] entries = mMimeEntries;
+            entry = findMimeEntry(entries, offset);
+            if (entry == null) {
+                String mimeType = readString(offset);
+                entry = new MimeEntry(offset, mimeType, MimeType.codeOf(mimeType));
+                MimeEntry[] grown = Arrays.copyOf(entries, entries.length + 1);
+                grown[entries.length] = entry;
+                mMimeEntries = grown;
+            }
+            return entry;
+        }
+    }
+
+    private static MimeEntry findMimeEntry(MimeEntry[] entries, int offset) {
+        for (MimeEntry entry : entries) {
+            if (entry.offset == offset) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param offset 在字符串区中的偏移，小于0表示null
+     * @return 偏移超出文件范围时返回null
+     */
+    private String readString(int offset) {
+        if (offset < 0) {
+            return null;
+        }
+        long start = (long) mStringsStart + offset;
+        if (start + 4 > mBuffer.capacity()) {
+            return null;
+        }
+        int length = mBuffer.getInt((int) start);
+        if (length < 0 || start + 4 + length > mBuffer.capacity()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = mBuffer.duplicate();
+        duplicate.position((int) start + 4);
+        duplicate.get(bytes);
+        return new String(bytes, MediaSnapshot.UTF_8);
+    }
+
+    private static class MimeEntry {
+        final int offset;
+        final String mimeType;
+        final int code;
+
+        MimeEntry(int offset, String mimeType, int code) {
+            this.offset = offset;
+            this.mimeType = mimeType;
+            this.code = code;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.miraclehen.monkey.loader;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.provider.MediaStore;
+
+import com.miraclehen.monkey.entity.MediaTable;
+
+/**
+ * 读取{@link MediaTable}的cursor
+ * <p>
+ * 列与{@link AlbumLoaderContants#PROJECTION}一致。Loader在后台线程中把查询结果读入MediaTable之后，
+ * 以此cursor的形式交给使用cursor的地方；适配器等可以通过{@link #getTable()}直接读取数组。
+ */
+public class MediaTableCursor extends AbstractCursor {
+
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_DISPLAY_NAME = 1;
+    private static final int COLUMN_MIME_TYPE = 2;
+    private static final int COLUMN_SIZE = 3;
+    private static final int COLUMN_DATE_TAKEN = 4;
+    private static final int COLUMN_DATE_ADDED = 5;
+    private static final int COLUMN_LATITUDE = 6;
+    private static final int COLUMN_LONGITUDE = 7;
+    private static final int COLUMN_WIDTH = 8;
+    private static final int COLUMN_HEIGHT = 9;
+    private static final int COLUMN_DATA = 10;
+    private static final int COLUMN_DURATION = 11;
+    private static final int COLUMN_BUCKET_ID = 12;
+
+    //每一列对应的字段，下标与PROJECTION一致
+    private static final int[] COLUMN_FIELDS;
+
+    static {
+        String[] columns = AlbumLoaderContants.PROJECTION;
+        COLUMN_FIELDS = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i];
+            int field;
+            if (MediaStore.Files.FileColumns._ID.equals(column)) {
+                field = COLUMN_ID;
+            } else if (MediaStore.MediaColumns.DISPLAY_NAME.equals(column)) {
+                field = COLUMN_DISPLAY_NAME;
+            } else if (MediaStore.MediaColumns.MIME_TYPE.equals(column)) {
+                field = COLUMN_MIME_TYPE;
+            } else if (MediaStore.MediaColumns.SIZE.equals(column)) {
+                field = COLUMN_SIZE;
+            } else if (MediaStore.Images.ImageColumns.DATE_TAKEN.equals(column)) {
+                field = COLUMN_DATE_TAKEN;
+            } else if (MediaStore.Images.ImageColumns.DATE_ADDED.equals(column)) {
+                field = COLUMN_DATE_ADDED;
+            } else if (MediaStore.Images.ImageColumns.LATITUDE.equals(column)) {
+                field = COLUMN_LATITUDE;
+            } else if (MediaStore.Images.ImageColumns.LONGITUDE.equals(column)) {
+                field = COLUMN_LONGITUDE;
+            } else if (MediaStore.MediaColumns.WIDTH.equals(column)) {
+                field = COLUMN_WIDTH;
+            } else if (MediaStore.MediaColumns.HEIGHT.equals(column)) {
+                field = COLUMN_HEIGHT;
+            } else if (MediaStore.MediaColumns.DATA.equals(column)) {
+                field = COLUMN_DATA;
+            } else if ("duration".equals(column)) {
+                field = COLUMN_DURATION;
+            } else if ("bucket_id".equals(column)) {
+                field = COLUMN_BUCKET_ID;
+            } else {
+                throw new IllegalStateException("media table does not contain column " + column);
+            }
+            COLUMN_FIELDS[i] = field;
+        }
+    }
+
+    private final MediaTable mTable;
+
+    public MediaTableCursor(MediaTable table) {
+        mTable = table;
+    }
+
+    public MediaTable getTable() {
+        return mTable;
+    }
+
+    @Override
+    public int getCount() {
+        return mTable.size();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return AlbumLoaderContants.PROJECTION;
+    }
+
+    private int row() {
+        checkPosition();
+        return getPosition();
+    }
+
+    @Override
+    public String getString(int column) {
+        int row = row();
+        switch (COLUMN_FIELDS[column]) {
+            case COLUMN_DISPLAY_NAME:
+                return mTable.getDisplayName(row);
+            case COLUMN_MIME_TYPE:
+                return mTable.getMimeType(row);
+            case COLUMN_DATA:
+                return mTable.getPath(row);
+            case COLUMN_BUCKET_ID:
+                return mTable.getBucketId(row);
+            case COLUMN_LATITUDE:
+            case COLUMN_LONGITUDE:
+                return String.valueOf(getDouble(column));
+            default:
+                return String.valueOf(getLong(column));
+        }
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        int row = row();
+        switch (COLUMN_FIELDS[column]) {
+            case COLUMN_ID:
+                return mTable.getId(row);
+            case COLUMN_SIZE:
+                return mTable.getSize(row);
+            case COLUMN_DATE_TAKEN:
+                return mTable.getDateTaken(row);
+            case COLUMN_DATE_ADDED:
+                return mTable.getDateAdded(row);
+            case COLUMN_WIDTH:
+                return mTable.getWidth(row);
+            case COLUMN_HEIGHT:
+                return mTable.getHeight(row);
+            case COLUMN_DURATION:
+                return mTable.getDuration(row);
+            case COLUMN_LATITUDE:
+            case COLUMN_LONGITUDE:
+                return (long) getDouble(column);
+            default:
+                String value = getString(column);
+                return value == null ? 0 : Long.parseLong(value);
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        int row = row();
+        switch (COLUMN_FIELDS[column]) {
+            case COLUMN_LATITUDE:
+                return mTable.getLatitude(row);
+            case COLUMN_LONGITUDE:
+                return mTable.getLongitude(row);
+            case COLUMN_DISPLAY_NAME:
+            case COLUMN_MIME_TYPE:
+            case COLUMN_DATA:
+            case COLUMN_BUCKET_ID:
+                String value = getString(column);
+                return value == null ? 0 : Double.parseDouble(value);
+            default:
+                return getLong(column);
+        }
+    }
+
+    @Override
+    public int getType(int column) {
+        switch (COLUMN_FIELDS[column]) {
+            case COLUMN_DISPLAY_NAME:
+            case COLUMN_MIME_TYPE:
+            case COLUMN_DATA:
+            case COLUMN_BUCKET_ID:
+                return isNull(column) ? Cursor.FIELD_TYPE_NULL : Cursor.FIELD_TYPE_STRING;
+            case COLUMN_LATITUDE:
+            case COLUMN_LONGITUDE:
+                return Cursor.FIELD_TYPE_FLOAT;
+            default:
+                return Cursor.FIELD_TYPE_INTEGER;
+        }
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        switch (COLUMN_FIELDS[column]) {
+            case COLUMN_DISPLAY_NAME:
+            case COLUMN_MIME_TYPE:
+            case COLUMN_DATA:
+            case COLUMN_BUCKET_ID:
+                return getString(column) == null;
+            default:
+                return false;
+        }
+    }
+}
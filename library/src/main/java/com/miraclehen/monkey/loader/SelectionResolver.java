@@ -0,0 +1,167 @@
+package com.miraclehen.monkey.loader;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.MediaStore;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 在媒体库中查找用户传入的已选中数据
+ * <p>
+ * 先按_id查找，没有_id或者_id已经失效的再按路径查找。每次最多查询{@link #BATCH_SIZE}个，
+ * 以IN (...)作为条件交给MediaStore，不遍历相册中的数据。查询在IO线程中执行，结果在主线程中回调。
+ */
+public class SelectionResolver {
+
+    /**
+     * 每次查询的数量，不超过SQLite参数数量的上限
+     */
+    public static final int BATCH_SIZE = 500;
+
+    private final Context mContext;
+    private final List<MediaItem> mItems;
+    private final Callback mCallback;
+    private volatile boolean mCanceled;
+
+    private SelectionResolver(Context context, List<MediaItem> items, Callback callback) {
+        mContext = context.getApplicationContext();
+        mItems = new ArrayList<>(items);
+        mCallback = callback;
+    }
+
+    /**
+     * 开始查找
+     *
+     * @param items    用户传入的已选中数据
+     * @param callback 在主线程中回调
+     */
+    public static SelectionResolver start(Context context, List<MediaItem> items, Callback callback) {
+        final SelectionResolver resolver = new SelectionResolver(context, items, callback);
+        TaskExecutor.executeOnIo(new Runnable() {
+            @Override
+            public void run() {
+                resolver.resolve();
+            }
+        });
+        return resolver;
+    }
+
+    /**
+     * 取消查找，之后不再回调
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    @WorkerThread
+    private void resolve() {
+        int size = mItems.size();
+        final MediaItem[] resolved = new MediaItem[size];
+
+        //按_id查找
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (mItems.get(i).getId() > 0) {
+                ids.add(String.valueOf(mItems.get(i).getId()));
+            }
+        }
+        HashMap<String, MediaItem> byId = query(MediaStore.Files.FileColumns._ID, ids, true);
+        //没有找到的按路径查找
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < size && !mCanceled; i++) {
+            MediaItem item = mItems.get(i);
+            if (item.getId() > 0) {
+                resolved[i] = byId.get(String.valueOf(item.getId()));
+            }
+            if (resolved[i] == null && item.getOriginalPath() != null) {
+                paths.add(item.getOriginalPath());
+            }
+        }
+        HashMap<String, MediaItem> byPath = query(MediaStore.MediaColumns.DATA, paths, false);
+        for (int i = 0; i < size; i++) {
+            if (resolved[i] == null && mItems.get(i).getOriginalPath() != null) {
+                resolved[i] = byPath.get(mItems.get(i).getOriginalPath());
+            }
+        }
+
+        TaskExecutor.postToMain(new Runnable() {
+            @Override
+            public void run() {
+                if (mCanceled) {
+                    return;
+                }
+                List<MediaItem> matched = new ArrayList<>();
+                List<MediaItem> unmatched = new ArrayList<>();
+                for (int i = 0; i < resolved.length; i++) {
+                    if (resolved[i] != null) {
+                        matched.add(resolved[i]);
+                    } else {
+                        unmatched.add(mItems.get(i));
+                    }
+                }
+                mCallback.onResolved(matched, unmatched);
+            }
+        });
+    }
+
+    /**
+     * 分批查询某一列的值在keys中的数据
+     *
+     * @param column 查询的列
+     * @param keys   列的值
+     * @param byId   为true时以_id作为结果的键，否则以路径作为键
+     */
+    @WorkerThread
+    private HashMap<String, MediaItem> query(String column, List<String> keys, boolean byId) {
+        HashMap<String, MediaItem> result = new HashMap<>();
+        AlbumMediaQuery query = AlbumMediaQuery.ofAll();
+        int length = query.selectionArgs.length;
+        for (int start = 0; start < keys.size() && !mCanceled; start += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, keys.size() - start);
+            StringBuilder selection = new StringBuilder("(").append(query.selection).append(") AND ")
+                    .append(column).append(" IN (");
+            String[] selectionArgs = new String[length + count];
+            System.arraycopy(query.selectionArgs, 0, selectionArgs, 0, length);
+            for (int i = 0; i < count; i++) {
+                selection.append(i == 0 ? "?" : ",?");
+                selectionArgs[length + i] = keys.get(start + i);
+            }
+            selection.append(")");
+
+            Cursor cursor = mContext.getContentResolver().query(AlbumLoaderContants.QUERY_URI,
+                    AlbumLoaderContants.PROJECTION, selection.toString(), selectionArgs, null);
+            if (cursor == null) {
+                continue;
+            }
+            MediaTable table;
+            try {
+                table = MediaTable.from(cursor);
+            } finally {
+                cursor.close();
+            }
+            for (int row = 0; row < table.size(); row++) {
+                result.put(byId ? String.valueOf(table.getId(row)) : table.getPath(row), table.createItem(row));
+            }
+        }
+        return result;
+    }
+
+    public interface Callback {
+
+        /**
+         * 查找完成
+         *
+         * @param matched   在媒体库中找到的数据，按传入的顺序，数据来自媒体库
+         * @param unmatched 没有找到的数据，按传入的顺序
+         */
+        void onResolved(List<MediaItem> matched, List<MediaItem> unmatched);
+    }
+}
@@ -0,0 +1,217 @@
+package com.miraclehen.monkey.model;
+
+import android.content.Context;
+import android.support.annotation.MainThread;
+
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 整个列表是否可以选中，不包括数量的限制
+ * <p>
+ * 每一行用两个位表示：是否已经判断，以及是否不能选中。列表加载之后在后台把数据分成多段，
+ * 并行执行{@link AcceptabilityService}，列表可以提前显示不能选中的数据，点击时只需要查询位。
+ * 数据变化之后通过{@link #remap}保留原有的结果，只判断新增的数据。
+ * <p>
+ * AcceptabilityMap创建之后不再变化，只能与创建时的MediaTable一起使用。
+ */
+public final class AcceptabilityMap {
+
+    /**
+     * 每一段的行数。是64的倍数，每个线程只写入自己的long，不需要同步
+     */
+    private static final int CHUNK_SIZE = 512;
+
+    private static final AcceptabilityMap EMPTY = new AcceptabilityMap(MediaTable.empty(), new long[0], new long[0]);
+
+    private final MediaTable mTable;
+    private final long[] mKnown;
+    private final long[] mRejected;
+
+    private AcceptabilityMap(MediaTable table, long[] known, long[] rejected) {
+        mTable = table;
+        mKnown = known;
+        mRejected = rejected;
+    }
+
+    public static AcceptabilityMap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 还没有判断任何数据
+     */
+    public static AcceptabilityMap unknown(MediaTable table) {
+        int words = wordsOf(table.size());
+        return new AcceptabilityMap(table, new long[words], new long[words]);
+    }
+
+    private static int wordsOf(int size) {
+        return (size + 63) >> 6;
+    }
+
+    public MediaTable getTable() {
+        return mTable;
+    }
+
+    public boolean isKnown(int row) {
+        return (mKnown[row >> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return 还没有判断时返回false
+     */
+    public boolean isAccepted(int row) {
+        return isKnown(row) && (mRejected[row >> 6] & (1L << row)) == 0;
+    }
+
+    /**
+     * @return 还没有判断时返回false
+     */
+    public boolean isRejected(int row) {
+        return (mRejected[row >> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * 是否所有数据都已经判断
+     */
+    public boolean isComplete() {
+        int size = mTable.size();
+        for (int i = 0; i < mKnown.length; i++) {
+            long expected = i < size >> 6 ? -1L : (1L << (size & 63)) - 1;
+            if (mKnown[i] != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把结果对应到变化之后的数据
+     *
+     * @param table    变化之后的数据
+     * @param oldToNew 原来每一行在新数据中的位置，被删除为-1。为null时表示原来的数据位置不变，只在后面追加了数据
+     */
+    public AcceptabilityMap remap(MediaTable table, int[] oldToNew) {
+        int words = wordsOf(table.size());
+        long[] known = new long[words];
+        long[] rejected = new long[words];
+        if (oldToNew == null) {
+            int count = Math.min(mKnown.length, words);
+            System.arraycopy(mKnown, 0, known, 0, count);
+            System.arraycopy(mRejected, 0, rejected, 0, count);
+        } else {
+            for (int row = 0; row < oldToNew.length; row++) {
+                int newRow = oldToNew[row];
+                if (newRow == -1 || !isKnown(row)) {
+                    continue;
+                }
+                known[newRow >> 6] |= 1L << newRow;
+                if (isRejected(row)) {
+                    rejected[newRow >> 6] |= 1L << newRow;
+                }
+            }
+        }
+        return new AcceptabilityMap(table, known, rejected);
+    }
+
+    /**
+     * 在后台并行判断还没有判断的数据
+     *
+     * @param callback 全部完成之后在主线程中回调，取消之后不再回调
+     */
+    @MainThread
+    public Task evaluate(Context context, Callback callback) {
+        Task task = new Task(context.getApplicationContext(), this, callback);
+        task.start();
+        return task;
+    }
+
+    public static final class Task {
+        private final Context mContext;
+        private final AcceptabilityMap mSource;
+        private final Callback mCallback;
+        private final long[] mKnown;
+        private final long[] mRejected;
+        private final AtomicInteger mRemaining = new AtomicInteger();
+        private volatile boolean mCanceled;
+
+        private Task(Context context, AcceptabilityMap source, Callback callback) {
+            mContext = context;
+            mSource = source;
+            mCallback = callback;
+            mKnown = source.mKnown.clone();
+            mRejected = source.mRejected.clone();
+        }
+
+        /**
+         * 取消之后不再回调，已经开始的段会在下一行停止
+         */
+        public void cancel() {
+            mCanceled = true;
+        }
+
+        private void start() {
+            int size = mSource.mTable.size();
+            int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            if (chunks == 0 || mSource.isComplete()) {
+                finish();
+                return;
+            }
+            mRemaining.set(chunks);
+            for (int i = 0; i < chunks; i++) {
+                final int from = i * CHUNK_SIZE;
+                final int to = Math.min(size, from + CHUNK_SIZE);
+                TaskExecutor.executeInParallel(new Runnable() {
+                    @Override
+                    public void run() {
+                        evaluateChunk(from, to);
+                        //最后完成的一段负责回调
+                        if (mRemaining.decrementAndGet() == 0) {
+                            finish();
+                        }
+                    }
+                });
+            }
+        }
+
+        private void evaluateChunk(int from, int to) {
+            MediaTable table = mSource.mTable;
+            AcceptabilityService service = AcceptabilityService.getInstance();
+            for (int row = from; row < to && !mCanceled; row++) {
+                long bit = 1L << row;
+                if ((mKnown[row >> 6] & bit) != 0) {
+                    continue;
+                }
+                //拍照、录像视图总是可以点击
+                if (!table.isCapture(row) && !table.isRecord(row)
+                        && service.checkNow(mContext, table, row) != null) {
+                    mRejected[row >> 6] |= bit;
+                }
+                mKnown[row >> 6] |= bit;
+            }
+        }
+
+        private void finish() {
+            final AcceptabilityMap map = new AcceptabilityMap(mSource.mTable, mKnown, mRejected);
+            TaskExecutor.postToMain(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCanceled) {
+                        mCallback.onEvaluated(map);
+                    }
+                }
+            });
+        }
+    }
+
+    public interface Callback {
+
+        /**
+         * @param map 所有数据都已经判断
+         */
+        void onEvaluated(AcceptabilityMap map);
+    }
+}
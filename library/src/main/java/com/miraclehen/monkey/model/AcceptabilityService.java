@@ -0,0 +1,168 @@
+package com.miraclehen.monkey.model;
+
+import android.content.Context;
+import android.support.annotation.MainThread;
+import android.support.annotation.WorkerThread;
+import android.util.LongSparseArray;
+
+import com.miraclehen.monkey.MimeType;
+import com.miraclehen.monkey.R;
+import com.miraclehen.monkey.entity.IncapableCause;
+import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.entity.SelectionSpec;
+import com.miraclehen.monkey.filter.Filter;
+import com.miraclehen.monkey.utils.PhotoMetadataUtils;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 判断某个MediaItem是否可以选中，不包括数量的限制
+ * <p>
+ * 类型由mime_type列判断，不查询ContentResolver；没有过滤器时在主线程中直接得到结果。
+ * 有过滤器或者mime_type列无法确定类型时在{@link TaskExecutor#executeInteractive(Runnable)}的线程中判断，
+ * 不等待正在进行的查询以及整个列表的预先计算，结果在主线程中回调。
+ * 结果以_id为键缓存，{@link SelectionSpec}中的类型或者过滤器变化之后清空。
+ * 整个列表的结果由{@link AcceptabilityMap}在后台预先计算。
+ */
+public final class AcceptabilityService {
+
+    /**
+     * 缓存中表示可以选中
+     */
+    private static final IncapableCause ACCEPTED = new IncapableCause("");
+
+    private static final AcceptabilityService INSTANCE = new AcceptabilityService();
+
+    private final LongSparseArray<IncapableCause> mVerdicts = new LongSparseArray<>();
+    //与缓存对应的配置
+    private Set<MimeType> mMimeTypes;
+    private List<Filter> mFilters;
+
+    private AcceptabilityService() {
+    }
+
+    public static AcceptabilityService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 判断是否可以选中
+     *
+     * @param callback 在主线程中回调。有缓存或者不需要执行过滤器时立即回调
+     */
+    @MainThread
+    public void check(Context context, final MediaItem item, final Callback callback) {
+        IncapableCause cached = peek(context, item);
+        if (cached != null) {
+            callback.onResult(cached == ACCEPTED ? null : cached);
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        TaskExecutor.executeInteractive(new Runnable() {
+            @Override
+            public void run() {
+                final IncapableCause cause = checkNow(appContext, item);
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(cause);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 同步判断，可能会查询ContentResolver以及执行过滤器
+     *
+     * @return 可以选中时返回null
+     */
+    @WorkerThread
+    public IncapableCause checkNow(Context context, MediaItem item) {
+        IncapableCause cached = peek(context, item);
+        if (cached == null) {
+            cached = evaluate(context, item);
+        }
+        return cached == ACCEPTED ? null : cached;
+    }
+
+    /**
+     * 同步判断MediaTable中的一行，缓存或者类型可以确定结果时不创建MediaItem。可以在多个线程中同时调用。
+     * {@link #isDecided(Context, MediaTable, int)}为true时不会查询ContentResolver以及执行过滤器，可以在主线程中调用
+     *
+     * @return 可以选中时返回null
+     */
+    public IncapableCause checkNow(Context context, MediaTable table, int row) {
+        IncapableCause cached = peek(context, table.getId(row), table.getMimeCode(row));
+        if (cached == null) {
+            cached = evaluate(context, table.createItem(row));
+        }
+        return cached == ACCEPTED ? null : cached;
+    }
+
+    /**
+     * 不查询ContentResolver、不执行过滤器是否能够判断MediaTable中的一行
+     */
+    public boolean isDecided(Context context, MediaTable table, int row) {
+        return peek(context, table.getId(row), table.getMimeCode(row)) != null;
+    }
+
+    /**
+     * 执行过滤器并缓存结果
+     */
+    private IncapableCause evaluate(Context context, MediaItem item) {
+        IncapableCause cause = PhotoMetadataUtils.isAcceptable(context, item);
+        if (cause == null) {
+            cause = ACCEPTED;
+        }
+        if (item.getId() > 0) {
+            synchronized (mVerdicts) {
+                mVerdicts.put(item.getId(), cause);
+            }
+        }
+        return cause;
+    }
+
+    /**
+     * 不查询ContentResolver、不执行过滤器能够得到的结果
+     *
+     * @return 可以选中时返回{@link #ACCEPTED}，无法确定时返回null
+     */
+    private IncapableCause peek(Context context, MediaItem item) {
+        return peek(context, item.getId(), item.getMimeCode());
+    }
+
+    private IncapableCause peek(Context context, long id, int mimeCode) {
+        SelectionSpec spec = SelectionSpec.getInstance();
+        synchronized (mVerdicts) {
+            if (spec.mimeTypeSet != mMimeTypes || spec.filters != mFilters) {
+                mVerdicts.clear();
+                mMimeTypes = spec.mimeTypeSet;
+                mFilters = spec.filters;
+            }
+            IncapableCause cached = id > 0 ? mVerdicts.get(id) : null;
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MimeType type = MimeType.fromCode(mimeCode);
+        if (type == null) {
+            return null;
+        }
+        if (!spec.mimeTypeSet.contains(type)) {
+            return new IncapableCause(context.getString(R.string.error_file_type));
+        }
+        return spec.filters == null || spec.filters.isEmpty() ? ACCEPTED : null;
+    }
+
+    public interface Callback {
+
+        /**
+         * @param cause 可以选中时为null
+         */
+        void onResult(IncapableCause cause);
+    }
+}
@@ -25,6 +25,7 @@ import android.support.v4.app.LoaderManager;
 import android.support.v4.content.Loader;
 
 import com.miraclehen.monkey.MonkeyActivity;
+import com.miraclehen.monkey.loader.AlbumIndex;
 import com.miraclehen.monkey.loader.AlbumLoader;
 import com.miraclehen.monkey.loader.CaptureLoader;
 
@@ -83,6 +84,8 @@ public class AlbumCollection implements LoaderManager.LoaderCallbacks<Cursor> {
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
         if (savedInstanceState == null) {
+            //重新打开选择器，媒体库可能已经变化，不使用上一次的相册索引
+            AlbumIndex.invalidate();
             return;
         }
 
@@ -103,6 +106,7 @@ public class AlbumCollection implements LoaderManager.LoaderCallbacks<Cursor> {
     }
 
     public void reloadAlbums(){
+        AlbumIndex.invalidate();
         mLoaderManager.restartLoader(LOADER_ID, null, this);
     }
 
@@ -27,6 +27,7 @@ import android.support.v4.content.Loader;
 import com.miraclehen.monkey.CaptureType;
 import com.miraclehen.monkey.entity.Album;
 import com.miraclehen.monkey.loader.AlbumMediaLoader;
+import com.miraclehen.monkey.loader.MediaSnapshot;
 
 import java.lang.ref.WeakReference;
 
@@ -35,6 +36,8 @@ public class AlbumMediaCollection implements LoaderManager.LoaderCallbacks<Curso
     private static final String ARGS_ALBUM = "ARGS_ALBUM";
     private static final String ARGS_CAPTURE_TYPE = "ARGS_CAPTURE_TYPE";
     private static final String ARGS_CAPTURE_VALID = "ARGS_CAPTURE_VALID";
+    private static final String ARGS_USE_SNAPSHOT = "ARGS_USE_SNAPSHOT";
+    private static final String ARGS_TRACK_CHANGES = "ARGS_TRACK_CHANGES";
     private WeakReference<Context> mContext;
     private LoaderManager mLoaderManager;
     private AlbumMediaCallbacks mCallbacks;
@@ -52,7 +55,8 @@ public class AlbumMediaCollection implements LoaderManager.LoaderCallbacks<Curso
         }
 
         CaptureType captureType = CaptureType.valueOf(args.getString(ARGS_CAPTURE_TYPE, CaptureType.None.name()));
-        return AlbumMediaLoader.newInstance(context, album, album.isAll() ? captureType : CaptureType.None);
+        return AlbumMediaLoader.newInstance(context, album, album.isAll() ? captureType : CaptureType.None,
+                args.getBoolean(ARGS_USE_SNAPSHOT, true), args.getBoolean(ARGS_TRACK_CHANGES, false));
     }
 
     @Override
@@ -99,11 +103,36 @@ public class AlbumMediaCollection implements LoaderManager.LoaderCallbacks<Curso
      * @param captureType
      */
     public void load( Album target, CaptureType captureType) {
-        mLoaderManager.initLoader(LOADER_ID, makeArgument(target, captureType), this);
+        load(target, captureType, false);
+    }
+
+    /**
+     * 加载一个Album的内容
+     *
+     * @param trackChanges 是否通过{@link MediaChangeTracker}增量更新，为true时快照过期之后不重新加载，
+     *                     以{@link #getSnapshotStamp()}为起点启动MediaChangeTracker
+     */
+    public void load(Album target, CaptureType captureType, boolean trackChanges) {
+        Bundle args = makeArgument(target, captureType);
+        args.putBoolean(ARGS_TRACK_CHANGES, trackChanges);
+        mLoaderManager.initLoader(LOADER_ID, args, this);
+    }
+
+    /**
+     * 最近一次加载的数据是快照时，快照记录的MediaStore状态
+     *
+     * @return 加载的是MediaStore的查询结果时返回null
+     */
+    public MediaSnapshot.Stamp getSnapshotStamp() {
+        Loader<Cursor> loader = mLoaderManager.getLoader(LOADER_ID);
+        return loader instanceof AlbumMediaLoader ? ((AlbumMediaLoader) loader).getSnapshotStamp() : null;
     }
 
     public void restart( Album target, CaptureType captureType){
-        mLoaderManager.restartLoader(LOADER_ID, makeArgument(target, captureType), this);
+        Bundle args = makeArgument(target, captureType);
+        //重新加载时媒体库已经变化，不使用快照
+        args.putBoolean(ARGS_USE_SNAPSHOT, false);
+        mLoaderManager.restartLoader(LOADER_ID, args, this);
     }
 
     private Bundle makeArgument(Album target, CaptureType captureType) {
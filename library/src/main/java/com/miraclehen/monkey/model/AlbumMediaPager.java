@@ -0,0 +1,139 @@
+package com.miraclehen.monkey.model;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.miraclehen.monkey.CaptureType;
+import com.miraclehen.monkey.entity.Album;
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.loader.AlbumMediaPageLoader;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+/**
+ * 分页加载一本相册的内容
+ * <p>
+ * 第一页加载完成之后立即回调，列表可以马上显示。之后每次{@link #loadNextPage()}在后台查询下一页，
+ * 并且把新的一页追加到已经加载的{@link MediaTable}之后交给适配器。
+ * 内存只和已经浏览过的数据量有关，和媒体库的大小无关。
+ */
+public class AlbumMediaPager {
+
+    private final Context mContext;
+    private final int mPageSize;
+    //已加载的所有数据
+    private MediaTable mTable = MediaTable.empty();
+    private AlbumMediaPageLoader mPageLoader;
+    private PageCallbacks mCallbacks;
+
+    //已加载的数据总数
+    private int mCount;
+    private boolean mLoading;
+    private boolean mHasMore;
+    //每次start都会加一，用于丢弃过期的查询结果
+    private int mGeneration;
+
+    public AlbumMediaPager(@NonNull Context context, int pageSize, @NonNull PageCallbacks callbacks) {
+        mContext = context.getApplicationContext();
+        mPageSize = pageSize;
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * 从第一页开始加载一本相册
+     */
+    public void start(Album album, CaptureType captureType) {
+        mTable = MediaTable.empty();
+        mGeneration++;
+        mCount = 0;
+        mHasMore = true;
+        mLoading = false;
+        mPageLoader = new AlbumMediaPageLoader(mContext, album, captureType, mPageSize);
+        loadNextPage();
+    }
+
+    /**
+     * 加载下一页。如果正在加载或者没有更多数据，直接返回
+     */
+    public void loadNextPage() {
+        if (mLoading || !mHasMore || mPageLoader == null) {
+            return;
+        }
+        mLoading = true;
+        final int generation = mGeneration;
+        final AlbumMediaPageLoader pageLoader = mPageLoader;
+        TaskExecutor.executeOnIo(new Runnable() {
+            @Override
+            public void run() {
+                //在后台线程中把数据读入MediaTable
+                final Cursor page = pageLoader.loadNextPage();
+                final boolean hasMore = pageLoader.hasMore();
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, hasMore);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, Cursor page, boolean hasMore) {
+        if (generation != mGeneration || mCallbacks == null) {
+            //已经重新加载或者已经销毁
+            return;
+        }
+        mLoading = false;
+        mHasMore = hasMore;
+        if (page == null) {
+            return;
+        }
+        boolean first = mCount == 0;
+        int positionStart = mCount;
+        int itemCount = page.getCount();
+        mTable = mTable.append(MediaTable.from(page));
+        mCount += itemCount;
+
+        Cursor merged = mTable.asCursor();
+        if (first) {
+            mCallbacks.onFirstPageLoad(merged);
+        } else {
+            page.moveToPosition(-1);
+            mCallbacks.onPageAppend(merged, page, positionStart, itemCount);
+        }
+    }
+
+    public boolean isLoading() {
+        return mLoading;
+    }
+
+    public boolean hasMore() {
+        return mHasMore;
+    }
+
+    public void onDestroy() {
+        mGeneration++;
+        mCallbacks = null;
+        mTable = MediaTable.empty();
+    }
+
+    public interface PageCallbacks {
+
+        /**
+         * 第一页加载完毕
+         *
+         * @param cursor 第一页的数据
+         */
+        void onFirstPageLoad(Cursor cursor);
+
+        /**
+         * 新的一页加载完毕
+         *
+         * @param cursor        已加载的所有数据
+         * @param page          新加载的这一页数据
+         * @param positionStart 新数据在cursor中的起始位置
+         * @param itemCount     新数据的数量
+         */
+        void onPageAppend(Cursor cursor, Cursor page, int positionStart, int itemCount);
+    }
+}
@@ -0,0 +1,119 @@
+package com.miraclehen.monkey.model;
+
+import java.util.Arrays;
+
+/**
+ * long到槽位的映射，开放寻址，不装箱
+ * <p>
+ * 线性探测，删除时回移后面的元素，不留下墓碑。容量为2的幂，装载因子不超过1/2。
+ */
+final class LongSlotMap {
+
+    private static final int EMPTY = -1;
+
+    private long[] mKeys;
+    //与mKeys对应的槽位，EMPTY表示此位置为空
+    private int[] mValues;
+    private int mSize;
+    private int mMask;
+
+    LongSlotMap() {
+        allocate(16);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return 不存在时返回-1
+     */
+    int get(long key) {
+        int i = indexOf(key);
+        return i == -1 ? -1 : mValues[i];
+    }
+
+    void put(long key, int value) {
+        if ((mSize + 1) * 2 > mKeys.length) {
+            rehash(mKeys.length * 2);
+        }
+        int i = mix(key) & mMask;
+        while (mValues[i] != EMPTY) {
+            if (mKeys[i] == key) {
+                mValues[i] = value;
+                return;
+            }
+            i = (i + 1) & mMask;
+        }
+        mKeys[i] = key;
+        mValues[i] = value;
+        mSize++;
+    }
+
+    /**
+     * @return 被删除的槽位，不存在时返回-1
+     */
+    int remove(long key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return -1;
+        }
+        int value = mValues[i];
+        mValues[i] = EMPTY;
+        mSize--;
+        //把之后同一串中的元素移到空出的位置，保证查找不会提前结束
+        int gap = i;
+        int j = (i + 1) & mMask;
+        while (mValues[j] != EMPTY) {
+            int home = mix(mKeys[j]) & mMask;
+            if (((j - home) & mMask) >= ((j - gap) & mMask)) {
+                mKeys[gap] = mKeys[j];
+                mValues[gap] = mValues[j];
+                mValues[j] = EMPTY;
+                gap = j;
+            }
+            j = (j + 1) & mMask;
+        }
+        return value;
+    }
+
+    void clear() {
+        Arrays.fill(mValues, EMPTY);
+        mSize = 0;
+    }
+
+    private int indexOf(long key) {
+        int i = mix(key) & mMask;
+        while (mValues[i] != EMPTY) {
+            if (mKeys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mMask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        allocate(capacity);
+        mSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != EMPTY) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        Arrays.fill(mValues, EMPTY);
+        mMask = capacity - 1;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,238 @@
+package com.miraclehen.monkey.model;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.entity.Album;
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.loader.AlbumIndex;
+import com.miraclehen.monkey.loader.AlbumLoaderContants;
+import com.miraclehen.monkey.loader.AlbumMediaQuery;
+import com.miraclehen.monkey.loader.MediaSnapshot;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+import java.util.Arrays;
+
+/**
+ * 监听媒体库的变化
+ * <p>
+ * 在MediaStore的Uri上注册ContentObserver，短时间内的多次通知合并成一次检查。
+ * 每次检查只查询date_modified大于上一次检查的数据；只有数量对不上，也就是可能发生了删除时，
+ * 才额外查询一次所有数据的_id。结果以{@link MediaDelta}的形式交给调用者，在主线程中增量合并。
+ */
+public class MediaChangeTracker {
+
+    /**
+     * 合并通知的时间间隔
+     */
+    private static final long DEBOUNCE_DELAY = 500;
+    private static final String[] ID_PROJECTION = {MediaStore.Files.FileColumns._ID};
+
+    private final Context mContext;
+    private final AlbumMediaQuery mQuery;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private ChangeCallbacks mCallbacks;
+
+    //上一次检查时MediaStore的状态，只在IO线程中读写
+    private volatile MediaSnapshot.Stamp mLastStamp;
+    //每次start都会加一，用于丢弃过期的检查结果
+    private int mGeneration;
+    private boolean mRegistered;
+
+    private final ContentObserver mObserver = new ContentObserver(mHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            mHandler.removeCallbacks(mCheckRunnable);
+            mHandler.postDelayed(mCheckRunnable, DEBOUNCE_DELAY);
+        }
+    };
+
+    private final Runnable mCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            check(false);
+        }
+    };
+
+    public MediaChangeTracker(@NonNull Context context, Album album, @NonNull ChangeCallbacks callbacks) {
+        mContext = context.getApplicationContext();
+        mQuery = AlbumMediaQuery.of(album);
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * 开始监听。每次完整加载数据之后调用，以当前MediaStore的状态作为之后增量检查的起点
+     */
+    public void start() {
+        start(null);
+    }
+
+    /**
+     * 开始监听
+     *
+     * @param from 显示的数据对应的MediaStore状态，例如快照记录的状态。不为null时立即检查一次，
+     *             只把之后变化的数据增量合并；为null时以当前MediaStore的状态为起点
+     */
+    public void start(final MediaSnapshot.Stamp from) {
+        if (!mRegistered) {
+            mContext.getContentResolver().registerContentObserver(AlbumLoaderContants.QUERY_URI, true, mObserver);
+            mRegistered = true;
+        }
+        mGeneration++;
+        mHandler.removeCallbacks(mCheckRunnable);
+        TaskExecutor.executeOnIo(new Runnable() {
+            @Override
+            public void run() {
+                mLastStamp = from != null ? from : MediaSnapshot.queryStamp(mContext, mQuery);
+            }
+        });
+        if (from != null) {
+            //在同一个IO线程中排在设置起点之后
+            check(false);
+        }
+    }
+
+    /**
+     * 立即检查一次，例如拍摄完成之后
+     */
+    public void checkNow() {
+        mHandler.removeCallbacks(mCheckRunnable);
+        check(true);
+    }
+
+    public void onDestroy() {
+        mGeneration++;
+        mCallbacks = null;
+        mHandler.removeCallbacks(mCheckRunnable);
+        if (mRegistered) {
+            mContext.getContentResolver().unregisterContentObserver(mObserver);
+            mRegistered = false;
+        }
+    }
+
+    private void check(final boolean force) {
+        final int generation = mGeneration;
+        TaskExecutor.executeOnIo(new Runnable() {
+            @Override
+            public void run() {
+                final boolean reloadRequired = force && mLastStamp == null;
+                final MediaDelta delta = reloadRequired ? null : queryDelta(force);
+                if (delta == null && !reloadRequired) {
+                    return;
+                }
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration || mCallbacks == null) {
+                            return;
+                        }
+                        if (reloadRequired) {
+                            mCallbacks.onReloadRequired();
+                        } else {
+                            mCallbacks.onMediaChanged(delta);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 查询上一次检查之后的变化
+     *
+     * @param force 即使数量以及最大的date_modified没有变化，也进行查询
+     * @return 没有变化时返回null
+     */
+    @WorkerThread
+    private MediaDelta queryDelta(boolean force) {
+        MediaSnapshot.Stamp last = mLastStamp;
+        if (last == null) {
+            //不支持查询状态的机型，无法进行增量更新
+            return null;
+        }
+        MediaSnapshot.Stamp stamp = MediaSnapshot.queryStamp(mContext, mQuery);
+        if (stamp == null || (!force && stamp.equals(last))) {
+            return null;
+        }
+        //相册数量已经变化
+        AlbumIndex.invalidate();
+
+        MediaTable changedRows = queryChangedRows(last.maxDateModified);
+        if (changedRows == null) {
+            return null;
+        }
+        long[] aliveIds = null;
+        if (stamp.count != last.count + changedRows.size()) {
+            //可能有数据被删除
+            aliveIds = queryAliveIds();
+        }
+        mLastStamp = stamp;
+        if (changedRows.size() == 0 && aliveIds == null) {
+            return null;
+        }
+        return new MediaDelta(changedRows, aliveIds, last.maxDateModified);
+    }
+
+    /**
+     * 查询date_modified大于since的数据，读入MediaTable中，不持有数据库资源
+     */
+    @WorkerThread
+    private MediaTable queryChangedRows(long since) {
+        String selection = "(" + mQuery.selection + ") AND " + MediaStore.MediaColumns.DATE_MODIFIED + ">?";
+        String[] selectionArgs = Arrays.copyOf(mQuery.selectionArgs, mQuery.selectionArgs.length + 1);
+        selectionArgs[mQuery.selectionArgs.length] = String.valueOf(since);
+        Cursor cursor = mContext.getContentResolver().query(AlbumLoaderContants.QUERY_URI,
+                AlbumLoaderContants.PROJECTION, selection, selectionArgs, AlbumLoaderContants.ORDER_BY);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return MediaTable.from(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 查询当前所有数据的_id，升序
+     */
+    @WorkerThread
+    private long[] queryAliveIds() {
+        Cursor cursor = mContext.getContentResolver().query(AlbumLoaderContants.QUERY_URI, ID_PROJECTION,
+                mQuery.selection, mQuery.selectionArgs, MediaStore.Files.FileColumns._ID + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            long[] ids = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i++] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public interface ChangeCallbacks {
+
+        /**
+         * 媒体库发生了变化
+         *
+         * @param delta 变化的内容
+         */
+        void onMediaChanged(MediaDelta delta);
+
+        /**
+         * 无法进行增量更新，需要重新加载全部数据
+         */
+        void onReloadRequired();
+    }
+}
@@ -0,0 +1,163 @@
+package com.miraclehen.monkey.model;
+
+import com.miraclehen.monkey.entity.MediaTable;
+
+import java.util.Arrays;
+
+/**
+ * 一次媒体库变化
+ * <p>
+ * changedRows是上一次检查之后新增或者修改过的数据，按日期倒序排列；
+ * aliveIds是当前MediaStore中所有数据的_id，只有在可能发生删除时才会查询，否则为null。
+ * {@link #apply(MediaTable)}把变化合并到当前的数据中，得到新的数据以及新旧位置的对应关系。
+ */
+public class MediaDelta {
+
+    public final MediaTable changedRows;
+    public final long[] aliveIds;
+    /**
+     * 上一次检查时MediaStore中最大的date_modified，单位秒
+     */
+    public final long since;
+
+    MediaDelta(MediaTable changedRows, long[] aliveIds, long since) {
+        this.changedRows = changedRows;
+        this.aliveIds = aliveIds;
+        this.since = since;
+    }
+
+    /**
+     * 把变化合并到当前的数据中
+     * <p>
+     * 当前数据已经按日期倒序排列，新的数据通过二分查找确定插入位置；
+     * 只有在可能发生删除或者修改时，才会遍历当前数据的_id。
+     *
+     * @param current 适配器当前使用的数据
+     */
+    public Result apply(MediaTable current) {
+        int oldCount = current.size();
+
+        //最前面的拍摄视图固定不动
+        int pinned = 0;
+        while (pinned < oldCount && current.isDummy(pinned)) {
+            pinned++;
+        }
+
+        //变化的数据
+        int changedCount = changedRows.size();
+        long[] sortedChangedIds = new long[changedCount];
+        boolean pureInsert = aliveIds == null;
+        for (int r = 0; r < changedCount; r++) {
+            sortedChangedIds[r] = changedRows.getId(r);
+            //添加日期晚于上一次检查的数据一定是新数据
+            if (changedRows.getDateAdded(r) <= since) {
+                pureInsert = false;
+            }
+        }
+        Arrays.sort(sortedChangedIds);
+
+        //被删除或者被修改的旧数据
+        boolean[] removed = new boolean[oldCount];
+        int removedCount = 0;
+        if (!pureInsert) {
+            for (int p = pinned; p < oldCount; p++) {
+                long id = current.getId(p);
+                if (Arrays.binarySearch(sortedChangedIds, id) >= 0
+                        || (aliveIds != null && Arrays.binarySearch(aliveIds, id) < 0)) {
+                    removed[p] = true;
+                    removedCount++;
+                }
+            }
+        }
+
+        //新数据在旧数据中的插入位置
+        int[] insertAt = new int[changedCount];
+        for (int r = 0; r < changedCount; r++) {
+            int at = lowerBound(current, pinned, oldCount, changedRows.getSortKey(r), changedRows.getId(r));
+            insertAt[r] = r > 0 ? Math.max(at, insertAt[r - 1]) : at;
+        }
+
+        //合并
+        MediaTable[] sources = {current, changedRows};
+        int newCount = oldCount - removedCount + changedCount;
+        int[] sourceOf = new int[newCount];
+        int[] rowOf = new int[newCount];
+        int[] oldToNew = new int[oldCount];
+        int[] insertedPositions = new int[changedCount];
+        int n = 0;
+        int r = 0;
+        for (int p = 0; p < oldCount; p++) {
+            while (r < changedCount && insertAt[r] <= p) {
+                sourceOf[n] = 1;
+                rowOf[n] = r;
+                insertedPositions[r++] = n++;
+            }
+            if (removed[p]) {
+                oldToNew[p] = -1;
+                continue;
+            }
+            rowOf[n] = p;
+            oldToNew[p] = n++;
+        }
+        while (r < changedCount) {
+            sourceOf[n] = 1;
+            rowOf[n] = r;
+            insertedPositions[r++] = n++;
+        }
+        return new Result(MediaTable.compose(sources, sourceOf, rowOf), pinned, oldToNew, insertedPositions,
+                removedCount);
+    }
+
+    /**
+     * 二分查找第一个排在(key, id)之后的位置。table按{@link com.miraclehen.monkey.loader.AlbumLoaderContants#ORDER_BY}排序，即(sortKey, _id)降序
+     */
+    private static int lowerBound(MediaTable table, int from, int to, long key, long id) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long midKey = table.getSortKey(mid);
+            if (midKey > key || (midKey == key && table.getId(mid) > id)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 合并的结果
+     */
+    public static class Result {
+        /**
+         * 合并之后的数据
+         */
+        public final MediaTable table;
+        /**
+         * 最前面固定不动的拍摄视图数量
+         */
+        public final int pinned;
+        /**
+         * 旧位置对应的新位置，被删除的为-1
+         */
+        public final int[] oldToNew;
+        /**
+         * 新数据在合并之后的位置，升序
+         */
+        public final int[] insertedPositions;
+        public final int removedCount;
+
+        Result(MediaTable table, int pinned, int[] oldToNew, int[] insertedPositions, int removedCount) {
+            this.table = table;
+            this.pinned = pinned;
+            this.oldToNew = oldToNew;
+            this.insertedPositions = insertedPositions;
+            this.removedCount = removedCount;
+        }
+
+        public boolean isEmpty() {
+            return removedCount == 0 && insertedPositions.length == 0;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.miraclehen.monkey.model;
+
+import com.miraclehen.monkey.entity.MediaItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按选中顺序保存的MediaItem集合
+ * <p>
+ * 每个MediaItem按加入的顺序占用一个槽位，键到槽位的映射保存在{@link LongSlotMap}中。
+ * 槽位上是否有数据记录在树状数组中，某个MediaItem的序号就是它的槽位之前（包括自己）有数据的槽位数量，
+ * 查询、加入、删除都是O(log n)。删除只清空槽位，之后的序号自动减一，不需要移动数据；
+ * 空槽位超过一半时才整理一次。
+ * <p>
+ * 以MediaStore的_id作为键；来源不同的MediaItem可能没有_id（例如只有路径的预选数据），
+ * 所以同时以路径的64位哈希作为备用的键，按_id查找不到时再按路径查找，并比较路径确认。
+ */
+final class OrderedSelection implements Iterable<MediaItem> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final LongSlotMap mSlotById = new LongSlotMap();
+    private final LongSlotMap mSlotByPath = new LongSlotMap();
+    private MediaItem[] mSlots = new MediaItem[INITIAL_CAPACITY];
+    //树状数组，下标从1开始
+    private int[] mTree = new int[INITIAL_CAPACITY + 1];
+    //已经使用的槽位数量，包括已经删除的
+    private int mUsed;
+    private int mSize;
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean contains(MediaItem item) {
+        return slotOf(item.getId(), item.getOriginalPath()) != -1;
+    }
+
+    /**
+     * @param id   MediaStore的_id，没有时为0
+     * @param path 文件路径
+     */
+    public boolean contains(long id, String path) {
+        return slotOf(id, path) != -1;
+    }
+
+    /**
+     * 加入到最后
+     *
+     * @return 已经存在时返回false
+     */
+    public boolean add(MediaItem item) {
+        if (contains(item)) {
+            return false;
+        }
+        if (mUsed == mSlots.length) {
+            grow();
+        }
+        int slot = mUsed++;
+        mSlots[slot] = item;
+        putKeys(item, slot);
+        update(slot, 1);
+        mSize++;
+        return true;
+    }
+
+    public boolean remove(MediaItem item) {
+        int slot = slotOf(item.getId(), item.getOriginalPath());
+        if (slot == -1) {
+            return false;
+        }
+        //删除保存的MediaItem的键，它可能比参数多一个_id
+        removeKeys(mSlots[slot]);
+        mSlots[slot] = null;
+        update(slot, -1);
+        mSize--;
+        if (mSize == 0) {
+            clear();
+        } else if (mUsed - mSize > mUsed / 2 && mUsed > INITIAL_CAPACITY) {
+            compact(mSlots.length);
+        }
+        return true;
+    }
+
+    /**
+     * 用_id相同的数据替换，序号不变
+     *
+     * @return 不存在时返回false
+     */
+    public boolean replace(MediaItem item) {
+        int slot = slotOf(item.getId(), item.getOriginalPath());
+        if (slot == -1) {
+            return false;
+        }
+        removeKeys(mSlots[slot]);
+        mSlots[slot] = item;
+        putKeys(item, slot);
+        return true;
+    }
+
+    public void clear() {
+        mSlotById.clear();
+        mSlotByPath.clear();
+        Arrays.fill(mSlots, 0, mUsed, null);
+        Arrays.fill(mTree, 0);
+        mUsed = 0;
+        mSize = 0;
+    }
+
+    /**
+     * 选中的序号
+     *
+     * @param id   MediaStore的_id，没有时为0
+     * @param path 文件路径
+     * @return 从1开始的序号，不存在时返回-1
+     */
+    public int rankOf(long id, String path) {
+        int slot = slotOf(id, path);
+        if (slot == -1) {
+            return -1;
+        }
+        int rank = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            rank += mTree[i];
+        }
+        return rank;
+    }
+
+    public ArrayList<MediaItem> asList() {
+        ArrayList<MediaItem> list = new ArrayList<>(mSize);
+        for (int i = 0; i < mUsed; i++) {
+            if (mSlots[i] != null) {
+                list.add(mSlots[i]);
+            }
+        }
+        return list;
+    }
+
+    public void addAll(List<MediaItem> items) {
+        for (int i = 0; i < items.size(); i++) {
+            add(items.get(i));
+        }
+    }
+
+    @Override
+    public Iterator<MediaItem> iterator() {
+        return new Iterator<MediaItem>() {
+            private int mNext = advance(0);
+
+            private int advance(int from) {
+                while (from < mUsed && mSlots[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return mNext < mUsed;
+            }
+
+            @Override
+            public MediaItem next() {
+                if (mNext >= mUsed) {
+                    throw new NoSuchElementException();
+                }
+                MediaItem item = mSlots[mNext];
+                mNext = advance(mNext + 1);
+                return item;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int slotOf(long id, String path) {
+        if (id > 0) {
+            int slot = mSlotById.get(id);
+            if (slot != -1) {
+                return slot;
+            }
+        }
+        if (path == null) {
+            return -1;
+        }
+        int slot = mSlotByPath.get(pathKey(path));
+        //哈希相同时确认路径
+        return slot != -1 && path.equals(mSlots[slot].getOriginalPath()) ? slot : -1;
+    }
+
+    private void putKeys(MediaItem item, int slot) {
+        if (item.getId() > 0) {
+            mSlotById.put(item.getId(), slot);
+        }
+        if (item.getOriginalPath() != null) {
+            mSlotByPath.put(pathKey(item.getOriginalPath()), slot);
+        }
+    }
+
+    private void removeKeys(MediaItem item) {
+        if (item.getId() > 0) {
+            mSlotById.remove(item.getId());
+        }
+        if (item.getOriginalPath() != null) {
+            mSlotByPath.remove(pathKey(item.getOriginalPath()));
+        }
+    }
+
+    /**
+     * 路径的64位FNV-1a哈希
+     */
+    static long pathKey(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < mTree.length; i += i & -i) {
+            mTree[i] += delta;
+        }
+    }
+
+    private void grow() {
+        if (mUsed - mSize > mUsed / 2) {
+            //空槽位较多，整理之后就有空间
+            compact(mSlots.length);
+        } else {
+            compact(mSlots.length * 2);
+        }
+    }
+
+    /**
+     * 去掉空槽位，重新分配槽位并在O(n)内重建树状数组
+     */
+    private void compact(int capacity) {
+        MediaItem[] slots = new MediaItem[capacity];
+        int used = 0;
+        for (int i = 0; i < mUsed; i++) {
+            MediaItem item = mSlots[i];
+            if (item != null) {
+                slots[used] = item;
+                putKeys(item, used);
+                used++;
+            }
+        }
+        int[] tree = new int[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            if (i <= used) {
+                tree[i] += 1;
+            }
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+        mSlots = slots;
+        mTree = tree;
+        mUsed = used;
+    }
+}
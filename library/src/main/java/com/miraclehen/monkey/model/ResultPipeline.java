@@ -0,0 +1,153 @@
+package com.miraclehen.monkey.model;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.support.annotation.MainThread;
+import android.util.Log;
+
+import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 返回结果之前处理选中的数据
+ * <p>
+ * 每个数据是一个任务，在{@link TaskExecutor#executeInParallel(Runnable)}的线程池中执行，
+ * 同时执行的数量不超过{@link TaskExecutor#parallelism()}。同一个数据的{@link ResultStage}依次执行，
+ * 每个处理之间检查是否已被取消。处理直接修改列表中的数据，所以返回的列表保持选中的顺序。
+ * <p>
+ * 单个处理失败时只记录日志，数据仍然会被返回。
+ */
+public final class ResultPipeline {
+
+    private static final String TAG = ResultPipeline.class.getSimpleName();
+
+    private final Context mContext;
+    private final ArrayList<MediaItem> mItems;
+    private final List<ResultStage> mStages;
+    private final Listener mListener;
+    private final CancellationSignal mSignal = new CancellationSignal();
+    private final AtomicInteger mDone = new AtomicInteger();
+    //以下只在主线程中访问
+    private int mReported;
+    private boolean mFinished;
+
+    private ResultPipeline(Context context, ArrayList<MediaItem> items, List<ResultStage> stages, Listener listener) {
+        mContext = context.getApplicationContext();
+        mItems = items;
+        mStages = new ArrayList<>(stages);
+        mListener = listener;
+    }
+
+    /**
+     * @param items  选中的数据，处理完成之后原样返回
+     * @param stages 对每个数据依次执行的处理
+     */
+    @MainThread
+    public static ResultPipeline start(Context context, ArrayList<MediaItem> items,
+                                       List<ResultStage> stages, Listener listener) {
+        ResultPipeline pipeline = new ResultPipeline(context, items, stages, listener);
+        pipeline.start();
+        return pipeline;
+    }
+
+    /**
+     * 取消之后不再回调，正在执行的处理在下一次检查时停止
+     */
+    @MainThread
+    public void cancel() {
+        mSignal.cancel();
+    }
+
+    public boolean isCanceled() {
+        return mSignal.isCanceled();
+    }
+
+    private void start() {
+        if (mItems.isEmpty()) {
+            TaskExecutor.postToMain(new Runnable() {
+                @Override
+                public void run() {
+                    report(0);
+                }
+            });
+            return;
+        }
+        for (final MediaItem item : mItems) {
+            TaskExecutor.executeResult(new Runnable() {
+                @Override
+                public void run() {
+                    if (!process(item)) {
+                        return;
+                    }
+                    final int done = mDone.incrementAndGet();
+                    TaskExecutor.postToMain(new Runnable() {
+                        @Override
+                        public void run() {
+                            report(done);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * @return 被取消时返回false
+     */
+    private boolean process(MediaItem item) {
+        for (ResultStage stage : mStages) {
+            if (mSignal.isCanceled()) {
+                return false;
+            }
+            try {
+                stage.process(mContext, item, mSignal);
+            } catch (OperationCanceledException e) {
+                return false;
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "stage failed: " + stage + ", item: " + item.getId(), e);
+            }
+        }
+        return !mSignal.isCanceled();
+    }
+
+    /**
+     * 多个线程投递的进度到达的顺序不确定，只显示更大的进度
+     */
+    private void report(int done) {
+        if (mSignal.isCanceled() || mFinished) {
+            return;
+        }
+        if (done > mReported) {
+            mReported = done;
+            mListener.onProgress(done, mItems.size());
+        }
+        if (done == mItems.size()) {
+            mFinished = true;
+            mListener.onFinished(mItems);
+        }
+    }
+
+    public interface Listener {
+
+        /**
+         * 在主线程中回调
+         *
+         * @param done  已经处理完成的数量
+         * @param total 总数
+         */
+        void onProgress(int done, int total);
+
+        /**
+         * 全部处理完成，在主线程中回调
+         *
+         * @param items 与传入的列表相同，保持选中的顺序
+         */
+        void onFinished(ArrayList<MediaItem> items);
+    }
+}
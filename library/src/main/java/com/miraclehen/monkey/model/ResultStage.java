@@ -0,0 +1,26 @@
+package com.miraclehen.monkey.model;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.entity.MediaItem;
+
+import java.io.IOException;
+
+/**
+ * 返回结果之前对每个选中数据执行的处理，例如读取宽高、计算摘要、压缩图片
+ * <p>
+ * 在{@link ResultPipeline}的后台线程中执行，不同的数据可能在多个线程中同时执行，
+ * 同一个数据的各个处理按添加的顺序依次执行。处理的结果直接写入{@link MediaItem}。
+ * 耗时的处理需要定期调用{@link CancellationSignal#throwIfCanceled()}。
+ */
+public interface ResultStage {
+
+    /**
+     * @param signal 用户取消之后被取消
+     * @throws IOException 读取或者写入文件失败，数据仍然会被返回
+     */
+    @WorkerThread
+    void process(Context context, MediaItem item, CancellationSignal signal) throws IOException;
+}
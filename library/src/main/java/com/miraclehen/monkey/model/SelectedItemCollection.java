@@ -18,19 +18,19 @@ package com.miraclehen.monkey.model;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.LongSparseArray;
 
 import com.miraclehen.monkey.R;
 import com.miraclehen.monkey.entity.IncapableCause;
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
 import com.miraclehen.monkey.entity.SelectionSpec;
+import com.miraclehen.monkey.loader.SelectionResolver;
 import com.miraclehen.monkey.ui.widget.CheckView;
 import com.miraclehen.monkey.utils.PathUtils;
-import com.miraclehen.monkey.utils.PhotoMetadataUtils;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 @SuppressWarnings("unused")
 public class SelectedItemCollection {
@@ -54,7 +54,14 @@ public class SelectedItemCollection {
      */
     public static final int COLLECTION_MIXED = COLLECTION_IMAGE | COLLECTION_VIDEO;
     private final Context mContext;
-    private Set<MediaItem> mItems;
+    /**
+     * 按选中顺序保存，序号查询为O(log n)
+     */
+    private OrderedSelection mItems;
+    /**
+     * 从{@link SelectionState}恢复、还没有还原完整数据的占位MediaItem的类型，以_id为键
+     */
+    private final LongSparseArray<Integer> mPlaceholderTypes = new LongSparseArray<>();
     private int mCollectionType = COLLECTION_UNDEFINED;
 
     public SelectedItemCollection(Context context) {
@@ -62,11 +69,9 @@ public class SelectedItemCollection {
     }
 
     public void onCreate(Bundle bundle) {
-        if (bundle == null) {
-            mItems = new LinkedHashSet<>();
-        } else {
-            List<MediaItem> saved = bundle.getParcelableArrayList(STATE_SELECTION);
-            mItems = new LinkedHashSet<>(saved);
+        mItems = new OrderedSelection();
+        if (bundle != null) {
+            restore((SelectionState) bundle.getParcelable(STATE_SELECTION));
             mCollectionType = bundle.getInt(STATE_COLLECTION_TYPE, COLLECTION_UNDEFINED);
         }
     }
@@ -76,17 +81,110 @@ public class SelectedItemCollection {
     }
 
     public void onSaveInstanceState(Bundle outState) {
-        outState.putParcelableArrayList(STATE_SELECTION, new ArrayList<>(mItems));
+        outState.putParcelable(STATE_SELECTION, encode());
         outState.putInt(STATE_COLLECTION_TYPE, mCollectionType);
     }
 
+    /**
+     * 用于在页面之间传递，只包含_id以及类型。接收方通过{@link #onCreate(Bundle)}或者{@link #overwrite(Bundle)}恢复
+     */
     public Bundle getDataWithBundle() {
         Bundle bundle = new Bundle();
-        bundle.putParcelableArrayList(STATE_SELECTION, new ArrayList<>(mItems));
+        bundle.putParcelable(STATE_SELECTION, encode());
         bundle.putInt(STATE_COLLECTION_TYPE, mCollectionType);
         return bundle;
     }
 
+    private SelectionState encode() {
+        ArrayList<MediaItem> items = mItems.asList();
+        int[] types = new int[items.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = typeOf(items.get(i));
+        }
+        return SelectionState.of(items, types);
+    }
+
+    /**
+     * 有_id的数据先用只有_id的MediaItem占位，需要时再还原
+     */
+    private void restore(SelectionState state) {
+        mItems.clear();
+        mPlaceholderTypes.clear();
+        if (state == null) {
+            return;
+        }
+        int loose = 0;
+        int index = 0;
+        for (int i = 0; i < state.size(); i++) {
+            if (loose < state.mLoosePositions.length && state.mLoosePositions[loose] == i) {
+                mItems.add(state.mLooseItems.get(loose++));
+                continue;
+            }
+            long id = state.mIds[index];
+            if (mItems.add(new MediaItem(id))) {
+                mPlaceholderTypes.put(id, state.typeOf(index));
+            }
+            index++;
+        }
+    }
+
+    /**
+     * 是否所有数据都是完整的，没有占位的MediaItem
+     */
+    public boolean isResolved() {
+        return mPlaceholderTypes.size() == 0;
+    }
+
+    /**
+     * 用已经加载的数据还原占位的MediaItem
+     *
+     * @param table 已经加载的数据
+     */
+    public void resolve(MediaTable table) {
+        for (int row = 0; row < table.size() && !isResolved(); row++) {
+            long id = table.getId(row);
+            if (mPlaceholderTypes.get(id) != null) {
+                mItems.replace(table.createItem(row));
+                mPlaceholderTypes.remove(id);
+            }
+        }
+    }
+
+    /**
+     * 还原所有占位的MediaItem，在IO线程中分批查询。媒体库中已经不存在的数据从选中集合中移除
+     *
+     * @param onResolved 还原完成之后在主线程中执行，已经全部还原时立即执行
+     */
+    public void resolve(final Runnable onResolved) {
+        if (isResolved()) {
+            onResolved.run();
+            return;
+        }
+        List<MediaItem> placeholders = new ArrayList<>(mPlaceholderTypes.size());
+        for (int i = 0; i < mPlaceholderTypes.size(); i++) {
+            placeholders.add(new MediaItem(mPlaceholderTypes.keyAt(i)));
+        }
+        SelectionResolver.start(mContext, placeholders, new SelectionResolver.Callback() {
+            @Override
+            public void onResolved(List<MediaItem> matched, List<MediaItem> unmatched) {
+                for (int i = 0; i < matched.size(); i++) {
+                    MediaItem item = matched.get(i);
+                    if (mPlaceholderTypes.get(item.getId()) != null) {
+                        mItems.replace(item);
+                        mPlaceholderTypes.remove(item.getId());
+                    }
+                }
+                for (int i = 0; i < unmatched.size(); i++) {
+                    MediaItem item = unmatched.get(i);
+                    if (mPlaceholderTypes.get(item.getId()) != null) {
+                        remove(item);
+                    }
+                }
+                onResolved.run();
+            }
+        });
+    }
+
     public boolean add(MediaItem item) {
         boolean added = mItems.add(item);
         if (added) {
@@ -112,6 +210,7 @@ public class SelectedItemCollection {
     public boolean remove(MediaItem item) {
         boolean removed = mItems.remove(item);
         if (removed) {
+            mPlaceholderTypes.remove(item.getId());
             if (mItems.size() == 0) {
                 mCollectionType = COLLECTION_UNDEFINED;
             } else {
@@ -130,20 +229,35 @@ public class SelectedItemCollection {
             mCollectionType = collectionType;
         }
         mItems.clear();
+        mPlaceholderTypes.clear();
         mItems.addAll(items);
     }
 
     public void overwrite(ArrayList<MediaItem> items) {
         mItems.clear();
+        mPlaceholderTypes.clear();
         mItems.addAll(items);
     }
 
+    /**
+     * 用{@link #getDataWithBundle()}的结果替换
+     */
+    public void overwrite(Bundle bundle) {
+        restore((SelectionState) bundle.getParcelable(STATE_SELECTION));
+        mCollectionType = mItems.isEmpty()
+                ? COLLECTION_UNDEFINED : bundle.getInt(STATE_COLLECTION_TYPE, COLLECTION_UNDEFINED);
+    }
+
     public void clear() {
         mCollectionType = COLLECTION_UNDEFINED;
         mItems.clear();
+        mPlaceholderTypes.clear();
     }
 
 
+    /**
+     * 从{@link SelectionState}恢复之后，需要先通过{@link #resolve(Runnable)}还原完整的数据
+     */
     public ArrayList<MediaItem> asList(boolean includeOriginData) {
         if (includeOriginData) {
             ArrayList<MediaItem> result = new ArrayList<>();
@@ -151,10 +265,10 @@ public class SelectedItemCollection {
             if (!SelectionSpec.getInstance().selectedDataList.isEmpty()) {
                 result.addAll(SelectionSpec.getInstance().selectedDataList);
             }
-            result.addAll(mItems);
+            result.addAll(mItems.asList());
             return result;
         } else {
-            return new ArrayList<>(mItems);
+            return mItems.asList();
         }
     }
 
@@ -183,26 +297,53 @@ public class SelectedItemCollection {
     }
 
     /**
-     * 是否可以选中
+     * 与{@link #isSelected(MediaItem)}相同，不需要创建MediaItem
+     *
+     * @param id   MediaStore的_id，没有时为0
+     * @param path 文件路径，按_id找不到时使用
+     * @return
+     */
+    public boolean isSelected(long id, String path) {
+        return mItems.contains(id, path);
+    }
+
+    /**
+     * 是否可以选中。可能会查询ContentResolver以及执行过滤器，在主线程中使用{@link #checkAcceptable}
      *
      * @param item
      * @return
      */
     public IncapableCause isAcceptable(MediaItem item) {
         if (maxSelectableReached()) {
-            //选中数量超过最大值
-            int maxSelectable = SelectionSpec.getInstance().maxSelectable;
-            String cause;
+            return overCountCause();
+        }
 
-            cause = mContext.getString(
-                    R.string.error_over_count,
-                    maxSelectable
-            );
+        return AcceptabilityService.getInstance().checkNow(mContext, item);
+    }
 
-            return new IncapableCause(cause);
+    /**
+     * 是否可以选中，不阻塞主线程
+     *
+     * @param item
+     * @param callback 在主线程中回调，回调时会再次检查数量
+     */
+    public void checkAcceptable(MediaItem item, final AcceptabilityService.Callback callback) {
+        if (maxSelectableReached()) {
+            callback.onResult(overCountCause());
+            return;
         }
+        AcceptabilityService.getInstance().check(mContext, item, new AcceptabilityService.Callback() {
+            @Override
+            public void onResult(IncapableCause cause) {
+                callback.onResult(cause == null && maxSelectableReached() ? overCountCause() : cause);
+            }
+        });
+    }
 
-        return PhotoMetadataUtils.isAcceptable(mContext, item);
+    private IncapableCause overCountCause() {
+        //选中数量超过最大值
+        int maxSelectable = SelectionSpec.getInstance().maxSelectable;
+        return new IncapableCause(mContext.getString(R.string.error_over_count, maxSelectable));
     }
 
     /**
@@ -214,6 +355,14 @@ public class SelectedItemCollection {
         return mItems.size() == SelectionSpec.getInstance().maxSelectable;
     }
 
+    private int typeOf(MediaItem item) {
+        Integer type = mPlaceholderTypes.get(item.getId());
+        if (type != null) {
+            return type;
+        }
+        return item.isImage() ? COLLECTION_IMAGE : item.isVideo() ? COLLECTION_VIDEO : 0;
+    }
+
     public int getCollectionType() {
         return mCollectionType;
     }
@@ -222,8 +371,9 @@ public class SelectedItemCollection {
         boolean hasImage = false;
         boolean hasVideo = false;
         for (MediaItem i : mItems) {
-            if (i.isImage() && !hasImage) hasImage = true;
-            if (i.isVideo() && !hasVideo) hasVideo = true;
+            int type = typeOf(i);
+            if ((type & COLLECTION_IMAGE) != 0 && !hasImage) hasImage = true;
+            if ((type & COLLECTION_VIDEO) != 0 && !hasVideo) hasVideo = true;
         }
         if (hasImage && hasVideo) {
             mCollectionType = COLLECTION_MIXED;
@@ -239,8 +389,19 @@ public class SelectedItemCollection {
     }
 
     public int checkedNumOf(MediaItem item) {
-        int index = new ArrayList<>(mItems).indexOf(item);
-        return index == -1 ? CheckView.UNCHECKED : index + 1;
+        return checkedNumOf(item.getId(), item.getOriginalPath());
+    }
+
+    /**
+     * 与{@link #checkedNumOf(MediaItem)}相同，不需要创建MediaItem
+     *
+     * @param id   MediaStore的_id，没有时为0
+     * @param path 文件路径，按_id找不到时使用
+     * @return
+     */
+    public int checkedNumOf(long id, String path) {
+        int rank = mItems.rankOf(id, path);
+        return rank == -1 ? CheckView.UNCHECKED : rank;
     }
 
 }
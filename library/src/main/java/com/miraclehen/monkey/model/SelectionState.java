@@ -0,0 +1,129 @@
+package com.miraclehen.monkey.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.miraclehen.monkey.entity.MediaItem;
+
+import java.util.ArrayList;
+
+/**
+ * 选中集合的紧凑编码，用于保存状态以及在页面之间传递
+ * <p>
+ * 按选中的顺序只保存_id，以及每一项是否是图片、视频的位图，不序列化MediaItem中的路径、Uri等字符串。
+ * 没有_id的数据很少，完整保存并记录在顺序中的位置。恢复时先用只有_id的MediaItem占位，
+ * 需要完整数据时再从已经加载的数据或者MediaStore中还原，见{@link SelectedItemCollection#resolve}
+ */
+public final class SelectionState implements Parcelable {
+
+    /**
+     * 有_id的数据，按选中的顺序
+     */
+    final long[] mIds;
+    final long[] mImageBits;
+    final long[] mVideoBits;
+    /**
+     * 没有_id的数据以及在选中顺序中的位置
+     */
+    final ArrayList<MediaItem> mLooseItems;
+    final int[] mLoosePositions;
+
+    private SelectionState(long[] ids, long[] imageBits, long[] videoBits,
+                           ArrayList<MediaItem> looseItems, int[] loosePositions) {
+        mIds = ids;
+        mImageBits = imageBits;
+        mVideoBits = videoBits;
+        mLooseItems = looseItems;
+        mLoosePositions = loosePositions;
+    }
+
+    /**
+     * @param items   按选中顺序排列的数据
+     * @param types   每一项的类型，{@link SelectedItemCollection#COLLECTION_IMAGE}、
+     *                {@link SelectedItemCollection#COLLECTION_VIDEO}或者0
+     */
+    static SelectionState of(ArrayList<MediaItem> items, int[] types) {
+        int looseCount = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getId() <= 0) {
+                looseCount++;
+            }
+        }
+        int count = items.size() - looseCount;
+        long[] ids = new long[count];
+        long[] imageBits = new long[(count + 63) >> 6];
+        long[] videoBits = new long[(count + 63) >> 6];
+        ArrayList<MediaItem> looseItems = new ArrayList<>(looseCount);
+        int[] loosePositions = new int[looseCount];
+        int index = 0;
+        for (int i = 0; i < items.size(); i++) {
+            MediaItem item = items.get(i);
+            if (item.getId() <= 0) {
+                loosePositions[looseItems.size()] = i;
+                looseItems.add(item);
+                continue;
+            }
+            ids[index] = item.getId();
+            if ((types[i] & SelectedItemCollection.COLLECTION_IMAGE) != 0) {
+                imageBits[index >> 6] |= 1L << index;
+            }
+            if ((types[i] & SelectedItemCollection.COLLECTION_VIDEO) != 0) {
+                videoBits[index >> 6] |= 1L << index;
+            }
+            index++;
+        }
+        return new SelectionState(ids, imageBits, videoBits, looseItems, loosePositions);
+    }
+
+    public int size() {
+        return mIds.length + mLooseItems.size();
+    }
+
+    /**
+     * 第index个有_id的数据的类型
+     */
+    int typeOf(int index) {
+        int type = 0;
+        if ((mImageBits[index >> 6] & (1L << index)) != 0) {
+            type |= SelectedItemCollection.COLLECTION_IMAGE;
+        }
+        if ((mVideoBits[index >> 6] & (1L << index)) != 0) {
+            type |= SelectedItemCollection.COLLECTION_VIDEO;
+        }
+        return type;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLongArray(mIds);
+        dest.writeLongArray(mImageBits);
+        dest.writeLongArray(mVideoBits);
+        dest.writeTypedList(mLooseItems);
+        dest.writeIntArray(mLoosePositions);
+    }
+
+    private SelectionState(Parcel in) {
+        mIds = in.createLongArray();
+        mImageBits = in.createLongArray();
+        mVideoBits = in.createLongArray();
+        mLooseItems = in.createTypedArrayList(MediaItem.CREATOR);
+        mLoosePositions = in.createIntArray();
+    }
+
+    public static final Creator<SelectionState> CREATOR = new Creator<SelectionState>() {
+        @Override
+        public SelectionState createFromParcel(Parcel source) {
+            return new SelectionState(source);
+        }
+
+        @Override
+        public SelectionState[] newArray(int size) {
+            return new SelectionState[size];
+        }
+    };
+}
@@ -21,12 +21,10 @@ import android.support.annotation.Nullable;
 
 import com.miraclehen.monkey.entity.Album;
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
 import com.miraclehen.monkey.model.AlbumMediaCollection;
 import com.miraclehen.monkey.ui.adapter.PreviewPagerAdapter;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class AlbumPreviewActivity extends BasePreviewActivity implements
         AlbumMediaCollection.AlbumMediaCallbacks {
 
@@ -65,18 +63,17 @@ public class AlbumPreviewActivity extends BasePreviewActivity implements
         if (cursor == null) {
             return;
         }
-        List<MediaItem> items = new ArrayList<>();
-        while (cursor.moveToNext()) {
-            items.add(MediaItem.valueOf(cursor));
-        }
+        //Loader已经在后台线程中把数据读入了MediaTable，翻页时才创建MediaItem
+        MediaTable table = MediaTable.from(cursor);
+        mSelectedCollection.resolve(table);
         PreviewPagerAdapter adapter = (PreviewPagerAdapter) mPager.getAdapter();
-        adapter.addAll(items);
+        adapter.setTable(table);
         adapter.notifyDataSetChanged();
         if (!mIsAlreadySetPosition) {
             //onAlbumMediaLoad is called many times..
             mIsAlreadySetPosition = true;
             MediaItem selected = getIntent().getParcelableExtra(EXTRA_ITEM);
-            int selectedIndex = items.indexOf(selected);
+            int selectedIndex = table.indexOfPath(selected.getOriginalPath());
             mPager.setCurrentItem(selectedIndex, false);
             mPreviousPos = selectedIndex;
         }
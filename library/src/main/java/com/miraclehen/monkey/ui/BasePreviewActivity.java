@@ -29,6 +29,7 @@ import com.miraclehen.monkey.R;
 import com.miraclehen.monkey.entity.IncapableCause;
 import com.miraclehen.monkey.entity.MediaItem;
 import com.miraclehen.monkey.entity.SelectionSpec;
+import com.miraclehen.monkey.model.AcceptabilityService;
 import com.miraclehen.monkey.model.SelectedItemCollection;
 import com.miraclehen.monkey.ui.adapter.PreviewPagerAdapter;
 import com.miraclehen.monkey.ui.widget.CheckView;
@@ -93,7 +94,7 @@ public abstract class BasePreviewActivity extends AppCompatActivity implements V
 
             @Override
             public void onClick(View v) {
-                MediaItem item = mAdapter.getMediaItem(mPager.getCurrentItem());
+                final MediaItem item = mAdapter.getMediaItem(mPager.getCurrentItem());
                 if (mSelectedCollection.isSelected(item)) {
                     mSelectedCollection.remove(item);
                     if (mSpec.countable) {
@@ -101,17 +102,30 @@ public abstract class BasePreviewActivity extends AppCompatActivity implements V
                     } else {
                         mCheckView.setChecked(false);
                     }
-                } else {
-                    if (assertAddSelection(item)) {
-                        mSelectedCollection.add(item);
-                        if (mSpec.countable) {
-                            mCheckView.setCheckedNum(mSelectedCollection.checkedNumOf(item));
-                        } else {
-                            mCheckView.setChecked(true);
+                    updateApplyButton();
+                    return;
+                }
+                mSelectedCollection.checkAcceptable(item, new AcceptabilityService.Callback() {
+                    @Override
+                    public void onResult(IncapableCause cause) {
+                        if (cause != null) {
+                            IncapableCause.handleCause(BasePreviewActivity.this, cause);
+                            return;
+                        }
+                        if (!mSelectedCollection.add(item)) {
+                            return;
+                        }
+                        //回调之前可能已经翻页
+                        if (item.equals(mAdapter.getMediaItem(mPager.getCurrentItem()))) {
+                            if (mSpec.countable) {
+                                mCheckView.setCheckedNum(mSelectedCollection.checkedNumOf(item));
+                            } else {
+                                mCheckView.setChecked(true);
+                            }
                         }
+                        updateApplyButton();
                     }
-                }
-                updateApplyButton();
+                });
             }
         });
         updateApplyButton();
@@ -207,10 +221,4 @@ public abstract class BasePreviewActivity extends AppCompatActivity implements V
         intent.putExtra(EXTRA_RESULT_APPLY, apply);
         setResult(Activity.RESULT_OK, intent);
     }
-
-    private boolean assertAddSelection(MediaItem item) {
-        IncapableCause cause = mSelectedCollection.isAcceptable(item);
-        IncapableCause.handleCause(this, cause);
-        return cause == null;
-    }
 }
@@ -1,6 +1,7 @@
 package com.miraclehen.monkey.ui;
 
 import android.app.Dialog;
+import android.content.DialogInterface;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.app.DialogFragment;
@@ -9,6 +10,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
+import android.widget.TextView;
 
 import com.miraclehen.monkey.R;
 
@@ -18,6 +20,10 @@ import com.miraclehen.monkey.R;
  */
 public class LoadingDialog extends DialogFragment {
 
+    private TextView mTextView;
+    private int mDone;
+    private int mTotal;
+
     public static LoadingDialog newInstance() {
         Bundle args = new Bundle();
         LoadingDialog fragment = new LoadingDialog();
@@ -25,11 +31,58 @@ public class LoadingDialog extends DialogFragment {
         return fragment;
     }
 
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            //页面重建之后原来的任务已经不存在
+            dismissAllowingStateLoss();
+        }
+    }
+
     @Nullable
     @Override
     public View onCreateView(LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         getDialog().requestWindowFeature(Window.FEATURE_NO_TITLE);
-        return inflater.inflate(R.layout.view_loading, null);
+        View view = inflater.inflate(R.layout.view_loading, null);
+        mTextView = (TextView) view.findViewById(R.id.loading_text);
+        updateProgress();
+        return view;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mTextView = null;
+    }
+
+    /**
+     * 显示进度，view创建之前设置的进度在创建之后显示
+     *
+     * @param done  已完成的数量
+     * @param total 总数
+     */
+    public void setProgress(int done, int total) {
+        mDone = done;
+        mTotal = total;
+        updateProgress();
+    }
+
+    private void updateProgress() {
+        if (mTextView != null && mTotal > 0) {
+            mTextView.setText(getString(R.string.loading_progress, mDone, mTotal));
+        }
+    }
+
+    /**
+     * 按返回键取消时通知实现了{@link OnCancelListener}的Activity
+     */
+    @Override
+    public void onCancel(DialogInterface dialog) {
+        super.onCancel(dialog);
+        if (getActivity() instanceof OnCancelListener) {
+            ((OnCancelListener) getActivity()).onLoadingCanceled();
+        }
     }
 
     @Override
@@ -43,4 +96,9 @@ public class LoadingDialog extends DialogFragment {
             dialog.getWindow().setLayout((int) (dm.widthPixels * 0.5), (int) (dm.widthPixels * 0.5));
         }
     }
+
+    public interface OnCancelListener {
+
+        void onLoadingCanceled();
+    }
 }
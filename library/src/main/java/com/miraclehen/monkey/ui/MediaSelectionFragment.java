@@ -21,24 +21,35 @@ import android.os.Bundle;
 import android.provider.MediaStore;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.miraclehen.monkey.R;
 import com.miraclehen.monkey.UICallback;
 import com.miraclehen.monkey.entity.Album;
+import com.miraclehen.monkey.entity.DateGrouping;
 import com.miraclehen.monkey.entity.IncapableCause;
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
 import com.miraclehen.monkey.entity.SelectionSpec;
 import com.miraclehen.monkey.listener.CatchSpecCallbackInvoker;
+import com.miraclehen.monkey.loader.SelectionResolver;
+import com.miraclehen.monkey.model.AcceptabilityService;
 import com.miraclehen.monkey.model.AlbumMediaCollection;
+import com.miraclehen.monkey.model.AlbumMediaPager;
+import com.miraclehen.monkey.model.MediaChangeTracker;
+import com.miraclehen.monkey.model.MediaDelta;
 import com.miraclehen.monkey.model.SelectedItemCollection;
 import com.miraclehen.monkey.ui.adapter.AlbumMediaAdapter;
-import com.miraclehen.monkey.ui.adapter.CursorBean;
-import com.miraclehen.monkey.utils.DateTimeUtil;
+import com.miraclehen.monkey.ui.adapter.DateHeaderDecoration;
+import com.miraclehen.monkey.ui.adapter.SectionIndex;
+import com.miraclehen.monkey.ui.widget.TimelineScroller;
 
 import java.util.List;
 
@@ -47,12 +58,21 @@ import java.util.List;
  * 一本相册的内容
  */
 public class MediaSelectionFragment extends Fragment implements
-        AlbumMediaCollection.AlbumMediaCallbacks {
+        AlbumMediaCollection.AlbumMediaCallbacks, AlbumMediaPager.PageCallbacks, MediaChangeTracker.ChangeCallbacks {
 
     public static final String EXTRA_ALBUM = "extra_album";
 
     private final AlbumMediaCollection mAlbumMediaCollection = new AlbumMediaCollection();
+    /**
+     * 分页加载，仅当SelectionSpec.pageSize > 0时使用
+     */
+    private AlbumMediaPager mAlbumMediaPager;
+    /**
+     * 监听媒体库变化，增量更新列表。分页加载时不使用
+     */
+    private MediaChangeTracker mChangeTracker;
     private RecyclerView mRecyclerView;
+    private TimelineScroller mTimelineScroller;
     private AlbumMediaAdapter mAdapter;
     private SelectionProvider mSelectionProvider;
 
@@ -61,6 +81,14 @@ public class MediaSelectionFragment extends Fragment implements
     private Album mAlbum;
     private SelectionSpec mSelectionSpec;
     private SelectedItemCollection mSelectedItemCollection;
+    /**
+     * 正在查找用户传入的已选中数据，查找完成之后为null
+     */
+    private SelectionResolver mSelectionResolver;
+    /**
+     * 查找已选中数据期间加载完成的数据，查找完成之后再显示
+     */
+    private Cursor mDeferredCursor;
 
     /**
      * 拍摄之后的回调
@@ -110,6 +138,7 @@ public class MediaSelectionFragment extends Fragment implements
     public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         mRecyclerView = view.findViewById(R.id.recyclerview);
+        mTimelineScroller = view.findViewById(R.id.timeline_scroller);
     }
 
     @Override
@@ -119,6 +148,15 @@ public class MediaSelectionFragment extends Fragment implements
         mSelectionSpec = SelectionSpec.getInstance();
 
         mSelectedItemCollection = mSelectionProvider.provideSelectedItemCollection();
+        if (mAlbum.isAll()) {
+            //获取指定日期区间的数据，直接查询MediaStore，与列表的加载无关
+            CatchSpecCallbackInvoker.invokeDateCallback(getContext());
+        }
+        if (!mSelectionSpec.selectedDataList.isEmpty() && mSelectedItemCollection.isEmpty()) {
+            //与相册的加载同时进行，第一次绑定之前加入选中集合
+            mSelectionResolver = SelectionResolver.start(getContext(), mSelectionSpec.selectedDataList,
+                    mResolverCallback);
+        }
         mAdapter = new AlbumMediaAdapter(getContext(), mAlbum,
                 mSelectedItemCollection, mRecyclerView, mSelectionSpec.selectedDataList);
         mAdapter.setUICallback(mUICallback);
@@ -128,26 +166,115 @@ public class MediaSelectionFragment extends Fragment implements
         mRecyclerView.setLayoutManager(new NpaGridLayoutManager(getContext(), 4));
 //        mRecyclerView.addItemDecoration(new SpacesItemDecoration(UIUtils.convertDIPToPixels(getContext(), 2)));
 
+        if (mSelectionSpec.groupByDate && mSelectionSpec.stickyDateHeader) {
+            mRecyclerView.addItemDecoration(new DateHeaderDecoration(mRecyclerView, mAdapter));
+        }
         mRecyclerView.setAdapter(mAdapter);
-        mAlbumMediaCollection.onCreate(getActivity(), this);
-        mAlbumMediaCollection.load(mAlbum, mSelectionSpec.captureType);
+        if (mSelectionSpec.timelineScroller) {
+            mTimelineScroller.attachTo(mRecyclerView, mAdapter);
+        } else {
+            mTimelineScroller.setVisibility(View.GONE);
+        }
+        if (mSelectionSpec.groupByDate && mSelectionSpec.dateGroupings != null
+                && mSelectionSpec.dateGroupings.size() > 1) {
+            //双指缩放切换分组粒度
+            final ScaleGestureDetector detector = new ScaleGestureDetector(getContext(), mScaleListener);
+            mRecyclerView.addOnItemTouchListener(new RecyclerView.SimpleOnItemTouchListener() {
+                @Override
+                public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+                    detector.onTouchEvent(e);
+                    return detector.isInProgress();
+                }
+
+                @Override
+                public void onTouchEvent(RecyclerView rv, MotionEvent e) {
+                    detector.onTouchEvent(e);
+                }
+            });
+        }
+        if (mSelectionSpec.pageSize > 0) {
+            //分页加载
+            mAlbumMediaPager = new AlbumMediaPager(getContext(), mSelectionSpec.pageSize, this);
+            mRecyclerView.addOnScrollListener(mPagingScrollListener);
+            mAlbumMediaPager.start(mAlbum, mSelectionSpec.captureType);
+        } else {
+            mAlbumMediaCollection.onCreate(getActivity(), this);
+            mAlbumMediaCollection.load(mAlbum, mSelectionSpec.captureType, true);
+            mChangeTracker = new MediaChangeTracker(getContext(), mAlbum, this);
+        }
 
     }
 
+    /**
+     * 双指缩放切换分组粒度：张开切换到更细的粒度，捏合切换到更粗的粒度，每次手势只切换一级
+     */
+    private final ScaleGestureDetector.SimpleOnScaleGestureListener mScaleListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                private static final float THRESHOLD = 1.3f;
+                private float mScale;
+                private boolean mSwitched;
+
+                @Override
+                public boolean onScaleBegin(ScaleGestureDetector detector) {
+                    mScale = 1f;
+                    mSwitched = false;
+                    return true;
+                }
+
+                @Override
+                public boolean onScale(ScaleGestureDetector detector) {
+                    mScale *= detector.getScaleFactor();
+                    if (mSwitched) {
+                        return true;
+                    }
+                    List<DateGrouping> groupings = mSelectionSpec.dateGroupings;
+                    int index = groupings.indexOf(mAdapter.getDateGrouping());
+                    if (mScale > THRESHOLD && index > 0) {
+                        mAdapter.setDateGrouping(groupings.get(index - 1));
+                        mSwitched = true;
+                    } else if (mScale < 1 / THRESHOLD && index < groupings.size() - 1) {
+                        mAdapter.setDateGrouping(groupings.get(index + 1));
+                        mSwitched = true;
+                    }
+                    return true;
+                }
+            };
+
+    /**
+     * 滑动到接近底部时加载下一页
+     */
+    private final RecyclerView.OnScrollListener mPagingScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            if (dy <= 0 || mAlbumMediaPager == null || !mAlbumMediaPager.hasMore()) {
+                return;
+            }
+            GridLayoutManager layoutManager = (GridLayoutManager) recyclerView.getLayoutManager();
+            int lastVisible = layoutManager.findLastVisibleItemPosition();
+            //剩余不到两屏时预加载
+            int threshold = (layoutManager.getChildCount() + 1) * 2;
+            if (lastVisible >= mAdapter.getItemCount() - threshold) {
+                mAlbumMediaPager.loadNextPage();
+            }
+        }
+    };
+
     AlbumMediaAdapter.OnDataChangeListener mOnDataChangeListener = new AlbumMediaAdapter.OnDataChangeListener() {
         @Override
-        public void processFinished(Album album, List<CursorBean> dataList, Cursor cursor) {
-            if (dataList == null || cursor.isClosed()) {
+        public void processFinished(Album album, SectionIndex index, Cursor cursor) {
+            if (index == null || cursor.isClosed()) {
                 return;
             }
             //回调 获取日期最新的一条数据
-            CatchSpecCallbackInvoker.invokeNewestCallback(mAlbum, dataList, cursor);
+            CatchSpecCallbackInvoker.invokeNewestCallback(mAlbum, index, cursor);
 
             //自动滚动到相应日期位置
             if (album.isAll() && mSelectionSpec.autoScrollDate > 0) {
-                int adapterPos = DateTimeUtil.calAutoScrollDatePosition(album, dataList, cursor);
+                int adapterPos = mAdapter.findPositionOfDate(mSelectionSpec.autoScrollDate);
                 mSelectionSpec.autoScrollDate = 0;
-                mRecyclerView.scrollToPosition(adapterPos);
+                if (adapterPos != -1) {
+                    mRecyclerView.scrollToPosition(adapterPos);
+                }
             }
         }
     };
@@ -164,11 +291,41 @@ public class MediaSelectionFragment extends Fragment implements
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        mAlbumMediaCollection.onDestroy();
+        if (mSelectionResolver != null) {
+            mSelectionResolver.cancel();
+            mSelectionResolver = null;
+        }
+        mDeferredCursor = null;
+        if (mAlbumMediaPager != null) {
+            mRecyclerView.removeOnScrollListener(mPagingScrollListener);
+            mAdapter.swapCursor(null);
+            mAlbumMediaPager.onDestroy();
+        } else {
+            mChangeTracker.onDestroy();
+            mAlbumMediaCollection.onDestroy();
+        }
+    }
+
+    /**
+     * 滚动到某个时间所在或者最接近的位置
+     *
+     * @param date 时间，单位毫秒
+     */
+    public void scrollToDate(long date) {
+        if (mAdapter == null) {
+            return;
+        }
+        int position = mAdapter.findPositionOfDate(date);
+        if (position != -1) {
+            ((GridLayoutManager) mRecyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
+        }
     }
 
     public void refreshMediaGrid() {
-        mAdapter.notifyDataSetChanged();
+        //预览页面返回的选中集合只有_id，用已经加载的数据还原
+        mSelectedItemCollection.resolve(mAdapter.getTable());
+        //只刷新勾选框，不重新加载缩略图
+        mAdapter.refreshCheckState();
     }
 
     /**
@@ -199,34 +356,127 @@ public class MediaSelectionFragment extends Fragment implements
                 return;
             } else {
                 //不直接返回，并且勾选此数据. 在页面上刷新
-                if (assertAddSelection(getContext(), mediaItem)) {
-                    mSelectedItemCollection.add(mediaItem);
-                    //更新底部工具栏个数
-                    updateBottomBarCount();
-                }
+                addCaptured(mediaItem);
             }
             //消费掉此事件
             consumeCaptureEvent();
         }
 
         cursor.moveToPosition(-1);
-        processData(cursor);
-        cursor.moveToPosition(-1);
+        if (mSelectionResolver != null) {
+            //避免先显示未选中的状态
+            mDeferredCursor = cursor;
+            return;
+        }
+        showCursor(cursor);
+    }
+
+    private void showCursor(Cursor cursor) {
+        if (!mSelectedItemCollection.isResolved()) {
+            //恢复状态之后的选中集合只有_id，用加载的数据还原
+            mSelectedItemCollection.resolve(MediaTable.from(cursor));
+        }
         mAdapter.swapCursor(cursor);
 
+        if (mChangeTracker != null) {
+            //以这次加载的数据作为增量更新的起点，快照之后的变化增量合并
+            mChangeTracker.start(mAlbumMediaCollection.getSnapshotStamp());
+        }
     }
 
     /**
-     * 是否能添加
+     * 用户传入的已选中数据查找完成
+     * <p>
+     * 在媒体库中找到的加入选中集合，没有找到的保留在{@link SelectionSpec#selectedDataList}中
+     */
+    private final SelectionResolver.Callback mResolverCallback = new SelectionResolver.Callback() {
+        @Override
+        public void onResolved(List<MediaItem> matched, List<MediaItem> unmatched) {
+            mSelectionResolver = null;
+            for (int i = 0; i < matched.size(); i++) {
+                mSelectedItemCollection.add(matched.get(i));
+            }
+            mSelectionSpec.selectedDataList.clear();
+            mSelectionSpec.selectedDataList.addAll(unmatched);
+            updateBottomBarCount();
+
+            if (mDeferredCursor != null) {
+                Cursor cursor = mDeferredCursor;
+                mDeferredCursor = null;
+                showCursor(cursor);
+            } else {
+                mAdapter.refreshCheckState();
+            }
+        }
+    };
+
+    /**
+     * 媒体库发生变化，增量更新列表
+     *
+     * @param delta
+     */
+    @Override
+    public void onMediaChanged(MediaDelta delta) {
+        mAdapter.applyDelta(delta, new Runnable() {
+            @Override
+            public void run() {
+                if (isCaptureLater && mAdapter.getCursor() != null) {
+                    processCaptureDelta(mAdapter.getCursor());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onReloadRequired() {
+        mAlbumMediaCollection.restart(mAlbum, mSelectionSpec.captureType);
+    }
+
+    /**
+     * 增量更新之后，处理拍摄的数据
+     *
+     * @param cursor
+     */
+    private void processCaptureDelta(Cursor cursor) {
+        Cursor captureCursor = obtainCaptureCursor(cursor);
+        if (captureCursor == null) {
+            //拍摄的数据还没有出现在媒体库中，等待下一次变化
+            return;
+        }
+        MediaItem mediaItem = MediaItem.valueOf(captureCursor);
+        if (mSelectionSpec.captureFinishBack) {
+            //直接返回该图片或者视频数据
+            mCaptureLaterCallback.later(mediaItem);
+            return;
+        }
+        //不直接返回，并且勾选此数据
+        addCaptured(mediaItem);
+        consumeCaptureEvent();
+    }
+
+    /**
+     * 勾选拍摄的数据。是否可以选中在后台判断，完成之后刷新勾选框以及底部工具栏
      *
-     * @param context
      * @param item
-     * @return
      */
-    private boolean assertAddSelection(Context context, MediaItem item) {
-        IncapableCause cause = mSelectedItemCollection.isAcceptable(item);
-        IncapableCause.handleCause(context, cause);
-        return cause == null;
+    private void addCaptured(final MediaItem item) {
+        final Context context = getContext();
+        mSelectedItemCollection.checkAcceptable(item, new AcceptabilityService.Callback() {
+            @Override
+            public void onResult(IncapableCause cause) {
+                if (!isAdded()) {
+                    return;
+                }
+                if (cause != null) {
+                    IncapableCause.handleCause(context, cause);
+                    return;
+                }
+                if (mSelectedItemCollection.add(item)) {
+                    updateBottomBarCount();
+                    mAdapter.refreshCheckState();
+                }
+            }
+        });
     }
 
     /**
@@ -261,27 +511,6 @@ public class MediaSelectionFragment extends Fragment implements
     }
 
 
-    /**
-     * 处理数据。
-     * 将外部传进来的selectedUris与本地的数据的uri对比。如果一致。将添加到mSelectedItemCollection中。
-     */
-    private void processData(Cursor cursor) {
-        if (!mSelectedItemCollection.isEmpty()) {
-            return;
-        }
-        while (cursor.moveToNext()) {
-            final MediaItem item = MediaItem.valueOf(cursor);
-            if (mSelectionSpec.selectedDataList.contains(item)) {
-                mSelectedItemCollection.add(item);
-                mSelectionSpec.selectedDataList.remove(item);
-            }
-            if (mSelectionSpec.selectedDataList.size() == 0) {
-                break;
-            }
-        }
-        updateBottomBarCount();
-    }
-
     /**
      * 更新底部工具栏数字
      */
@@ -293,9 +522,29 @@ public class MediaSelectionFragment extends Fragment implements
 
     @Override
     public void onAlbumMediaReset() {
+        mDeferredCursor = null;
         mAdapter.swapCursor(null);
     }
 
+    /**
+     * 分页加载的第一页，与一次全部加载的处理方式相同
+     *
+     * @param cursor
+     */
+    @Override
+    public void onFirstPageLoad(Cursor cursor) {
+        onAlbumMediaLoad(cursor);
+    }
+
+    /**
+     * 分页加载的后续页
+     */
+    @Override
+    public void onPageAppend(Cursor cursor, Cursor page, int positionStart, int itemCount) {
+        page.moveToPosition(-1);
+        mAdapter.appendCursor(cursor, positionStart, itemCount);
+    }
+
     public interface SelectionProvider {
         SelectedItemCollection provideSelectedItemCollection();
     }
@@ -307,13 +556,18 @@ public class MediaSelectionFragment extends Fragment implements
      * @param capturePath
      */
     public void reloadForCapture(OnGetTargetMediaItemLaterCallback callback, String capturePath) {
-        //重新加载数据
-        mAlbumMediaCollection.restart(mAlbum, mSelectionSpec.captureType);
-
         //给相关变量赋值
         mCaptureLaterCallback = callback;
         mCapturePath = capturePath;
         isCaptureLater = true;
+
+        if (mAlbumMediaPager != null) {
+            //重新加载数据
+            mAlbumMediaPager.start(mAlbum, mSelectionSpec.captureType);
+        } else {
+            //只查询新增的数据
+            mChangeTracker.checkNow();
+        }
     }
 
     public interface OnGetTargetMediaItemLaterCallback {
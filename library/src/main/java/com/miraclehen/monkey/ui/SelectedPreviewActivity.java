@@ -19,7 +19,6 @@ import android.os.Bundle;
 import android.support.annotation.Nullable;
 
 import com.miraclehen.monkey.entity.MediaItem;
-import com.miraclehen.monkey.model.SelectedItemCollection;
 
 import java.util.List;
 
@@ -30,17 +29,28 @@ public class SelectedPreviewActivity extends BasePreviewActivity {
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        Bundle bundle = getIntent().getBundleExtra(EXTRA_DEFAULT_BUNDLE);
-        List<MediaItem> selected = bundle.getParcelableArrayList(SelectedItemCollection.STATE_SELECTION);
-        mAdapter.addAll(selected);
-        mAdapter.notifyDataSetChanged();
-        if (mSpec.countable) {
-            mCheckView.setCheckedNum(1);
-        } else {
-            mCheckView.setChecked(true);
-        }
-        mPreviousPos = 0;
-        updateSize(selected.get(0));
+        //传入的选中集合只有_id，还原之后再显示
+        mSelectedCollection.resolve(new Runnable() {
+            @Override
+            public void run() {
+                if (isFinishing()) {
+                    return;
+                }
+                List<MediaItem> selected = mSelectedCollection.asList(false);
+                if (selected.isEmpty()) {
+                    return;
+                }
+                mAdapter.addAll(selected);
+                mAdapter.notifyDataSetChanged();
+                if (mSpec.countable) {
+                    mCheckView.setCheckedNum(1);
+                } else {
+                    mCheckView.setChecked(true);
+                }
+                mPreviousPos = 0;
+                updateSize(selected.get(0));
+            }
+        });
     }
 
 }
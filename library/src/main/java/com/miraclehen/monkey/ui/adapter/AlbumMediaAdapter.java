@@ -33,28 +33,31 @@ import com.miraclehen.monkey.CaptureType;
 import com.miraclehen.monkey.R;
 import com.miraclehen.monkey.UICallback;
 import com.miraclehen.monkey.entity.Album;
+import com.miraclehen.monkey.entity.DateGrouping;
 import com.miraclehen.monkey.entity.IncapableCause;
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
 import com.miraclehen.monkey.entity.SelectionSpec;
+import com.miraclehen.monkey.listener.OnItemRangeCheckChangeListener;
+import com.miraclehen.monkey.model.AcceptabilityMap;
+import com.miraclehen.monkey.model.AcceptabilityService;
+import com.miraclehen.monkey.model.MediaDelta;
 import com.miraclehen.monkey.model.SelectedItemCollection;
 import com.miraclehen.monkey.ui.widget.CheckView;
+import com.miraclehen.monkey.ui.widget.DragSelectTouchListener;
 import com.miraclehen.monkey.ui.widget.MediaGrid;
+import com.miraclehen.monkey.ui.widget.TimelineScroller;
+import com.miraclehen.monkey.utils.DateLabels;
 import com.miraclehen.monkey.utils.DateTimeUtil;
+import com.miraclehen.monkey.utils.TaskExecutor;
+import com.miraclehen.monkey.utils.ZoneOffsetRanges;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.TimeZone;
 
 public class AlbumMediaAdapter extends
         RecyclerViewCursorAdapter<RecyclerView.ViewHolder> implements
-        MediaGrid.OnMediaGridClickListener {
+        MediaGrid.OnMediaGridClickListener, MediaGrid.OnMediaGridLongClickListener, TimelineScroller.LabelProvider {
 
     private static final String TAG = "AlbumMediaAdapter";
     private static final int VIEW_TYPE_CAPTURE = 0x01;
@@ -62,6 +65,24 @@ public class AlbumMediaAdapter extends
     private static final int VIEW_TYPE_DATE = 0x03;
     //拍摄视频Item
     private static final int VIEW_TYPE_RECORD = 0x04;
+
+    /**
+     * 局部刷新的内容。只刷新勾选框，不重新绑定数据，也不重新加载缩略图
+     */
+    enum Payload {
+        /**
+         * 此位置的选中状态变化
+         */
+        CHECK_STATE,
+        /**
+         * 此位置的选中序号可能变化，其他位置取消选中之后
+         */
+        CHECK_NUMBER,
+        /**
+         * 是否可以选中变化，选中数量达到或者离开最大值时
+         */
+        ENABLED_STATE
+    }
     //已选中的集合
     private final SelectedItemCollection mSelectedCollection;
     private final Album mAlbum;
@@ -80,13 +101,43 @@ public class AlbumMediaAdapter extends
     private int mDateCount = 0;
     private Context mContext;
 
-    private HashMap<Long, Integer> mDateWithPosMap = new HashMap<>();
-    private ArrayList<Long> mDateList = new ArrayList<>();
-    private List<CursorBean> mCursorBeanList = new ArrayList<>();
+    /**
+     * 与mCursor对应的按列保存的数据。绑定视图、计算视图类型时直接读取数组，不移动cursor
+     */
+    private MediaTable mTable = MediaTable.empty();
+    /**
+     * 日期分组，与mTable对应。在后台线程中生成，在主线程中与mTable一起替换
+     */
+    private SectionIndex mSectionIndex;
+    /**
+     * 正在后台分组、还没有显示的数据
+     */
+    private MediaTable mPendingTable;
+    //每次替换数据都会加一，用于丢弃过期的分组结果
+    private int mIndexGeneration;
+    /**
+     * 当前的分组粒度
+     */
+    private DateGrouping mDateGrouping;
+    /**
+     * 日期视图是否由{@link DateHeaderDecoration}绘制。此时适配器中只有数据，没有日期视图
+     */
+    private final boolean mHeaderDecoration;
 
     private OnDataChangeListener mOnDataChangeListener;
-
-    private boolean isProcessData = false;
+    /**
+     * 长按之后滑动多选，不支持时为null
+     */
+    private DragSelectTouchListener mDragSelectTouchListener;
+    /**
+     * 每一行是否可以选中，与mTable对应时才有效。在后台判断，完成之后只刷新勾选框
+     */
+    private AcceptabilityMap mAcceptability = AcceptabilityMap.empty();
+    private AcceptabilityMap.Task mAcceptabilityTask;
+    /**
+     * 不分组时计算时间轴气泡中的年月
+     */
+    private ZoneOffsetRanges mScrollOffsetRanges;
 
 
 
@@ -98,7 +149,7 @@ public class AlbumMediaAdapter extends
         /**
          * 当处理数据完毕回调
          */
-        void processFinished(Album album, List<CursorBean> dataList, Cursor cursor);
+        void processFinished(Album album, SectionIndex index, Cursor cursor);
     }
 
     public AlbumMediaAdapter(Context context, Album album, SelectedItemCollection selectedCollection,
@@ -107,6 +158,8 @@ public class AlbumMediaAdapter extends
         mContext = context;
         mAlbum = album;
         mSelectionSpec = SelectionSpec.getInstance();
+        mDateGrouping = mSelectionSpec.getDefaultDateGrouping();
+        mHeaderDecoration = mSelectionSpec.groupByDate && mSelectionSpec.stickyDateHeader;
 
         mSelectedCollection = selectedCollection;
 
@@ -119,121 +172,506 @@ public class AlbumMediaAdapter extends
 
     @Override
     public void swapCursor(Cursor newCursor) {
-        isProcessData = false;
-        super.swapCursor(newCursor);
+        //丢弃正在进行的分组
+        mIndexGeneration++;
+        mPendingTable = null;
+        if (newCursor == null) {
+            super.swapCursor(null);
+            mTable = MediaTable.empty();
+            mSectionIndex = null;
+            updateAcceptability(AcceptabilityMap.empty());
+            return;
+        }
+        //Loader返回的cursor已经在后台线程中读入了MediaTable，这里不会再复制
+        MediaTable table = MediaTable.from(newCursor);
+        if (!SelectionSpec.getInstance().groupByDate) {
+            updateAcceptability(AcceptabilityMap.unknown(table));
+            mTable = table;
+            super.swapCursor(newCursor);
+            return;
+        }
+        //在后台线程中分组，完成之后与数据一起替换。在此之前继续显示原来的数据
+        mPendingTable = table;
+        buildSectionIndex(table, null, null);
     }
 
-    private void processData(Cursor newCursor) {
-        //日期与cursor的位置
-        if (mDateWithPosMap == null) {
+    /**
+     * 在后台线程中生成分组，完成之后在主线程中替换数据以及分组
+     *
+     * @param table     新的数据
+     * @param result    增量更新的结果，不为null时只通知变化的位置，否则整体刷新
+     * @param onApplied 替换完成之后执行
+     */
+    private void buildSectionIndex(final MediaTable table, final MediaDelta.Result result, final Runnable onApplied) {
+        final int generation = mIndexGeneration;
+        final Context context = mContext.getApplicationContext();
+        final DateGrouping grouping = mDateGrouping;
+        TaskExecutor.executeOnCompute(new Runnable() {
+            @Override
+            public void run() {
+                final SectionIndex index = SectionIndex.build(context, table, grouping);
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mIndexGeneration) {
+                            //数据已经再次变化
+                            return;
+                        }
+                        mPendingTable = null;
+                        SectionIndex oldIndex = mSectionIndex;
+                        updateAcceptability(result == null ? AcceptabilityMap.unknown(table)
+                                : carryAcceptability(table, result.oldToNew));
+                        setTable(table);
+                        mSectionIndex = index;
+                        if (result == null || oldIndex == null || oldIndex.getGrouping() != grouping) {
+                            notifyDataSetChanged();
+                            if (mOnDataChangeListener != null) {
+                                mOnDataChangeListener.processFinished(mAlbum, index, mCursor);
+                            }
+                        } else {
+                            dispatchGroupedDelta(oldIndex, index, result);
+                        }
+                        if (onApplied != null) {
+                            onApplied.run();
+                        }
+                        if (grouping != mDateGrouping) {
+                            //分组期间切换了粒度
+                            regroup();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    public DateGrouping getDateGrouping() {
+        return mDateGrouping;
+    }
+
+    /**
+     * 切换分组粒度
+     * <p>
+     * 不重新查询数据，在后台线程中按照已经排好的顺序重新分组。数据在列表中的先后顺序不变，
+     * 只通知日期视图的变化，缩略图不会重新绑定
+     *
+     * @param grouping 分组粒度
+     */
+    public void setDateGrouping(DateGrouping grouping) {
+        if (grouping == null || grouping == mDateGrouping) {
             return;
         }
-        mDateWithPosMap.clear();
-        mDateList.clear();
-        mCursorBeanList.clear();
-
-        if (newCursor == null || newCursor.getCount() == 0) {
+        mDateGrouping = grouping;
+        if (!mSelectionSpec.groupByDate || mPendingTable != null || mSectionIndex == null) {
+            //正在进行的分组完成之后会再次检查粒度，或者下次分组时使用新的粒度
             return;
         }
-        newCursor.moveToPosition(-1);
-        while (newCursor.moveToNext()) {
-            long tmpTime = newCursor.getLong(newCursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN));
-            long msTime = DateTimeUtil.timeToMs(tmpTime);
-            if (msTime != 0) {
-                while (mDateWithPosMap.containsKey(msTime)) {
-                    msTime++;
-                }
-                mDateWithPosMap.put(msTime, newCursor.getPosition());
+        regroup();
+    }
+
+    /**
+     * 以当前的粒度重新分组
+     */
+    private void regroup() {
+        final SectionIndex oldIndex = mSectionIndex;
+        final MediaTable table = mTable;
+        final DateGrouping grouping = mDateGrouping;
+        final Context context = mContext.getApplicationContext();
+        mIndexGeneration++;
+        final int generation = mIndexGeneration;
+        //分组期间的增量更新按照整体刷新处理
+        mPendingTable = table;
+        TaskExecutor.executeOnCompute(new Runnable() {
+            @Override
+            public void run() {
+                final SectionIndex index = oldIndex.regroup(context, table, grouping);
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mIndexGeneration) {
+                            return;
+                        }
+                        mPendingTable = null;
+                        mSectionIndex = index;
+                        if (mHeaderDecoration) {
+                            //数据没有变化，只需要重新计算每一项的span以及日期视图
+                            invalidateDecoration();
+                        } else {
+                            dispatchRegroup(oldIndex, index);
+                        }
+                        if (grouping != mDateGrouping) {
+                            regroup();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 分组变化之后，重新计算span以及日期视图的位置，不重新绑定数据
+     */
+    private void invalidateDecoration() {
+        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        if (layoutManager instanceof GridLayoutManager) {
+            ((GridLayoutManager) layoutManager).getSpanSizeLookup().invalidateSpanIndexCache();
+        }
+        mRecyclerView.invalidateItemDecorations();
+    }
+
+    /**
+     * 切换粒度时通知变化。数据的顺序不变，只删除、插入或者刷新日期视图
+     */
+    private void dispatchRegroup(SectionIndex oldIndex, SectionIndex newIndex) {
+        RangeDispatcher dispatcher = new RangeDispatcher();
+        int oldCount = oldIndex.getItemCount();
+        int newCount = newIndex.getItemCount();
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldCount || j < newCount) {
+            boolean oldHeader = i < oldCount && oldIndex.isHeader(i);
+            boolean newHeader = j < newCount && newIndex.isHeader(j);
+            if (oldHeader && newHeader) {
+                //同一位置的日期视图只刷新文本
+                dispatcher.change(position++);
+                i++;
+                j++;
+            } else if (oldHeader) {
+                dispatcher.remove(position);
+                i++;
+            } else if (newHeader) {
+                dispatcher.insert(position++);
+                j++;
             } else {
-                long tmpAddTime = newCursor.getLong(newCursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_ADDED));
-                long msAddTime = DateTimeUtil.timeToMs(tmpAddTime);
-                while (mDateWithPosMap.containsKey(msAddTime)) {
-                    msAddTime++;
-                }
-                mDateWithPosMap.put(msAddTime, newCursor.getPosition());
+                position++;
+                i++;
+                j++;
             }
         }
+        dispatcher.flush();
+    }
 
-        //排序
-        Long[] dateArray = mDateWithPosMap.keySet().toArray(new Long[0]);
+    /**
+     * 分页加载时，追加新的一页数据
+     *
+     * @param newCursor     包含新一页数据的cursor
+     * @param positionStart 新数据在cursor中的起始位置
+     * @param itemCount     新数据的数量
+     */
+    public void appendCursor(Cursor newCursor, int positionStart, int itemCount) {
+        if (mCursor == null) {
+            swapCursor(newCursor);
+            return;
+        }
+        if (mSelectionSpec.groupByDate) {
+            appendGrouped(newCursor);
+            return;
+        }
+        mCursor = newCursor;
+        mRowIDColumn = mCursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+        MediaTable table = MediaTable.from(newCursor);
+        updateAcceptability(carryAcceptability(table, null));
+        mTable = table;
+        notifyItemRangeInserted(positionStart, itemCount);
+    }
 
-        mDateList.addAll(Arrays.asList(dateArray));
-        Collections.sort(mDateList, new Comparator<Long>() {
+    /**
+     * 日期分组时追加新的一页数据
+     * <p>
+     * 在后台线程中从最后一个分组继续分组，只通知新增的位置；新的一页延续最后一个日期时，同时刷新最后一个日期视图。
+     * 正在分组或者无法继续分组时按整体替换处理
+     */
+    private void appendGrouped(Cursor newCursor) {
+        final SectionIndex oldIndex = mSectionIndex;
+        if (mPendingTable != null || oldIndex == null || oldIndex.getGrouping() != mDateGrouping) {
+            swapCursor(newCursor);
+            return;
+        }
+        final Cursor cursor = newCursor;
+        final MediaTable table = MediaTable.from(newCursor);
+        final Context context = mContext.getApplicationContext();
+        mIndexGeneration++;
+        final int generation = mIndexGeneration;
+        mPendingTable = table;
+        TaskExecutor.executeOnCompute(new Runnable() {
             @Override
-            public int compare(Long o1, Long o2) {
-                if (o2 - o1 == 0) {
-                    return 0;
-                } else if (o2 - o1 > 0) {
-                    return 1;
-                } else {
-                    return -1;
-                }
+            public void run() {
+                SectionIndex extended = oldIndex.extend(context, table);
+                final boolean incremental = extended != null;
+                final SectionIndex index = incremental ? extended
+                        : SectionIndex.build(context, table, oldIndex.getGrouping());
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mIndexGeneration) {
+                            return;
+                        }
+                        mPendingTable = null;
+                        updateAcceptability(incremental ? carryAcceptability(table, null)
+                                : AcceptabilityMap.unknown(table));
+                        mTable = table;
+                        mCursor = cursor;
+                        mRowIDColumn = mCursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+                        mSectionIndex = index;
+                        if (incremental) {
+                            dispatchAppend(oldIndex, index);
+                        } else {
+                            notifyDataSetChanged();
+                        }
+                        if (oldIndex.getGrouping() != mDateGrouping) {
+                            regroup();
+                        }
+                    }
+                });
             }
         });
+    }
 
-        //第一个日期视图
-        addDateView(0);
-        //第一个cursor视图
-        addCursorView(0);
+    /**
+     * 追加数据之后通知变化。原来的数据以及日期视图的位置不变，新增的数据和日期视图都在最后
+     */
+    private void dispatchAppend(SectionIndex oldIndex, SectionIndex newIndex) {
+        if (mHeaderDecoration) {
+            int oldCount = oldIndex.getDataCount();
+            //日期视图由ItemDecoration绘制，最后一个分组的span以及新增的日期需要重新计算
+            invalidateDecoration();
+            notifyItemRangeInserted(oldCount, newIndex.getDataCount() - oldCount);
+            return;
+        }
+        int oldCount = oldIndex.getItemCount();
+        notifyItemRangeInserted(oldCount, newIndex.getItemCount() - oldCount);
+        int last = oldIndex.getSectionCount() - 1;
+        boolean continues = newIndex.getSectionCount() == last + 1 || newIndex.getHeaderPosition(last + 1) != oldCount;
+        if (continues) {
+            //新的一页的第一条数据并入了最后一个分组
+            notifyItemChanged(oldIndex.getHeaderPosition(last));
+        }
+    }
 
-        for (int i = 1; i < mDateList.size(); i++) {
-            if (!DateTimeUtil.isSameDayOfMillis(mDateList.get(i), mDateList.get(i - 1))) {
-                //两个cursor，如果不是同一天
-                //添加日期视图
-                addDateView(i);
+    /**
+     * 媒体库发生变化，把变化合并到当前数据中
+     * <p>
+     * 只对新增和删除的位置调用notifyItemRange*。日期分组时在后台线程中重新分组，保留的视图不刷新
+     *
+     * @param delta     变化的内容
+     * @param onApplied 变化显示之后执行。日期分组时需要先在后台线程中重新分组
+     */
+    public void applyDelta(MediaDelta delta, Runnable onApplied) {
+        if (mPendingTable == null && !isDataValid(mCursor)) {
+            onApplied.run();
+            return;
+        }
+        MediaDelta.Result result = delta.apply(mPendingTable != null ? mPendingTable : mTable);
+        if (result.isEmpty()) {
+            onApplied.run();
+            return;
+        }
+        if (mSelectionSpec.groupByDate) {
+            //正在分组的数据还没有显示，新的分组完成之后整体刷新
+            boolean pending = mPendingTable != null;
+            mIndexGeneration++;
+            mPendingTable = result.table;
+            buildSectionIndex(result.table, pending ? null : result, onApplied);
+            return;
+        }
+        updateAcceptability(carryAcceptability(result.table, result.oldToNew));
+        setTable(result.table);
+        RangeDispatcher dispatcher = new RangeDispatcher();
+        int[] oldToNew = result.oldToNew;
+        int[] inserted = result.insertedPositions;
+        int position = 0;
+        int r = 0;
+        for (int p = 0; p < oldToNew.length; p++) {
+            while (r < inserted.length && inserted[r] == position) {
+                dispatcher.insert(position++);
+                r++;
+            }
+            if (oldToNew[p] == -1) {
+                dispatcher.remove(position);
+            } else {
+                position++;
             }
-            //添加cursor视图
-            addCursorView(i);
         }
-
-        if (mOnDataChangeListener != null) {
-            mOnDataChangeListener.processFinished(mAlbum, mCursorBeanList, newCursor);
+        while (r < inserted.length) {
+            dispatcher.insert(position++);
+            r++;
         }
+        dispatcher.flush();
+        onApplied.run();
+    }
 
+    /**
+     * 日期分组时通知变化。保留的数据以及日期视图不刷新，只通知被删除以及新增的位置。新旧分组的粒度相同
+     */
+    private void dispatchGroupedDelta(SectionIndex oldIndex, SectionIndex newIndex, MediaDelta.Result result) {
+        int[] oldToNew = result.oldToNew;
+        boolean[] inserted = new boolean[result.table.size()];
+        for (int position : result.insertedPositions) {
+            inserted[position] = true;
+        }
 
+        if (mHeaderDecoration) {
+            //每一项的span可能变化
+            invalidateDecoration();
+        }
+        //保留的视图在新旧分组中的顺序一致
+        RangeDispatcher dispatcher = new RangeDispatcher();
+        int oldCount = oldIndex.getItemCount();
+        int newCount = newIndex.getItemCount();
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldCount || j < newCount) {
+            if (mHeaderDecoration && (i < oldCount && oldIndex.isHeader(i) || j < newCount && newIndex.isHeader(j))) {
+                //日期视图不在适配器中
+                if (i < oldCount && oldIndex.isHeader(i)) {
+                    i++;
+                }
+                if (j < newCount && newIndex.isHeader(j)) {
+                    j++;
+                }
+                continue;
+            }
+            if (i < oldCount && (oldIndex.isHeader(i)
+                    ? newIndex.indexOfKey(oldIndex.getKey(oldIndex.sectionOf(i))) == -1
+                    : oldToNew[oldIndex.rowOf(i)] == -1)) {
+                dispatcher.remove(position);
+                i++;
+            } else if (j < newCount && (newIndex.isHeader(j)
+                    ? oldIndex.indexOfKey(newIndex.getKey(newIndex.sectionOf(j))) == -1
+                    : inserted[newIndex.rowOf(j)])) {
+                dispatcher.insert(position++);
+                j++;
+            } else {
+                position++;
+                i++;
+                j++;
+            }
+        }
+        dispatcher.flush();
     }
 
-
+    /**
+     * 替换数据，不通知适配器刷新
+     */
+    private void setTable(MediaTable table) {
+        mTable = table;
+        mCursor = table.asCursor();
+        mRowIDColumn = mCursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+    }
 
     /**
-     * 添加日期视图
+     * 在mTable被替换之前调用，保留当前数据已经判断的结果
      *
-     * @param position mDateList 的索引值
+     * @param oldToNew 原来每一行在新数据中的位置，为null时表示只在后面追加了数据
      */
-    private void addDateView(int position) {
-        CursorBean cursorBean = new CursorBean();
-        cursorBean.setDateView(true);
-        cursorBean.setDateValue(mDateList.get(position));
-        cursorBean.setDateText(getFormatDate(new Date(mDateList.get(position))));
-        cursorBean.setAdapterPosition(mCursorBeanList.size());
+    private AcceptabilityMap carryAcceptability(MediaTable table, int[] oldToNew) {
+        if (mAcceptability.getTable() != mTable) {
+            //当前数据还没有对应的结果
+            return AcceptabilityMap.unknown(table);
+        }
+        return mAcceptability.remap(table, oldToNew);
+    }
 
-        mCursorBeanList.add(cursorBean);
+    /**
+     * 替换是否可以选中的结果，在后台判断其余的数据，完成之后刷新勾选框
+     */
+    private void updateAcceptability(AcceptabilityMap map) {
+        if (mAcceptabilityTask != null) {
+            mAcceptabilityTask.cancel();
+            mAcceptabilityTask = null;
+        }
+        mAcceptability = map;
+        if (map.getTable().size() == 0 || map.isComplete()) {
+            return;
+        }
+        mAcceptabilityTask = map.evaluate(mContext, new AcceptabilityMap.Callback() {
+            @Override
+            public void onEvaluated(AcceptabilityMap result) {
+                mAcceptabilityTask = null;
+                mAcceptability = result;
+                if (result.getTable() == mTable) {
+                    notifyItemRangeChanged(0, getItemCount(), Payload.ENABLED_STATE);
+                }
+            }
+        });
     }
 
     /**
-     * 添加cursor视图
-     *
-     * @param position mDateList 的索引值
+     * @return 还没有判断时返回false
      */
-    private void addCursorView(int position) {
-        CursorBean cursorBean = new CursorBean();
-        cursorBean.setAdapterPosition(mCursorBeanList.size());
-        cursorBean.setCursorPosition(mDateWithPosMap.get(mDateList.get(position)));
+    private boolean isRejected(int row) {
+        return mAcceptability.getTable() == mTable && mAcceptability.isRejected(row);
+    }
 
-        mCursorBeanList.add(cursorBean);
+    /**
+     * 把连续的插入、删除或者刷新合并成一次notifyItemRange*
+     */
+    private class RangeDispatcher {
+        private static final int NONE = 0;
+        private static final int INSERT = 1;
+        private static final int REMOVE = 2;
+        private static final int CHANGE = 3;
+        private int mType = NONE;
+        private int mStart;
+        private int mCount;
+
+        void insert(int position) {
+            if (mType == INSERT && position == mStart + mCount) {
+                mCount++;
+                return;
+            }
+            flush();
+            mType = INSERT;
+            mStart = position;
+            mCount = 1;
+        }
+
+        void remove(int position) {
+            if (mType == REMOVE && position == mStart) {
+                mCount++;
+                return;
+            }
+            flush();
+            mType = REMOVE;
+            mStart = position;
+            mCount = 1;
+        }
+
+        void change(int position) {
+            if (mType == CHANGE && position == mStart + mCount) {
+                mCount++;
+                return;
+            }
+            flush();
+            mType = CHANGE;
+            mStart = position;
+            mCount = 1;
+        }
+
+        void flush() {
+            if (mType == INSERT) {
+                notifyItemRangeInserted(mStart, mCount);
+            } else if (mType == REMOVE) {
+                notifyItemRangeRemoved(mStart, mCount);
+            } else if (mType == CHANGE) {
+                notifyItemRangeChanged(mStart, mCount);
+            }
+            mType = NONE;
+        }
     }
 
     @Override
     public int getItemCount() {
         if (isDataValid(mCursor)) {
             if (mSelectionSpec.groupByDate) {
-                if (!isProcessData) {
-                    isProcessData = true;
-                    processData(mCursor);
+                //分组在后台线程中生成，这里只读取结果
+                if (mSectionIndex == null) {
+                    return 0;
                 }
-                return mCursorBeanList.size();
+                return mHeaderDecoration ? mSectionIndex.getDataCount() : mSectionIndex.getItemCount();
             }
-            return mCursor.getCount();
+            return mTable.size();
         } else {
             return 0;
         }
@@ -284,26 +722,76 @@ public class AlbumMediaAdapter extends
 
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        if (!isDataValid(mCursor)) {
+            throw new IllegalStateException("Cannot bind view holder when cursor is in invalid state.");
+        }
         if (!mSelectionSpec.groupByDate) {
-            super.onBindViewHolder(holder, position);
+            bindRow(holder, position);
+        } else if (isDatePosition(position)) {
+            //日期视图
+            bindRow(holder, -1);
         } else {
-            if (!isDataValid(mCursor)) {
-                throw new IllegalStateException("Cannot bind view holder when cursor is in invalid state.");
-            }
+            //正常的视图
+            bindRow(holder, rowOf(position));
+        }
+    }
 
-            if (getItemViewType(position) == VIEW_TYPE_DATE) {
-                //日期视图
-                onBindViewHolder(holder, null);
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || !(holder instanceof MediaViewHolder)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        boolean checkState = false;
+        boolean checkNumber = false;
+        boolean enabledState = false;
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (payload == Payload.CHECK_STATE) {
+                checkState = true;
+            } else if (payload == Payload.CHECK_NUMBER) {
+                checkNumber = true;
+            } else if (payload == Payload.ENABLED_STATE) {
+                enabledState = true;
             } else {
-                //正常的视图
-                moveToPosition(position);
-                onBindViewHolder(holder, mCursor);
+                onBindViewHolder(holder, position);
+                return;
             }
         }
+        int row = mSelectionSpec.groupByDate ? rowOf(position) : position;
+        long id = mTable.getId(row);
+        String path = mTable.getPath(row);
+        MediaGrid mediaGrid = ((MediaViewHolder) holder).mMediaGrid;
+        //几个payload可能被合并成一次绑定，每一种都要单独处理
+        if (checkState) {
+            //已经包含了序号和是否可勾选
+            setCheckStatus(id, path, mediaGrid);
+        } else {
+            if (checkNumber && mSelectionSpec.countable) {
+                mediaGrid.setCheckedNum(mSelectedCollection.checkedNumOf(id, path));
+            }
+            if (enabledState) {
+                mediaGrid.setCheckEnabled(!mSelectedCollection.maxSelectableReached()
+                        || mSelectedCollection.isSelected(id, path));
+            }
+        }
+        if (enabledState) {
+            mediaGrid.setSelectable(!isRejected(row));
+        }
     }
 
     @Override
     protected void onBindViewHolder(final RecyclerView.ViewHolder holder, Cursor cursor) {
+        bindRow(holder, cursor == null ? -1 : cursor.getPosition());
+    }
+
+    /**
+     * 绑定视图
+     *
+     * @param holder
+     * @param row    数据在mTable中的位置，日期视图为-1
+     */
+    private void bindRow(final RecyclerView.ViewHolder holder, int row) {
         if (holder instanceof CaptureViewHolder) {
             //拍照Holder
             CaptureViewHolder captureViewHolder = (CaptureViewHolder) holder;
@@ -321,23 +809,26 @@ public class AlbumMediaAdapter extends
             //MediaView Holder ,也就是Cursor视图
             MediaViewHolder mediaViewHolder = (MediaViewHolder) holder;
 
-            if (cursor == null) {
+            if (row < 0) {
                 return;
             }
-            final MediaItem item = MediaItem.valueOf(cursor);
-
-            if (mSelectionSpec.inflateItemViewCallback != null) {
-                mSelectionSpec.inflateItemViewCallback.callback(item, (MediaGrid) holder.itemView);
-            }
 
             mediaViewHolder.mMediaGrid.preBindMedia(new MediaGrid.PreBindInfo(
                     getImageResize(mediaViewHolder.mMediaGrid.getContext()),
                     mPlaceholder,
                     mSelectionSpec.countable,
                     holder));
-            mediaViewHolder.mMediaGrid.bindMedia(item);
+            //只绑定数组中的数据，点击时才创建MediaItem
+            mediaViewHolder.mMediaGrid.bindMedia(mTable, row);
             mediaViewHolder.mMediaGrid.setOnMediaGridClickListener(this);
-            setCheckStatus(item, mediaViewHolder.mMediaGrid);
+            mediaViewHolder.mMediaGrid.setOnMediaGridLongClickListener(this);
+
+            if (mSelectionSpec.inflateItemViewCallback != null) {
+                mSelectionSpec.inflateItemViewCallback.callback(mediaViewHolder.mMediaGrid.getMedia(),
+                        (MediaGrid) holder.itemView);
+            }
+            setCheckStatus(mTable.getId(row), mTable.getPath(row), mediaViewHolder.mMediaGrid);
+            mediaViewHolder.mMediaGrid.setSelectable(!isRejected(row));
         } else if (holder instanceof MediaDateViewHolder) {
             //日期视图
             MediaDateViewHolder mediaDateViewHolder = (MediaDateViewHolder) holder;
@@ -347,9 +838,9 @@ public class AlbumMediaAdapter extends
         }
     }
 
-    private void setCheckStatus(MediaItem item, MediaGrid mediaGrid) {
+    private void setCheckStatus(long id, String path, MediaGrid mediaGrid) {
         if (mSelectionSpec.countable) {
-            int checkedNum = mSelectedCollection.checkedNumOf(item);
+            int checkedNum = mSelectedCollection.checkedNumOf(id, path);
             if (checkedNum > 0) {
                 mediaGrid.setCheckEnabled(true);
                 mediaGrid.setCheckedNum(checkedNum);
@@ -363,7 +854,7 @@ public class AlbumMediaAdapter extends
                 }
             }
         } else {
-            boolean selected = mSelectedCollection.isSelected(item);
+            boolean selected = mSelectedCollection.isSelected(id, path);
             if (selected) {
                 mediaGrid.setCheckEnabled(true);
                 mediaGrid.setChecked(true);
@@ -393,6 +884,18 @@ public class AlbumMediaAdapter extends
         }
     }
 
+    /**
+     * 长按小图，开始滑动多选
+     */
+    @Override
+    public boolean onThumbnailLongClicked(ImageView thumbnail, MediaItem item, RecyclerView.ViewHolder holder) {
+        if (mDragSelectTouchListener == null) {
+            return false;
+        }
+        mDragSelectTouchListener.startDragSelection(holder.getAdapterPosition());
+        return mDragSelectTouchListener.isActive();
+    }
+
     /**
      * 当勾选checkView被点击
      *
@@ -401,32 +904,103 @@ public class AlbumMediaAdapter extends
      * @param holder
      */
     @Override
-    public void onCheckViewClicked(CheckView checkView, MediaItem item, RecyclerView.ViewHolder holder) {
-        if (mSelectionSpec.countable) {
-            //数字可选模式
-            int checkedNum = mSelectedCollection.checkedNumOf(item);
-            if (checkedNum == CheckView.UNCHECKED) {
-                if (assertAddSelection(holder.itemView.getContext(), item)) {
-                    mSelectedCollection.add(item);
-                    notifyListeners(item, true);
+    public void onCheckViewClicked(CheckView checkView, final MediaItem item, final RecyclerView.ViewHolder holder) {
+        if (mSelectedCollection.isSelected(item)) {
+            boolean maxReached = mSelectedCollection.maxSelectableReached();
+            mSelectedCollection.remove(item);
+            notifyListeners(item, false);
+            int position = holder.getAdapterPosition();
+            notifyCheckStateChanged(position, position, true, maxReached);
+            return;
+        }
+        final Context context = holder.itemView.getContext();
+        AcceptabilityService.Callback callback = new AcceptabilityService.Callback() {
+            @Override
+            public void onResult(IncapableCause cause) {
+                if (cause != null) {
+                    IncapableCause.handleCause(context, cause);
+                    return;
+                }
+                boolean maxReached = mSelectedCollection.maxSelectableReached();
+                if (!mSelectedCollection.add(item)) {
+                    return;
+                }
+                notifyListeners(item, true);
+                //可能是异步回调，视图已经绑定了其他数据时刷新所有勾选框
+                MediaItem bound = ((MediaGrid) holder.itemView).getMedia();
+                int position = bound != null && bound.getId() == item.getId() ? holder.getAdapterPosition() : -1;
+                if (position == RecyclerView.NO_POSITION) {
+                    refreshCheckState();
+                } else {
+                    notifyCheckStateChanged(position, position, false, maxReached);
                 }
-            } else {
-                mSelectedCollection.remove(item);
-                notifyListeners(item, false);
             }
+        };
+        int row = dataRowAt(holder.getAdapterPosition());
+        if (row != -1 && mAcceptability.getTable() == mTable && mAcceptability.isAccepted(row)
+                && !mSelectedCollection.maxSelectableReached()) {
+            //后台已经判断可以选中，不需要再检查
+            callback.onResult(null);
         } else {
-            //勾选模式
-            if (mSelectedCollection.isSelected(item)) {
-                mSelectedCollection.remove(item);
-                notifyListeners(item, false);
-            } else {
-                if (assertAddSelection(holder.itemView.getContext(), item)) {
-                    mSelectedCollection.add(item);
-                    notifyListeners(item, true);
-                }
+            mSelectedCollection.checkAcceptable(item, callback);
+        }
+    }
+
+    /**
+     * 选中状态变化之后只刷新勾选框
+     * <p>
+     * 其他位置的序号以及是否可选只在需要时通知。带payload的通知只作用于已经绑定的视图，
+     * 也就是可见的以及缓存中的视图，不会重新绑定其他位置
+     *
+     * @param from             选中状态变化的开始位置，包括此位置
+     * @param to               选中状态变化的结束位置，包括此位置
+     * @param removed          是否有数据被取消选中
+     * @param maxReachedBefore 变化之前是否已经达到最大数量
+     */
+    void notifyCheckStateChanged(int from, int to, boolean removed, boolean maxReachedBefore) {
+        if (from >= 0 && to >= from) {
+            notifyItemRangeChanged(from, to - from + 1, Payload.CHECK_STATE);
+        }
+        int count = getItemCount();
+        if (removed && mSelectionSpec.countable) {
+            //之后选中的数据序号减小
+            notifyItemRangeChanged(0, count, Payload.CHECK_NUMBER);
+        }
+        if (maxReachedBefore != mSelectedCollection.maxSelectableReached()) {
+            notifyItemRangeChanged(0, count, Payload.ENABLED_STATE);
+        }
+    }
+
+    /**
+     * 选中集合在其他页面被修改之后，刷新所有勾选框
+     */
+    public void refreshCheckState() {
+        notifyItemRangeChanged(0, getItemCount(), Payload.CHECK_STATE);
+    }
+
+    /**
+     * 一批Item的选中状态变化之后，只通知一次监听器
+     *
+     * @param checked   被勾选的Item
+     * @param unchecked 取消勾选的Item
+     */
+    void notifyListeners(List<MediaItem> checked, List<MediaItem> unchecked) {
+        if (checked.isEmpty() && unchecked.isEmpty()) {
+            return;
+        }
+        if (mUICallback != null) {
+            mUICallback.updateBottomBarCount();
+        }
+        if (mSelectionSpec.checkListener instanceof OnItemRangeCheckChangeListener) {
+            ((OnItemRangeCheckChangeListener) mSelectionSpec.checkListener).onCheckRange(checked, unchecked);
+        } else if (mSelectionSpec.checkListener != null) {
+            for (int i = 0; i < unchecked.size(); i++) {
+                mSelectionSpec.checkListener.onCheck(unchecked.get(i), false);
+            }
+            for (int i = 0; i < checked.size(); i++) {
+                mSelectionSpec.checkListener.onCheck(checked.get(i), true);
             }
         }
-        notifyDataSetChanged();
     }
 
     /**
@@ -450,31 +1024,57 @@ public class AlbumMediaAdapter extends
     @Override
     public int getItemViewType(int position) {
         if (!mSelectionSpec.groupByDate) {
-            return super.getItemViewType(position);
+            return viewTypeOfRow(position);
         }
 
         if (isDatePosition(position)) {
             //日期视图
             return VIEW_TYPE_DATE;
-        } else {
-            if (mCursor != null && !mCursor.isClosed()) {
-                //移动到对应位置
-                moveToPosition(position);
-                return getItemViewType(position, mCursor);
-            }
         }
-
-        return super.getItemViewType(position);
-
+        return viewTypeOfRow(rowOf(position));
     }
 
     /**
-     * 移动到对应的cursor位置
+     * 适配器位置对应的数据位置
      *
      * @param position
      */
-    private void moveToPosition(int position) {
-        mCursor.moveToPosition(mCursorBeanList.get(position).getCursorPosition());
+    private int rowOf(int position) {
+        return mHeaderDecoration ? mSectionIndex.rowOfItem(position) : mSectionIndex.rowOf(position);
+    }
+
+    /**
+     * 适配器位置对应的可以选中的数据位置
+     *
+     * @return 日期视图、拍摄视图等返回-1
+     */
+    int dataRowAt(int position) {
+        if (position < 0 || position >= getItemCount()) {
+            return -1;
+        }
+        int row;
+        if (!mSelectionSpec.groupByDate) {
+            row = position;
+        } else if (isDatePosition(position)) {
+            return -1;
+        } else {
+            row = rowOf(position);
+        }
+        return viewTypeOfRow(row) == VIEW_TYPE_MEDIA && row >= 0 && row < mTable.size() ? row : -1;
+    }
+
+    /**
+     * 当前显示的数据
+     */
+    public MediaTable getTable() {
+        return mTable;
+    }
+
+    private int viewTypeOfRow(int row) {
+        if (row < 0 || row >= mTable.size()) {
+            return VIEW_TYPE_MEDIA;
+        }
+        return mTable.isCapture(row) ? VIEW_TYPE_CAPTURE : mTable.isRecord(row) ? VIEW_TYPE_RECORD : VIEW_TYPE_MEDIA;
     }
 
     /**
@@ -484,7 +1084,7 @@ public class AlbumMediaAdapter extends
      * @return
      */
     private boolean isDatePosition(int position) {
-        return mCursorBeanList.get(position).isDateView();
+        return !mHeaderDecoration && mSectionIndex.isHeader(position);
     }
 
     /**
@@ -493,24 +1093,120 @@ public class AlbumMediaAdapter extends
      * @return
      */
     private String getDateStringByAdapterPosition(int position) {
-        return mCursorBeanList.get(position).getDateText();
+        return mSectionIndex.labelOf(position);
     }
 
+    /**
+     * 按日期分组时每个分组在时间轴上占相同的长度，滑块对应到分组的开始；不分组时按比例对应
+     */
     @Override
-    public int getItemViewType(int position, Cursor cursor) {
-        if (cursor == null) {
-            return VIEW_TYPE_MEDIA;
+    public int getScrollPosition(float fraction) {
+        if (!mSelectionSpec.groupByDate || mSectionIndex == null || mSectionIndex.getSectionCount() == 0) {
+            return Math.round(fraction * (getItemCount() - 1));
+        }
+        int sections = mSectionIndex.getSectionCount();
+        int section = Math.min(sections - 1, (int) (fraction * sections));
+        return mHeaderDecoration ? mSectionIndex.getFirstItem(section) : mSectionIndex.getHeaderPosition(section);
+    }
+
+    @Override
+    public float getScrollFraction(int position) {
+        int count = getItemCount();
+        if (count <= 1) {
+            return 0;
+        }
+        if (!mSelectionSpec.groupByDate || mSectionIndex == null || mSectionIndex.getSectionCount() == 0) {
+            return Math.min(1f, (float) position / (count - 1));
+        }
+        //分组的开始加上在分组中的比例
+        int sections = mSectionIndex.getSectionCount();
+        int section;
+        int start;
+        int end;
+        if (mHeaderDecoration) {
+            section = mSectionIndex.sectionOfItem(position);
+            start = mSectionIndex.getFirstItem(section);
+            end = section + 1 < sections ? mSectionIndex.getFirstItem(section + 1) : count;
+        } else {
+            section = mSectionIndex.sectionOf(position);
+            start = mSectionIndex.getHeaderPosition(section);
+            end = section + 1 < sections ? mSectionIndex.getHeaderPosition(section + 1) : count;
+        }
+        float inSection = end > start ? (float) (position - start) / (end - start) : 0;
+        return Math.min(1f, (section + inSection) / sections);
+    }
+
+    /**
+     * 时间轴气泡中显示的年月
+     */
+    @Override
+    public String getScrollLabel(int position) {
+        long day;
+        if (mSelectionSpec.groupByDate) {
+            if (mSectionIndex == null || position >= getItemCount()) {
+                return null;
+            }
+            day = mSectionIndex.getDay(mHeaderDecoration
+                    ? mSectionIndex.sectionOfItem(position) : mSectionIndex.sectionOf(position));
+        } else {
+            if (position >= mTable.size()) {
+                return null;
+            }
+            //使用单独的分段表，不替换DateTimeUtil.toDay(long)使用的分段表
+            long date = mTable.getDate(position);
+            if (mScrollOffsetRanges == null || !mScrollOffsetRanges.covers(date)) {
+                mScrollOffsetRanges = ZoneOffsetRanges.of(TimeZone.getDefault(),
+                        date - 366 * DateTimeUtil.MILLIS_IN_DAY, date + 366 * DateTimeUtil.MILLIS_IN_DAY);
+            }
+            day = mScrollOffsetRanges.toDay(date);
+        }
+        long yearMonth = DateTimeUtil.yearMonthOfDay(day);
+        return DateLabels.month(mContext, yearMonth >> 4, (int) (yearMonth & 0xF));
+    }
+
+    /**
+     * 某个时间所在或者最接近的位置。日期分组时为分组日期视图的位置
+     *
+     * @param date 时间，单位毫秒
+     * @return 没有数据时返回-1
+     */
+    public int findPositionOfDate(long date) {
+        if (mSelectionSpec.groupByDate) {
+            if (mSectionIndex == null) {
+                return -1;
+            }
+            int section = mSectionIndex.findSection(date);
+            if (section == -1) {
+                return -1;
+            }
+            return mHeaderDecoration ? mSectionIndex.getFirstItem(section) : mSectionIndex.getHeaderPosition(section);
         }
-        MediaItem item = MediaItem.valueOfId(cursor);
-        boolean capture = item.isCapture();
-        boolean record = item.isRecord();
-        return capture ? VIEW_TYPE_CAPTURE : record ? VIEW_TYPE_RECORD : VIEW_TYPE_MEDIA;
+        //数据按日期倒序排列，查找第一个不晚于date的数据
+        int low = 0;
+        int high = mTable.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTable.getDate(mid) > date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.min(low, mTable.size() - 1);
+    }
+
+    @Override
+    public int getItemViewType(int position, Cursor cursor) {
+        return viewTypeOfRow(cursor == null ? -1 : cursor.getPosition());
     }
 
     @Override
     public long getItemId(int position) {
         if (!mSelectionSpec.groupByDate) {
-            return super.getItemId(position);
+            if (!isDataValid(mCursor)) {
+                throw new IllegalStateException("Cannot lookup item id when cursor is in invalid state.");
+            }
+            return mTable.getId(position);
         }
 
         //enable groupByDate
@@ -524,7 +1220,35 @@ public class AlbumMediaAdapter extends
     @Override
     public void onAttachedToRecyclerView(RecyclerView recyclerView) {
         super.onAttachedToRecyclerView(recyclerView);
-        GridLayoutManager manager = (GridLayoutManager) recyclerView.getLayoutManager();
+        final GridLayoutManager manager = (GridLayoutManager) recyclerView.getLayoutManager();
+        if (mSelectionSpec.dragSelect && !mSelectionSpec.singleResultModel && mDragSelectTouchListener == null) {
+            mDragSelectTouchListener = new DragSelectTouchListener(recyclerView,
+                    new RangeSelector(mContext, this, mSelectedCollection));
+            recyclerView.addOnItemTouchListener(mDragSelectTouchListener);
+        }
+        if (mHeaderDecoration) {
+            //只有数据，分组的最后一项占满这一行剩余的span，下一个分组从新的一行开始
+            GridLayoutManager.SpanSizeLookup lookup = new GridLayoutManager.SpanSizeLookup() {
+                @Override
+                public int getSpanSize(int position) {
+                    SectionIndex index = mSectionIndex;
+                    if (index == null || position >= index.getDataCount()) {
+                        return 1;
+                    }
+                    int section = index.sectionOfItem(position);
+                    int next = section + 1 < index.getSectionCount()
+                            ? index.getFirstItem(section + 1) : index.getDataCount();
+                    if (position != next - 1) {
+                        return 1;
+                    }
+                    int spanCount = manager.getSpanCount();
+                    return spanCount - (position - index.getFirstItem(section)) % spanCount;
+                }
+            };
+            lookup.setSpanIndexCacheEnabled(true);
+            manager.setSpanSizeLookup(lookup);
+            return;
+        }
         manager.setSpanSizeLookup(new GridLayoutManager.SpanSizeLookup() {
             @Override
             public int getSpanSize(int position) {
@@ -537,17 +1261,27 @@ public class AlbumMediaAdapter extends
         });
     }
 
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if (mAcceptabilityTask != null) {
+            mAcceptabilityTask.cancel();
+            mAcceptabilityTask = null;
+        }
+    }
+
     /**
-     * 是否可以选中
-     *
-     * @param context
-     * @param item
-     * @return
+     * 后台预先计算的是否可以选中，对应的数据可能不是当前的数据
      */
-    private boolean assertAddSelection(Context context, MediaItem item) {
-        IncapableCause cause = mSelectedCollection.isAcceptable(item);
-        IncapableCause.handleCause(context, cause);
-        return cause == null;
+    AcceptabilityMap getAcceptability() {
+        return mAcceptability;
+    }
+
+    /**
+     * 当前的日期分组，还没有分组时为null
+     */
+    public SectionIndex getSectionIndex() {
+        return mSectionIndex;
     }
 
     /**
@@ -580,23 +1314,6 @@ public class AlbumMediaAdapter extends
         return mImageResize;
     }
 
-    private String getFormatDate(Date date) {
-        Calendar today = Calendar.getInstance();
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        SimpleDateFormat format = new SimpleDateFormat(mContext.getString(R.string.date_format), Locale.CHINA);
-
-        if (today.get(Calendar.YEAR) == calendar.get(Calendar.YEAR)
-                && today.get(Calendar.MONTH) == calendar.get(Calendar.MONTH)
-                && today.get(Calendar.DAY_OF_YEAR) == calendar.get(Calendar.DAY_OF_YEAR)) {
-            return mContext.getString(R.string.today);
-        } else if (today.get(Calendar.YEAR) == calendar.get(Calendar.YEAR)) {
-            return format.format(date).substring(5);
-        } else {
-            return format.format(date);
-        }
-    }
-
     private static class MediaViewHolder extends RecyclerView.ViewHolder {
 
         private MediaGrid mMediaGrid;
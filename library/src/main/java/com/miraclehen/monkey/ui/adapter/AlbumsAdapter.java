@@ -20,6 +20,7 @@ import android.content.res.TypedArray;
 import android.database.Cursor;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -36,6 +37,8 @@ import java.io.File;
 public class AlbumsAdapter extends CursorAdapter {
 
     private final Drawable mPlaceholder;
+    //已经解析过的相册，cursor变化时清空
+    private final SparseArray<Album> mAlbums = new SparseArray<>();
 
     public AlbumsAdapter(Context context, Cursor c, boolean autoRequery) {
         super(context, c, autoRequery);
@@ -55,6 +58,25 @@ public class AlbumsAdapter extends CursorAdapter {
         ta.recycle();
     }
 
+    @Override
+    public Cursor swapCursor(Cursor newCursor) {
+        mAlbums.clear();
+        return super.swapCursor(newCursor);
+    }
+
+    /**
+     * 获取当前cursor位置的相册，每个位置只解析一次
+     */
+    private Album getAlbum(Cursor cursor) {
+        int position = cursor.getPosition();
+        Album album = mAlbums.get(position);
+        if (album == null) {
+            album = Album.valueOf(cursor);
+            mAlbums.put(position, album);
+        }
+        return album;
+    }
+
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent) {
         return LayoutInflater.from(context).inflate(R.layout.album_list_item, parent, false);
@@ -62,7 +84,7 @@ public class AlbumsAdapter extends CursorAdapter {
 
     @Override
     public void bindView(View view, Context context, Cursor cursor) {
-        Album album = Album.valueOf(cursor);
+        Album album = getAlbum(cursor);
         ((TextView) view.findViewById(R.id.album_name)).setText(album.getDisplayName(context));
         ((TextView) view.findViewById(R.id.album_media_count)).setText(String.valueOf(album.getCount()));
 
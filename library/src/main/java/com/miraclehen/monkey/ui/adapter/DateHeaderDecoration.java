@@ -0,0 +1,118 @@
+package com.miraclehen.monkey.ui.adapter;
+
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.miraclehen.monkey.R;
+
+/**
+ * 以ItemDecoration的方式绘制日期视图，并且吸顶
+ * <p>
+ * 适配器中只有数据，每个分组第一行的数据在上方留出日期视图的高度，日期视图在onDrawOver中绘制。
+ * 所有分组共用一个日期视图，绘制前只替换文本。
+ */
+public class DateHeaderDecoration extends RecyclerView.ItemDecoration {
+
+    private final AlbumMediaAdapter mAdapter;
+    private final TextView mHeaderView;
+    private final Paint mBackgroundPaint = new Paint();
+    //日期视图的高度，包括上下margin
+    private int mHeaderHeight = -1;
+    private int mMarginTop;
+    private int mMarginLeft;
+
+    public DateHeaderDecoration(RecyclerView parent, AlbumMediaAdapter adapter) {
+        mAdapter = adapter;
+        mHeaderView = (TextView) LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.media_date_item, parent, false);
+
+        TypedArray ta = parent.getContext().getTheme().obtainStyledAttributes(new int[]{R.attr.page_bg});
+        mBackgroundPaint.setColor(ta.getColor(0, 0));
+        ta.recycle();
+    }
+
+    @Override
+    public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
+        SectionIndex index = mAdapter.getSectionIndex();
+        int position = parent.getChildAdapterPosition(view);
+        if (index == null || position == RecyclerView.NO_POSITION || position >= index.getDataCount()) {
+            return;
+        }
+        int section = index.sectionOfItem(position);
+        int spanCount = ((GridLayoutManager) parent.getLayoutManager()).getSpanCount();
+        if (position - index.getFirstItem(section) < spanCount) {
+            //分组的第一行
+            outRect.top = getHeaderHeight(parent);
+        }
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        SectionIndex index = mAdapter.getSectionIndex();
+        int childCount = parent.getChildCount();
+        if (index == null || childCount == 0) {
+            return;
+        }
+        int height = getHeaderHeight(parent);
+        int dataCount = index.getDataCount();
+
+        //吸顶的分组
+        int stickySection = -1;
+        int stickyTop = 0;
+        //下一个分组日期视图的位置，用于把吸顶的日期视图推上去
+        int nextTop = Integer.MAX_VALUE;
+        for (int i = 0; i < childCount; i++) {
+            View child = parent.getChildAt(i);
+            int position = parent.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION || position >= dataCount) {
+                continue;
+            }
+            int section = index.sectionOfItem(position);
+            int top = child.getTop() + (int) child.getTranslationY() - height;
+            if (stickySection == -1) {
+                stickySection = section;
+                stickyTop = position == index.getFirstItem(section) ? Math.max(top, 0) : 0;
+                continue;
+            }
+            if (section != stickySection && position == index.getFirstItem(section)) {
+                nextTop = Math.min(nextTop, top);
+                drawHeader(c, parent, index.getLabel(section), top);
+            }
+        }
+        if (stickySection != -1) {
+            drawHeader(c, parent, index.getLabel(stickySection), Math.min(stickyTop, nextTop - height));
+        }
+    }
+
+    private void drawHeader(Canvas c, RecyclerView parent, String label, int top) {
+        int height = getHeaderHeight(parent);
+        c.drawRect(0, top, parent.getWidth(), top + height, mBackgroundPaint);
+        mHeaderView.setText(label);
+        c.save();
+        c.translate(mMarginLeft, top + mMarginTop);
+        mHeaderView.draw(c);
+        c.restore();
+    }
+
+    private int getHeaderHeight(RecyclerView parent) {
+        if (mHeaderHeight < 0 || mHeaderView.getWidth() == 0) {
+            ViewGroup.MarginLayoutParams lp = (ViewGroup.MarginLayoutParams) mHeaderView.getLayoutParams();
+            int width = parent.getWidth() - lp.leftMargin - lp.rightMargin;
+            mHeaderView.measure(View.MeasureSpec.makeMeasureSpec(Math.max(width, 0), View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(lp.height, View.MeasureSpec.EXACTLY));
+            mHeaderView.layout(0, 0, mHeaderView.getMeasuredWidth(), mHeaderView.getMeasuredHeight());
+            mMarginTop = lp.topMargin;
+            mMarginLeft = lp.leftMargin;
+            mHeaderHeight = lp.topMargin + mHeaderView.getMeasuredHeight() + lp.bottomMargin;
+        }
+        return mHeaderHeight;
+    }
+}
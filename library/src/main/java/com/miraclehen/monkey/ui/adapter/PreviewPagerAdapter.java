@@ -18,9 +18,11 @@ package com.miraclehen.monkey.ui.adapter;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentPagerAdapter;
+import android.util.SparseArray;
 import android.view.ViewGroup;
 
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
 import com.miraclehen.monkey.ui.PreviewItemFragment;
 
 import java.util.ArrayList;
@@ -29,6 +31,11 @@ import java.util.List;
 public class PreviewPagerAdapter extends FragmentPagerAdapter {
 
     private ArrayList<MediaItem> mItems = new ArrayList<>();
+    /**
+     * 预览整本相册时使用，翻到某一页时才创建对应的MediaItem
+     */
+    private MediaTable mTable;
+    private SparseArray<MediaItem> mTableItems = new SparseArray<>();
     private OnPrimaryItemSetListener mListener;
 
     public PreviewPagerAdapter(FragmentManager manager, OnPrimaryItemSetListener listener) {
@@ -38,12 +45,12 @@ public class PreviewPagerAdapter extends FragmentPagerAdapter {
 
     @Override
     public Fragment getItem(int position) {
-        return PreviewItemFragment.newInstance(mItems.get(position));
+        return PreviewItemFragment.newInstance(getMediaItem(position));
     }
 
     @Override
     public int getCount() {
-        return mItems.size();
+        return mTable != null ? mTable.size() : mItems.size();
     }
 
     @Override
@@ -55,13 +62,31 @@ public class PreviewPagerAdapter extends FragmentPagerAdapter {
     }
 
     public MediaItem getMediaItem(int position) {
-        return mItems.get(position);
+        if (mTable == null) {
+            return mItems.get(position);
+        }
+        MediaItem item = mTableItems.get(position);
+        if (item == null) {
+            item = mTable.createItem(position);
+            mTableItems.put(position, item);
+        }
+        return item;
     }
 
     public void addAll(List<MediaItem> items) {
         mItems.addAll(items);
     }
 
+    /**
+     * 使用MediaTable作为数据，替换原来的数据
+     *
+     * @param table
+     */
+    public void setTable(MediaTable table) {
+        mTable = table;
+        mTableItems.clear();
+    }
+
     interface OnPrimaryItemSetListener {
 
         void onPrimaryItemSet(int position);
@@ -0,0 +1,291 @@
+package com.miraclehen.monkey.ui.adapter;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.miraclehen.monkey.R;
+import com.miraclehen.monkey.entity.IncapableCause;
+import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.entity.SelectionSpec;
+import com.miraclehen.monkey.model.AcceptabilityMap;
+import com.miraclehen.monkey.model.AcceptabilityService;
+import com.miraclehen.monkey.model.SelectedItemCollection;
+import com.miraclehen.monkey.ui.widget.DragSelectTouchListener;
+import com.miraclehen.monkey.utils.TaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 滑动多选
+ * <p>
+ * 起点未选中时把范围内的数据加入选中，否则从选中中移除；离开范围的数据恢复原来的状态。
+ * 每一帧的变化一次性应用到{@link SelectedItemCollection}，只通知一次适配器以及监听器。
+ * 是否可以选中先使用适配器预先计算的结果，再使用缓存以及mime_type列，都无法确定时才需要查询文件类型并执行过滤器，
+ * 在{@link TaskExecutor#executeInteractive(Runnable)}的线程中检查。结果在本次手势中缓存，检查完成之后再应用到当前的范围。
+ * 手指抬起时还有没完成的检查，等检查完成之后再结束。
+ */
+final class RangeSelector implements DragSelectTouchListener.Callback {
+
+    private static final byte VERDICT_UNKNOWN = 0;
+    private static final byte VERDICT_PENDING = 1;
+    private static final byte VERDICT_ACCEPTED = 2;
+    private static final byte VERDICT_REJECTED = 3;
+
+    private final AlbumMediaAdapter mAdapter;
+    private final SelectedItemCollection mSelectedCollection;
+    private final Context mContext;
+
+    //本次手势开始时的数据，数据变化之后不再应用
+    private MediaTable mTable;
+    private SectionIndex mSectionIndex;
+    //true为选中，false为取消选中
+    private boolean mSelect;
+    private int mStart;
+    private int mFrom = -1;
+    private int mTo = -1;
+    //本次手势中状态被改变的数据，以适配器位置为键
+    private final SparseArray<MediaItem> mToggled = new SparseArray<>();
+    //以数据位置为下标的检查结果
+    private byte[] mVerdicts;
+    private IncapableCause mFirstCause;
+    private boolean mMaxReached;
+    //还没有完成的检查
+    private int mPendingChecks;
+    //手指已经抬起
+    private boolean mEnded;
+    //每次手势加一，丢弃之前手势的检查结果
+    private int mGeneration;
+
+    RangeSelector(Context context, AlbumMediaAdapter adapter, SelectedItemCollection selectedCollection) {
+        mContext = context;
+        mAdapter = adapter;
+        mSelectedCollection = selectedCollection;
+    }
+
+    @Override
+    public boolean onDragSelectionStart(int position) {
+        MediaTable table = mAdapter.getTable();
+        int row = mAdapter.dataRowAt(position);
+        if (row == -1) {
+            return false;
+        }
+        mGeneration++;
+        mTable = table;
+        mSectionIndex = mAdapter.getSectionIndex();
+        mSelect = !mSelectedCollection.isSelected(table.getId(row), table.getPath(row));
+        mStart = position;
+        mFrom = -1;
+        mTo = -1;
+        mToggled.clear();
+        mVerdicts = new byte[table.size()];
+        mFirstCause = null;
+        mMaxReached = false;
+        mPendingChecks = 0;
+        mEnded = false;
+        return true;
+    }
+
+    @Override
+    public void onDragSelectionChanged(int from, int to) {
+        if (!isValid()) {
+            return;
+        }
+        mFrom = from;
+        mTo = to;
+        apply();
+    }
+
+    @Override
+    public void onDragSelectionEnd() {
+        mEnded = true;
+        if (mPendingChecks == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (mMaxReached) {
+            IncapableCause.handleCause(mContext, new IncapableCause(mContext.getString(
+                    R.string.error_over_count, SelectionSpec.getInstance().maxSelectable)));
+        } else if (mFirstCause != null) {
+            IncapableCause.handleCause(mContext, mFirstCause);
+        }
+        mGeneration++;
+        mTable = null;
+        mSectionIndex = null;
+        mToggled.clear();
+        mVerdicts = null;
+        mFirstCause = null;
+    }
+
+    /**
+     * 适配器的数据或者分组变化之后，之前的位置已经失效
+     */
+    private boolean isValid() {
+        return mTable != null && mTable == mAdapter.getTable() && mSectionIndex == mAdapter.getSectionIndex();
+    }
+
+    /**
+     * 把当前的范围应用到选中集合
+     */
+    private void apply() {
+        boolean maxReachedBefore = mSelectedCollection.maxSelectableReached();
+        List<MediaItem> checked = new ArrayList<>();
+        List<MediaItem> unchecked = new ArrayList<>();
+        int changedFrom = Integer.MAX_VALUE;
+        int changedTo = -1;
+
+        //离开范围的恢复原来的状态
+        for (int i = mToggled.size() - 1; i >= 0; i--) {
+            int position = mToggled.keyAt(i);
+            if (position >= mFrom && position <= mTo) {
+                continue;
+            }
+            MediaItem item = mToggled.valueAt(i);
+            if (mSelect) {
+                mSelectedCollection.remove(item);
+                unchecked.add(item);
+            } else {
+                mSelectedCollection.add(item);
+                checked.add(item);
+            }
+            mToggled.removeAt(i);
+            changedFrom = Math.min(changedFrom, position);
+            changedTo = Math.max(changedTo, position);
+        }
+
+        //从起点向手指的方向应用，选中的顺序与滑动的顺序一致
+        int[] pendingRows = null;
+        int pendingCount = 0;
+        int step = mTo > mStart ? 1 : -1;
+        int end = step > 0 ? mTo : mFrom;
+        int begin = step > 0 ? mFrom : mTo;
+        for (int position = begin; position != end + step; position += step) {
+            if (mToggled.get(position) != null) {
+                continue;
+            }
+            int row = mAdapter.dataRowAt(position);
+            if (row == -1) {
+                continue;
+            }
+            boolean selected = mSelectedCollection.isSelected(mTable.getId(row), mTable.getPath(row));
+            if (selected != mSelect) {
+                if (mSelect) {
+                    byte verdict = mVerdicts[row];
+                    if (verdict == VERDICT_UNKNOWN) {
+                        verdict = verdictNow(row);
+                        mVerdicts[row] = verdict;
+                    }
+                    if (verdict == VERDICT_UNKNOWN) {
+                        if (pendingRows == null) {
+                            pendingRows = new int[mTo - mFrom + 1];
+                        }
+                        pendingRows[pendingCount++] = row;
+                        mVerdicts[row] = VERDICT_PENDING;
+                        continue;
+                    }
+                    if (verdict != VERDICT_ACCEPTED) {
+                        continue;
+                    }
+                    if (mSelectedCollection.maxSelectableReached()) {
+                        mMaxReached = true;
+                        continue;
+                    }
+                }
+                MediaItem item = mTable.createItem(row);
+                if (mSelect) {
+                    mSelectedCollection.add(item);
+                    checked.add(item);
+                } else {
+                    mSelectedCollection.remove(item);
+                    unchecked.add(item);
+                }
+                mToggled.put(position, item);
+                changedFrom = Math.min(changedFrom, position);
+                changedTo = Math.max(changedTo, position);
+            }
+        }
+
+        if (pendingCount > 0) {
+            checkAcceptable(pendingRows, pendingCount);
+        }
+        if (changedTo == -1) {
+            return;
+        }
+        mAdapter.notifyCheckStateChanged(changedFrom, changedTo, !unchecked.isEmpty(), maxReachedBefore);
+        mAdapter.notifyListeners(checked, unchecked);
+    }
+
+    /**
+     * 不查询ContentResolver、不执行过滤器能够得到的结果
+     *
+     * @return 无法确定时返回{@link #VERDICT_UNKNOWN}
+     */
+    private byte verdictNow(int row) {
+        AcceptabilityService service = AcceptabilityService.getInstance();
+        AcceptabilityMap map = mAdapter.getAcceptability();
+        if (map.getTable() == mTable && map.isKnown(row)) {
+            if (map.isAccepted(row)) {
+                return VERDICT_ACCEPTED;
+            }
+            //原因在缓存中时用于提示
+            if (mFirstCause == null && service.isDecided(mContext, mTable, row)) {
+                mFirstCause = service.checkNow(mContext, mTable, row);
+            }
+            return VERDICT_REJECTED;
+        }
+        if (!service.isDecided(mContext, mTable, row)) {
+            return VERDICT_UNKNOWN;
+        }
+        IncapableCause cause = service.checkNow(mContext, mTable, row);
+        if (cause == null) {
+            return VERDICT_ACCEPTED;
+        }
+        if (mFirstCause == null) {
+            mFirstCause = cause;
+        }
+        return VERDICT_REJECTED;
+    }
+
+    /**
+     * 在后台线程中检查是否可以选中，完成之后重新应用当前的范围
+     */
+    private void checkAcceptable(final int[] rows, final int count) {
+        final int generation = mGeneration;
+        final MediaTable table = mTable;
+        final Context context = mContext.getApplicationContext();
+        mPendingChecks++;
+        TaskExecutor.executeInteractive(new Runnable() {
+            @Override
+            public void run() {
+                final IncapableCause[] causes = new IncapableCause[count];
+                for (int i = 0; i < count; i++) {
+                    causes[i] = AcceptabilityService.getInstance().checkNow(context, table, rows[i]);
+                }
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        mPendingChecks--;
+                        for (int i = 0; i < count; i++) {
+                            mVerdicts[rows[i]] = causes[i] == null ? VERDICT_ACCEPTED : VERDICT_REJECTED;
+                            if (causes[i] != null && mFirstCause == null) {
+                                mFirstCause = causes[i];
+                            }
+                        }
+                        if (isValid()) {
+                            apply();
+                        }
+                        if (mEnded && mPendingChecks == 0) {
+                            finish();
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,413 @@
+package com.miraclehen.monkey.ui.adapter;
+
+import android.content.Context;
+import android.support.annotation.WorkerThread;
+
+import com.miraclehen.monkey.entity.DateGrouping;
+import com.miraclehen.monkey.entity.MediaTable;
+import com.miraclehen.monkey.utils.DateTimeUtil;
+import com.miraclehen.monkey.utils.ZoneOffsetRanges;
+
+import java.util.Arrays;
+
+/**
+ * 按日期分组之后的列表结构
+ * <p>
+ * 只保存每个分组的信息：日期视图的适配器位置、分组的键、第一条数据的时间和天数以及日期文本。
+ * 适配器位置与数据位置之间的转换通过对日期视图位置的二分查找完成，不为每一条数据创建对象。
+ * <p>
+ * 在后台线程中通过{@link #build(Context, MediaTable, DateGrouping)}生成，生成之后不再变化，适配器把它和对应的数据一起替换。
+ * 切换分组粒度时通过{@link #regroup(Context, MediaTable, DateGrouping)}复用已经排好的顺序重新分组，
+ * 分页加载时通过{@link #extend(Context, MediaTable)}从最后一个分组继续分组。
+ */
+public class SectionIndex {
+
+    //每个分组日期视图的适配器位置，升序
+    private final int[] mHeaderPositions;
+    private final DateGrouping mGrouping;
+    //每个分组的键，降序
+    private final long[] mKeys;
+    //每个分组第一条数据的时间
+    private final long[] mDates;
+    //每个分组第一条数据在本地时区中的天数
+    private final long[] mDays;
+    private final String[] mLabels;
+    //第i条数据在MediaTable中的位置。数据已经按日期排列时为null，即第i条数据就是第i行
+    private final int[] mRows;
+    private final int mItemCount;
+    //所有数据中最早以及最新的时间
+    private final long mMinDate;
+    private final long mMaxDate;
+
+    private SectionIndex(DateGrouping grouping, int[] headerPositions, long[] keys, long[] dates, long[] days,
+                         String[] labels, int[] rows, int itemCount, long minDate, long maxDate) {
+        mGrouping = grouping;
+        mHeaderPositions = headerPositions;
+        mKeys = keys;
+        mDates = dates;
+        mDays = days;
+        mLabels = labels;
+        mRows = rows;
+        mItemCount = itemCount;
+        mMinDate = minDate;
+        mMaxDate = maxDate;
+    }
+
+    /**
+     * 生成分组
+     * <p>
+     * 查询结果已经按日期倒序排列，只需要遍历一遍，在分组的键发生变化的地方开始新的分组。
+     * 只有在个别数据的日期顺序不一致时，才对行号做一次稳定排序。
+     *
+     * @param context  用于获取日期格式
+     * @param table    按日期倒序排列的数据
+     * @param grouping 分组粒度
+     */
+    @WorkerThread
+    public static SectionIndex build(Context context, MediaTable table, DateGrouping grouping) {
+        int count = table.size();
+        if (count == 0) {
+            return group(context, table, grouping, null, 0, 0);
+        }
+
+        long min = table.getDate(0);
+        long max = min;
+        boolean ordered = true;
+        for (int row = 1; row < count; row++) {
+            long date = table.getDate(row);
+            if (date > table.getDate(row - 1)) {
+                ordered = false;
+            }
+            min = Math.min(min, date);
+            max = Math.max(max, date);
+        }
+        int[] rows = ordered ? null : sortRowsByDate(table);
+        return group(context, table, grouping, rows, min, max);
+    }
+
+    /**
+     * 以另一种粒度重新分组
+     * <p>
+     * 直接使用已经排好的顺序，不再检查顺序或者排序，只遍历一遍数据。数据在列表中的先后顺序不变，只有日期视图变化
+     *
+     * @param table 生成此分组时使用的数据
+     */
+    @WorkerThread
+    public SectionIndex regroup(Context context, MediaTable table, DateGrouping grouping) {
+        return group(context, table, grouping, mRows, mMinDate, mMaxDate);
+    }
+
+    /**
+     * 分页加载追加数据之后，从最后一个分组继续分组
+     * <p>
+     * 原来的分组不变，只遍历新增的数据：与最后一个分组的键相同的数据并入最后一个分组，之后键变化的地方开始新的分组。
+     * 新增的数据与原来的数据都必须已经按日期倒序排列。
+     *
+     * @param table 在生成此分组时使用的数据之后追加了数据
+     * @return 原来的数据不是按日期排列的，或者新增的数据破坏了日期顺序时返回null，需要通过{@link #build}重新分组
+     */
+    @WorkerThread
+    public SectionIndex extend(Context context, MediaTable table) {
+        int oldCount = getDataCount();
+        int count = table.size();
+        if (mRows != null || oldCount == 0 || count < oldCount) {
+            return null;
+        }
+        if (count == oldCount) {
+            return this;
+        }
+        for (int row = oldCount; row < count; row++) {
+            if (table.getDate(row) > table.getDate(row - 1)) {
+                return null;
+            }
+        }
+        long min = Math.min(mMinDate, table.getDate(count - 1));
+        ZoneOffsetRanges ranges = DateTimeUtil.offsetRanges(min, mMaxDate);
+
+        int sections = mHeaderPositions.length;
+        int capacity = sections + 16;
+        int[] headerPositions = Arrays.copyOf(mHeaderPositions, capacity);
+        long[] keys = Arrays.copyOf(mKeys, capacity);
+        long[] dates = Arrays.copyOf(mDates, capacity);
+        long[] days = Arrays.copyOf(mDays, capacity);
+        long lastKey = mKeys[sections - 1];
+        for (int i = oldCount; i < count; i++) {
+            long date = table.getDate(i);
+            long day = ranges.toDay(date);
+            long key = mGrouping.keyOf(day);
+            if (key != lastKey) {
+                if (sections == headerPositions.length) {
+                    headerPositions = Arrays.copyOf(headerPositions, sections * 2);
+                    keys = Arrays.copyOf(keys, sections * 2);
+                    dates = Arrays.copyOf(dates, sections * 2);
+                    days = Arrays.copyOf(days, sections * 2);
+                }
+                headerPositions[sections] = i + sections;
+                keys[sections] = key;
+                dates[sections] = date;
+                days[sections] = day;
+                sections++;
+                lastKey = key;
+            }
+        }
+
+        String[] labels = Arrays.copyOf(mLabels, sections);
+        for (int s = mLabels.length; s < sections; s++) {
+            labels[s] = mGrouping.getLabel(context, keys[s], dates[s]);
+        }
+        return new SectionIndex(mGrouping, Arrays.copyOf(headerPositions, sections), Arrays.copyOf(keys, sections),
+                Arrays.copyOf(dates, sections), Arrays.copyOf(days, sections), labels, null, count + sections,
+                min, mMaxDate);
+    }
+
+    private static SectionIndex group(Context context, MediaTable table, DateGrouping grouping, int[] rows,
+                                      long min, long max) {
+        int count = table.size();
+        ZoneOffsetRanges ranges = DateTimeUtil.offsetRanges(min, max);
+
+        int[] headerPositions = new int[16];
+        long[] keys = new long[16];
+        long[] dates = new long[16];
+        long[] days = new long[16];
+        int sections = 0;
+        long lastKey = 0;
+        for (int i = 0; i < count; i++) {
+            long date = table.getDate(rows == null ? i : rows[i]);
+            long day = ranges.toDay(date);
+            long key = grouping.keyOf(day);
+            if (i == 0 || key != lastKey) {
+                //与上一条数据不在同一组，开始新的分组
+                if (sections == headerPositions.length) {
+                    headerPositions = Arrays.copyOf(headerPositions, sections * 2);
+                    keys = Arrays.copyOf(keys, sections * 2);
+                    dates = Arrays.copyOf(dates, sections * 2);
+                    days = Arrays.copyOf(days, sections * 2);
+                }
+                headerPositions[sections] = i + sections;
+                keys[sections] = key;
+                dates[sections] = date;
+                days[sections] = day;
+                sections++;
+                lastKey = key;
+            }
+        }
+
+        String[] labels = new String[sections];
+        for (int s = 0; s < sections; s++) {
+            labels[s] = grouping.getLabel(context, keys[s], dates[s]);
+        }
+        return new SectionIndex(grouping, Arrays.copyOf(headerPositions, sections), Arrays.copyOf(keys, sections),
+                Arrays.copyOf(dates, sections), Arrays.copyOf(days, sections), labels, rows, count + sections,
+                min, max);
+    }
+
+    /**
+     * 按日期倒序对行号稳定排序（归并排序），日期相同的数据保持查询结果中的顺序
+     */
+    private static int[] sortRowsByDate(MediaTable table) {
+        int count = table.size();
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = i;
+        }
+        int[] buffer = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count - width; low += width * 2) {
+                int mid = low + width;
+                int high = Math.min(low + width * 2, count);
+                int i = low;
+                int j = mid;
+                int k = low;
+                while (i < mid && j < high) {
+                    buffer[k++] = table.getDate(rows[j]) > table.getDate(rows[i]) ? rows[j++] : rows[i++];
+                }
+                while (i < mid) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < high) {
+                    buffer[k++] = rows[j++];
+                }
+                System.arraycopy(buffer, low, rows, low, high - low);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 适配器中的数量，包括日期视图
+     */
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * 数据的数量，不包括日期视图
+     */
+    public int getDataCount() {
+        return mItemCount - mHeaderPositions.length;
+    }
+
+    public DateGrouping getGrouping() {
+        return mGrouping;
+    }
+
+    public int getSectionCount() {
+        return mHeaderPositions.length;
+    }
+
+    /**
+     * 适配器位置所在的分组
+     */
+    public int sectionOf(int position) {
+        int index = Arrays.binarySearch(mHeaderPositions, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    public boolean isHeader(int position) {
+        return Arrays.binarySearch(mHeaderPositions, position) >= 0;
+    }
+
+    /**
+     * 适配器位置对应的数据位置，日期视图为-1
+     */
+    public int rowOf(int position) {
+        int section = sectionOf(position);
+        if (mHeaderPositions[section] == position) {
+            return -1;
+        }
+        return rowOfItem(position - section - 1);
+    }
+
+    /**
+     * 第几条数据所在的分组。日期视图由ItemDecoration绘制、适配器中只有数据时使用
+     *
+     * @param item 不包括日期视图时的位置
+     */
+    public int sectionOfItem(int item) {
+        //分组第一条数据的位置为mHeaderPositions[s] - s，随s严格递增
+        int low = 0;
+        int high = mHeaderPositions.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mHeaderPositions[mid] - mid <= item) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 分组第一条数据不包括日期视图时的位置
+     */
+    public int getFirstItem(int section) {
+        return mHeaderPositions[section] - section;
+    }
+
+    /**
+     * 第几条数据在MediaTable中的位置
+     *
+     * @param item 不包括日期视图时的位置
+     */
+    public int rowOfItem(int item) {
+        return mRows == null ? item : mRows[item];
+    }
+
+    /**
+     * 适配器位置所在分组的日期文本
+     */
+    public String labelOf(int position) {
+        return mLabels[sectionOf(position)];
+    }
+
+    public String getLabel(int section) {
+        return mLabels[section];
+    }
+
+    /**
+     * 分组日期视图的适配器位置
+     */
+    public int getHeaderPosition(int section) {
+        return mHeaderPositions[section];
+    }
+
+    /**
+     * 分组的键，见{@link DateGrouping#keyOf(long)}
+     */
+    public long getKey(int section) {
+        return mKeys[section];
+    }
+
+    /**
+     * 分组中第一条数据的时间
+     */
+    public long getDate(int section) {
+        return mDates[section];
+    }
+
+    /**
+     * 分组中第一条数据在本地时区中的天数，生成分组时已经计算，不需要再调用{@link DateTimeUtil#toDay(long)}
+     */
+    public long getDay(int section) {
+        return mDays[section];
+    }
+
+    /**
+     * 查找某个时间所在或者最接近的分组，用于跳转到指定日期
+     * <p>
+     * 先按分组的键查找所在的分组；这个时间没有数据时，在各分组第一条数据的时间中二分查找最接近的分组
+     *
+     * @param date 时间，单位毫秒
+     * @return 没有分组时返回-1
+     */
+    public int findSection(long date) {
+        int count = mDates.length;
+        if (count == 0) {
+            return -1;
+        }
+        int exact = indexOfKey(mGrouping.keyOf(DateTimeUtil.toDay(date)));
+        if (exact >= 0) {
+            return exact;
+        }
+        //mDates降序，查找第一个不晚于date的分组
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mDates[mid] > date) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == 0) {
+            return 0;
+        }
+        if (low == count) {
+            return count - 1;
+        }
+        return mDates[low - 1] - date < date - mDates[low] ? low - 1 : low;
+    }
+
+    /**
+     * 查找键对应的分组
+     *
+     * @return 没有这个分组时返回-1
+     */
+    public int indexOfKey(long key) {
+        int low = 0;
+        int high = mKeys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mKeys[mid] > key) {
+                low = mid + 1;
+            } else if (mKeys[mid] < key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
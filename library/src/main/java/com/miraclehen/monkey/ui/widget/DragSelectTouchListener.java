@@ -0,0 +1,189 @@
+package com.miraclehen.monkey.ui.widget;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * 长按之后滑动多选
+ * <p>
+ * 长按某一项时调用{@link #startDragSelection(int)}，之后拦截列表的触摸事件，手指所在的位置与起点之间的范围
+ * 通过{@link Callback}回调。一帧内的多次移动只回调一次；手指靠近列表的上下边缘时自动滚动。
+ */
+public class DragSelectTouchListener implements RecyclerView.OnItemTouchListener {
+
+    /**
+     * 自动滚动的区域高度
+     */
+    private static final int EDGE_SIZE = 56; // dp
+    /**
+     * 每一帧最多滚动的距离
+     */
+    private static final int MAX_SCROLL_STEP = 24; // dp
+
+    private final RecyclerView mRecyclerView;
+    private final Callback mCallback;
+    private final float mDensity;
+
+    private boolean mActive;
+    private int mStart = RecyclerView.NO_POSITION;
+    //已经回调的位置
+    private int mEnd = RecyclerView.NO_POSITION;
+    private float mLastX;
+    private float mLastY;
+    //自动滚动的速度，负数向上
+    private int mScrollStep;
+    private boolean mFrameScheduled;
+
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFrameScheduled = false;
+            if (!mActive) {
+                return;
+            }
+            if (mScrollStep != 0) {
+                mRecyclerView.scrollBy(0, mScrollStep);
+            }
+            updateEnd();
+            if (mScrollStep != 0) {
+                scheduleFrame();
+            }
+        }
+    };
+
+    public DragSelectTouchListener(RecyclerView recyclerView, Callback callback) {
+        mRecyclerView = recyclerView;
+        mCallback = callback;
+        mDensity = recyclerView.getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * 开始滑动多选
+     *
+     * @param position 长按的适配器位置
+     */
+    public void startDragSelection(int position) {
+        if (position == RecyclerView.NO_POSITION || !mCallback.onDragSelectionStart(position)) {
+            return;
+        }
+        mActive = true;
+        mStart = position;
+        mEnd = position;
+        mScrollStep = 0;
+        mCallback.onDragSelectionChanged(position, position);
+    }
+
+    public boolean isActive() {
+        return mActive;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (!mActive) {
+            return false;
+        }
+        if (e.getActionMasked() == MotionEvent.ACTION_UP || e.getActionMasked() == MotionEvent.ACTION_CANCEL) {
+            //长按之后没有移动就抬起
+            finish();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (!mActive) {
+            return;
+        }
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                mLastX = e.getX();
+                mLastY = e.getY();
+                updateScrollStep();
+                scheduleFrame();
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                finish();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+    }
+
+    private void updateScrollStep() {
+        float edge = EDGE_SIZE * mDensity;
+        float maxStep = MAX_SCROLL_STEP * mDensity;
+        if (mLastY < edge) {
+            mScrollStep = -(int) Math.max(1, maxStep * (edge - Math.max(mLastY, 0)) / edge);
+        } else if (mLastY > mRecyclerView.getHeight() - edge) {
+            float distance = Math.min(mLastY, mRecyclerView.getHeight()) - (mRecyclerView.getHeight() - edge);
+            mScrollStep = (int) Math.max(1, maxStep * distance / edge);
+        } else {
+            mScrollStep = 0;
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            mRecyclerView.postOnAnimation(mFrameRunnable);
+        }
+    }
+
+    /**
+     * 回调手指所在位置与起点之间的范围
+     */
+    private void updateEnd() {
+        float y = Math.max(0, Math.min(mLastY, mRecyclerView.getHeight() - 1));
+        View child = mRecyclerView.findChildViewUnder(mLastX, y);
+        if (child == null) {
+            return;
+        }
+        int position = mRecyclerView.getChildAdapterPosition(child);
+        if (position == RecyclerView.NO_POSITION || position == mEnd) {
+            return;
+        }
+        mEnd = position;
+        mCallback.onDragSelectionChanged(Math.min(mStart, mEnd), Math.max(mStart, mEnd));
+    }
+
+    private void finish() {
+        if (mFrameScheduled) {
+            mRecyclerView.removeCallbacks(mFrameRunnable);
+            mFrameScheduled = false;
+            updateEnd();
+        }
+        mActive = false;
+        mScrollStep = 0;
+        mStart = RecyclerView.NO_POSITION;
+        mEnd = RecyclerView.NO_POSITION;
+        mCallback.onDragSelectionEnd();
+    }
+
+    public interface Callback {
+
+        /**
+         * 开始滑动多选
+         *
+         * @param position 长按的适配器位置
+         * @return 返回false时不进入多选
+         */
+        boolean onDragSelectionStart(int position);
+
+        /**
+         * 选择的范围发生变化，包括两端。每一帧最多回调一次
+         */
+        void onDragSelectionChanged(int from, int to);
+
+        /**
+         * 手指抬起
+         */
+        void onDragSelectionEnd();
+    }
+}
@@ -17,6 +17,7 @@ package com.miraclehen.monkey.ui.widget;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.support.v7.widget.RecyclerView;
 import android.text.format.DateUtils;
 import android.util.AttributeSet;
@@ -27,10 +28,16 @@ import android.widget.TextView;
 
 import com.miraclehen.monkey.R;
 import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.MediaTable;
 import com.miraclehen.monkey.entity.SelectionSpec;
 
 
-public class MediaGrid extends SquareFrameLayout implements View.OnClickListener {
+public class MediaGrid extends SquareFrameLayout implements View.OnClickListener, View.OnLongClickListener {
+
+    /**
+     * 不能选中的数据的透明度
+     */
+    private static final float UNSELECTABLE_ALPHA = 0.4f;
 
     private ImageView mThumbnail;
     private CheckView mCheckView;
@@ -38,8 +45,12 @@ public class MediaGrid extends SquareFrameLayout implements View.OnClickListener
 //    private ImageView mUploadedIv;
 
     private MediaItem mMedia;
+    //通过bindMedia(MediaTable, int)绑定时，点击之后才创建mMedia
+    private MediaTable mTable;
+    private int mRow;
     private PreBindInfo mPreBindInfo;
     private OnMediaGridClickListener mListener;
+    private OnMediaGridLongClickListener mLongClickListener;
 
     public MediaGrid(Context context) {
         super(context);
@@ -64,6 +75,8 @@ public class MediaGrid extends SquareFrameLayout implements View.OnClickListener
 
         if (SelectionSpec.getInstance().singleResultModel) {
             mCheckView.setVisibility(GONE);
+        } else if (SelectionSpec.getInstance().dragSelect) {
+            mThumbnail.setOnLongClickListener(this);
         }
     }
 
@@ -71,25 +84,50 @@ public class MediaGrid extends SquareFrameLayout implements View.OnClickListener
     public void onClick(View v) {
         if (mListener != null) {
             if (v == mThumbnail) {
-                mListener.onThumbnailClicked(mThumbnail, mMedia, mPreBindInfo.mViewHolder);
+                mListener.onThumbnailClicked(mThumbnail, getMedia(), mPreBindInfo.mViewHolder);
             } else if (v == mCheckView) {
-                mListener.onCheckViewClicked(mCheckView, mMedia, mPreBindInfo.mViewHolder);
+                mListener.onCheckViewClicked(mCheckView, getMedia(), mPreBindInfo.mViewHolder);
             }
         }
     }
 
+    @Override
+    public boolean onLongClick(View v) {
+        return mLongClickListener != null && v == mThumbnail
+                && mLongClickListener.onThumbnailLongClicked(mThumbnail, getMedia(), mPreBindInfo.mViewHolder);
+    }
+
     public void preBindMedia(PreBindInfo info) {
         mPreBindInfo = info;
     }
 
     public void bindMedia(MediaItem item) {
         mMedia = item;
+        mTable = null;
+        initCheckView();
+        setImage();
+        setVideoDuration();
+    }
+
+    /**
+     * 直接绑定MediaTable中的一行，不创建MediaItem
+     *
+     * @param table 数据
+     * @param row   行
+     */
+    public void bindMedia(MediaTable table, int row) {
+        mMedia = null;
+        mTable = table;
+        mRow = row;
         initCheckView();
         setImage();
         setVideoDuration();
     }
 
     public MediaItem getMedia() {
+        if (mMedia == null && mTable != null) {
+            mMedia = mTable.createItem(mRow);
+        }
         return mMedia;
     }
 
@@ -101,6 +139,15 @@ public class MediaGrid extends SquareFrameLayout implements View.OnClickListener
         mCheckView.setEnabled(enabled);
     }
 
+    /**
+     * 是否可以选中，不能选中时小图和勾选框变暗。勾选框仍然可以点击，用于提示不能选中的原因
+     */
+    public void setSelectable(boolean selectable) {
+        float alpha = selectable ? 1f : UNSELECTABLE_ALPHA;
+        mThumbnail.setAlpha(alpha);
+        mCheckView.setAlpha(alpha);
+    }
+
     public void setCheckedNum(int checkedNum) {
         mCheckView.setCheckedNum(checkedNum);
     }
@@ -110,19 +157,23 @@ public class MediaGrid extends SquareFrameLayout implements View.OnClickListener
     }
 
     private void setImage() {
-        if (mMedia.isGif()) {
+        boolean gif = mTable != null ? mTable.isGif(mRow) : mMedia.isGif();
+        Uri uri = mTable != null ? mTable.getContentUri(mRow) : mMedia.getContentUri();
+        if (gif) {
             SelectionSpec.getInstance().imageEngine.loadGifThumbnail(getContext(), mPreBindInfo.mResize,
-                    mPreBindInfo.mPlaceholder, mThumbnail, mMedia.getContentUri());
+                    mPreBindInfo.mPlaceholder, mThumbnail, uri);
         } else {
             SelectionSpec.getInstance().imageEngine.loadThumbnail(getContext(), mPreBindInfo.mResize,
-                    mPreBindInfo.mPlaceholder, mThumbnail, mMedia.getContentUri());
+                    mPreBindInfo.mPlaceholder, mThumbnail, uri);
         }
     }
 
     private void setVideoDuration() {
-        if (mMedia.isVideo()) {
+        boolean video = mTable != null ? mTable.isVideo(mRow) : mMedia.isVideo();
+        if (video) {
+            long duration = mTable != null ? mTable.getDuration(mRow) : mMedia.duration;
             mVideoDuration.setVisibility(VISIBLE);
-            mVideoDuration.setText(DateUtils.formatElapsedTime(mMedia.duration / 1000));
+            mVideoDuration.setText(DateUtils.formatElapsedTime(duration / 1000));
         } else {
             mVideoDuration.setVisibility(GONE);
         }
@@ -136,6 +187,13 @@ public class MediaGrid extends SquareFrameLayout implements View.OnClickListener
         mListener = null;
     }
 
+    /**
+     * 长按小图的监听，可以不设置
+     */
+    public void setOnMediaGridLongClickListener(OnMediaGridLongClickListener listener) {
+        mLongClickListener = listener;
+    }
+
     public interface OnMediaGridClickListener {
 
         void onThumbnailClicked(ImageView thumbnail, MediaItem item, RecyclerView.ViewHolder holder);
@@ -143,6 +201,16 @@ public class MediaGrid extends SquareFrameLayout implements View.OnClickListener
         void onCheckViewClicked(CheckView checkView, MediaItem item, RecyclerView.ViewHolder holder);
     }
 
+    public interface OnMediaGridLongClickListener {
+
+        /**
+         * 长按小图
+         *
+         * @return 是否已经处理
+         */
+        boolean onThumbnailLongClicked(ImageView thumbnail, MediaItem item, RecyclerView.ViewHolder holder);
+    }
+
     public static class PreBindInfo {
         int mResize;
         Drawable mPlaceholder;
@@ -0,0 +1,272 @@
+package com.miraclehen.monkey.ui.widget;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.v4.content.res.ResourcesCompat;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.miraclehen.monkey.R;
+
+/**
+ * 列表右侧可以拖动的时间轴
+ * <p>
+ * 覆盖在RecyclerView之上，只处理右侧滑块区域内的触摸。拖动时直接跳到滑块对应的位置，不逐项滚动。
+ * 滑块与位置之间的对应关系由{@link LabelProvider}决定，按日期分组时跳到分组的开始；
+ * 气泡中显示此位置的日期，日期由{@link LabelProvider}通过二分查找分组得到。
+ */
+public class TimelineScroller extends View {
+
+    private static final int THUMB_WIDTH = 4; // dp
+    private static final int THUMB_HEIGHT = 48; // dp
+    private static final int TOUCH_WIDTH = 40; // dp
+    private static final int BUBBLE_MARGIN = 16; // dp
+    private static final int BUBBLE_PADDING = 12; // dp
+    private static final int BUBBLE_HEIGHT = 36; // dp
+    private static final int TEXT_SIZE = 14; // sp
+    /**
+     * 内容超过几屏时才显示
+     */
+    private static final int MIN_PAGES = 5;
+    private static final long HIDE_DELAY = 1500;
+
+    private float mDensity;
+    private Paint mThumbPaint;
+    private TextPaint mTextPaint;
+    private final RectF mRect = new RectF();
+
+    private RecyclerView mRecyclerView;
+    private LabelProvider mLabelProvider;
+    //滑块顶部的位置比例，0~1
+    private float mFraction;
+    private boolean mDragging;
+    private boolean mShowing;
+    private String mLabel;
+
+    private final Runnable mHideRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mShowing = false;
+            invalidate();
+        }
+    };
+
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            if (mDragging || dy == 0) {
+                return;
+            }
+            int range = recyclerView.computeVerticalScrollRange() - recyclerView.computeVerticalScrollExtent();
+            if (range <= 0 || recyclerView.computeVerticalScrollRange()
+                    < recyclerView.computeVerticalScrollExtent() * MIN_PAGES) {
+                mShowing = false;
+                invalidate();
+                return;
+            }
+            if (mLabelProvider == null) {
+                mFraction = Math.min(1f, (float) recyclerView.computeVerticalScrollOffset() / range);
+            } else if (!recyclerView.canScrollVertically(1)) {
+                mFraction = 1f;
+            } else {
+                mFraction = mLabelProvider.getScrollFraction(firstVisiblePosition(recyclerView));
+            }
+            show();
+        }
+    };
+
+    public TimelineScroller(Context context) {
+        super(context);
+        init(context);
+    }
+
+    public TimelineScroller(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public TimelineScroller(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context);
+    }
+
+    private void init(Context context) {
+        mDensity = context.getResources().getDisplayMetrics().density;
+
+        TypedArray ta = context.getTheme().obtainStyledAttributes(new int[]{R.attr.item_checkCircle_backgroundColor});
+        int defaultColor = ResourcesCompat.getColor(
+                getResources(), R.color.zhihu_item_checkCircle_backgroundColor, context.getTheme());
+        int color = ta.getColor(0, defaultColor);
+        ta.recycle();
+
+        mThumbPaint = new Paint();
+        mThumbPaint.setAntiAlias(true);
+        mThumbPaint.setColor(color);
+
+        mTextPaint = new TextPaint();
+        mTextPaint.setAntiAlias(true);
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(TEXT_SIZE * context.getResources().getDisplayMetrics().scaledDensity);
+    }
+
+    /**
+     * 绑定列表
+     *
+     * @param recyclerView  使用LinearLayoutManager或者GridLayoutManager的列表
+     * @param labelProvider 提供气泡中的日期
+     */
+    public void attachTo(RecyclerView recyclerView, LabelProvider labelProvider) {
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(mScrollListener);
+        }
+        mRecyclerView = recyclerView;
+        mLabelProvider = labelProvider;
+        if (recyclerView != null) {
+            recyclerView.addOnScrollListener(mScrollListener);
+        }
+    }
+
+    private static int firstVisiblePosition(RecyclerView recyclerView) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            return Math.max(0, ((LinearLayoutManager) layoutManager).findFirstVisibleItemPosition());
+        }
+        View child = recyclerView.getChildAt(0);
+        return child == null ? 0 : Math.max(0, recyclerView.getChildAdapterPosition(child));
+    }
+
+    private void show() {
+        mShowing = true;
+        removeCallbacks(mHideRunnable);
+        if (!mDragging) {
+            postDelayed(mHideRunnable, HIDE_DELAY);
+        }
+        invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mRecyclerView == null) {
+            return false;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                if (!mShowing || event.getX() < getWidth() - TOUCH_WIDTH * mDensity) {
+                    //交给下面的列表处理
+                    return false;
+                }
+                mDragging = true;
+                getParent().requestDisallowInterceptTouchEvent(true);
+                scrollTo(event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (mDragging) {
+                    scrollTo(event.getY());
+                }
+                return mDragging;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (mDragging) {
+                    mDragging = false;
+                    mLabel = null;
+                    show();
+                    return true;
+                }
+                return false;
+            default:
+                return mDragging;
+        }
+    }
+
+    /**
+     * 跳到触摸位置对应的数据
+     */
+    private void scrollTo(float y) {
+        float thumbHeight = THUMB_HEIGHT * mDensity;
+        float track = getHeight() - thumbHeight;
+        mFraction = track <= 0 ? 0 : Math.max(0f, Math.min(1f, (y - thumbHeight / 2) / track));
+        RecyclerView.Adapter<?> adapter = mRecyclerView.getAdapter();
+        int count = adapter == null ? 0 : adapter.getItemCount();
+        if (count > 0) {
+            int position = mLabelProvider == null ? Math.round(mFraction * (count - 1))
+                    : Math.max(0, Math.min(count - 1, mLabelProvider.getScrollPosition(mFraction)));
+            RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+            if (layoutManager instanceof LinearLayoutManager) {
+                ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position, 0);
+            } else {
+                mRecyclerView.scrollToPosition(position);
+            }
+            mLabel = mLabelProvider == null ? null : mLabelProvider.getScrollLabel(position);
+        }
+        show();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(mHideRunnable);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (!mShowing) {
+            return;
+        }
+        float thumbHeight = THUMB_HEIGHT * mDensity;
+        float thumbWidth = THUMB_WIDTH * mDensity;
+        float top = mFraction * (getHeight() - thumbHeight);
+        float right = getWidth() - thumbWidth;
+        mRect.set(right - thumbWidth, top, right, top + thumbHeight);
+        canvas.drawRoundRect(mRect, thumbWidth, thumbWidth, mThumbPaint);
+
+        if (mDragging && mLabel != null) {
+            //气泡
+            float padding = BUBBLE_PADDING * mDensity;
+            float bubbleHeight = BUBBLE_HEIGHT * mDensity;
+            float bubbleRight = right - thumbWidth - BUBBLE_MARGIN * mDensity;
+            float bubbleWidth = mTextPaint.measureText(mLabel) + padding * 2;
+            float bubbleTop = Math.max(0, top + (thumbHeight - bubbleHeight) / 2);
+            mRect.set(bubbleRight - bubbleWidth, bubbleTop, bubbleRight, bubbleTop + bubbleHeight);
+            canvas.drawRoundRect(mRect, bubbleHeight / 2, bubbleHeight / 2, mThumbPaint);
+            float baseline = mRect.centerY() - (mTextPaint.descent() + mTextPaint.ascent()) / 2;
+            canvas.drawText(mLabel, mRect.left + padding, baseline, mTextPaint);
+        }
+    }
+
+    /**
+     * 提供滑块与适配器位置之间的对应关系，以及拖动时气泡中显示的文本
+     */
+    public interface LabelProvider {
+
+        /**
+         * 拖动滑块时跳到的位置
+         *
+         * @param fraction 滑块的位置比例，0~1
+         * @return 适配器位置
+         */
+        int getScrollPosition(float fraction);
+
+        /**
+         * {@link #getScrollPosition(float)}的逆运算，列表滚动时确定滑块的位置
+         *
+         * @param position 第一个可见的适配器位置
+         * @return 0~1
+         */
+        float getScrollFraction(int position);
+
+        /**
+         * @param position 适配器位置
+         * @return 为null时不显示气泡
+         */
+        String getScrollLabel(int position);
+    }
+}
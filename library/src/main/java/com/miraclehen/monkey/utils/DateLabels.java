@@ -0,0 +1,186 @@
+package com.miraclehen.monkey.utils;
+
+import android.content.Context;
+import android.support.v4.os.ConfigurationCompat;
+import android.util.LongSparseArray;
+
+import com.miraclehen.monkey.R;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * 日期视图文本的缓存
+ * <p>
+ * 每一天、每一周、每个月、每一年的文本只生成一次，以天数等作为键缓存。
+ * “今天”以及是否省略年份通过与预先计算的今天、今年第一天比较判断，不创建Calendar。
+ * 缓存命中时不分配对象，日期视图以及快速滚动条的气泡都可以直接使用。
+ * 日期变化或者语言变化时清空缓存。今天的开始与结束时间也被缓存，过了零点之前不再计算今天。
+ */
+public final class DateLabels {
+
+    private static final Object LOCK = new Object();
+
+    private static final LongSparseArray<String> sDayLabels = new LongSparseArray<>();
+    private static final LongSparseArray<String> sWeekLabels = new LongSparseArray<>();
+    private static final LongSparseArray<String> sMonthLabels = new LongSparseArray<>();
+    private static final LongSparseArray<String> sYearLabels = new LongSparseArray<>();
+
+    //生成缓存时的今天、今年第一天、明年第一天以及语言
+    private static long sToday = Long.MIN_VALUE;
+    private static long sYearStart;
+    private static long sNextYearStart;
+    private static Locale sLocale;
+    //今天开始以及明天开始的时间，单位毫秒
+    private static long sTodayStart;
+    private static long sTomorrowStart;
+
+    //按UTC格式化天数，天数已经是本地时区中的天
+    private static SimpleDateFormat sDayFormat;
+    private static SimpleDateFormat sMonthFormat;
+    private static SimpleDateFormat sYearFormat;
+    private static final Date sDate = new Date();
+
+    private DateLabels() {
+        throw new AssertionError("oops! the utility class is about to be instantiated...");
+    }
+
+    /**
+     * 某一天的文本。今天显示“今天”，今年的日期省略年份
+     *
+     * @param day 本地时区中距离1970年1月1日的天数
+     */
+    public static String day(Context context, long day) {
+        synchronized (LOCK) {
+            ensureFresh(context);
+            String label = sDayLabels.get(day);
+            if (label == null) {
+                label = formatDay(context, day);
+                sDayLabels.put(day, label);
+            }
+            return label;
+        }
+    }
+
+    /**
+     * 某一周的文本，显示周一至周日
+     *
+     * @param monday 这一周周一的天数
+     */
+    public static String week(Context context, long monday) {
+        synchronized (LOCK) {
+            ensureFresh(context);
+            String label = sWeekLabels.get(monday);
+            if (label == null) {
+                label = context.getString(R.string.week_format, trimmedDay(monday), trimmedDay(monday + 6));
+                sWeekLabels.put(monday, label);
+            }
+            return label;
+        }
+    }
+
+    /**
+     * 某个月的文本
+     *
+     * @param year  年
+     * @param month 1~12
+     */
+    public static String month(Context context, long year, int month) {
+        long key = year * 12 + month - 1;
+        synchronized (LOCK) {
+            ensureFresh(context);
+            String label = sMonthLabels.get(key);
+            if (label == null) {
+                label = format(sMonthFormat, DateTimeUtil.dayOf(year, month, 1));
+                sMonthLabels.put(key, label);
+            }
+            return label;
+        }
+    }
+
+    /**
+     * 某一年的文本
+     */
+    public static String year(Context context, long year) {
+        synchronized (LOCK) {
+            ensureFresh(context);
+            String label = sYearLabels.get(year);
+            if (label == null) {
+                label = format(sYearFormat, DateTimeUtil.dayOf(year, 1, 1));
+                sYearLabels.put(year, label);
+            }
+            return label;
+        }
+    }
+
+    /**
+     * 日期或者语言变化时清空缓存，并重新计算今天以及今年的范围
+     */
+    private static void ensureFresh(Context context) {
+        long now = System.currentTimeMillis();
+        Locale locale = ConfigurationCompat.getLocales(context.getResources().getConfiguration()).get(0);
+        boolean sameLocale = locale == null ? sLocale == null : locale.equals(sLocale);
+        if (now >= sTodayStart && now < sTomorrowStart && sameLocale) {
+            return;
+        }
+        //过了零点或者时间被调整，只在这时计算今天，不使用DateTimeUtil.toDay(long)，以免替换它的分段表
+        TimeZone zone = TimeZone.getDefault();
+        long today = (now + zone.getOffset(now)) / DateTimeUtil.MILLIS_IN_DAY;
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        sTodayStart = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        sTomorrowStart = calendar.getTimeInMillis();
+        if (today == sToday && sameLocale) {
+            return;
+        }
+        sDayLabels.clear();
+        sWeekLabels.clear();
+        sMonthLabels.clear();
+        sYearLabels.clear();
+        sToday = today;
+        sLocale = locale;
+        long year = DateTimeUtil.yearMonthOfDay(today) >> 4;
+        sYearStart = DateTimeUtil.dayOf(year, 1, 1);
+        sNextYearStart = DateTimeUtil.dayOf(year + 1, 1, 1);
+        sDayFormat = createFormat(context.getString(R.string.date_format));
+        sMonthFormat = createFormat(context.getString(R.string.month_format));
+        sYearFormat = createFormat(context.getString(R.string.year_format));
+    }
+
+    private static String formatDay(Context context, long day) {
+        if (day == sToday) {
+            return context.getString(R.string.today);
+        }
+        return trimmedDay(day);
+    }
+
+    /**
+     * 今年的日期省略年份
+     */
+    private static String trimmedDay(long day) {
+        String text = format(sDayFormat, day);
+        if (day >= sYearStart && day < sNextYearStart) {
+            return text.substring(5);
+        }
+        return text;
+    }
+
+    private static String format(SimpleDateFormat format, long day) {
+        sDate.setTime(day * DateTimeUtil.MILLIS_IN_DAY);
+        return format.format(sDate);
+    }
+
+    private static SimpleDateFormat createFormat(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.CHINA);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+}
@@ -1,13 +1,5 @@
 package com.miraclehen.monkey.utils;
 
-import android.database.Cursor;
-
-import com.miraclehen.monkey.entity.Album;
-import com.miraclehen.monkey.entity.SelectionSpec;
-import com.miraclehen.monkey.ui.adapter.CursorBean;
-
-import java.util.ArrayList;
-import java.util.List;
 import java.util.TimeZone;
 
 /**
@@ -19,6 +11,11 @@ public class DateTimeUtil {
     public static final int SECONDS_IN_DAY = 60 * 60 * 24;
     public static final long MILLIS_IN_DAY = 1000L * SECONDS_IN_DAY;
 
+    /**
+     * toDay(long)使用的时区偏移分段表，不在范围内时重新生成
+     */
+    private static volatile ZoneOffsetRanges sOffsetRanges;
+
     public static boolean isSameDayOfMillis(final long ms1, final long ms2) {
         final long interval = ms1 - ms2;
         return interval < MILLIS_IN_DAY
@@ -26,8 +23,31 @@ public class DateTimeUtil {
                 && toDay(ms1) == toDay(ms2);
     }
 
-    private static long toDay(long millis) {
-        return (millis + TimeZone.getDefault().getOffset(millis)) / MILLIS_IN_DAY;
+    /**
+     * 本地时区中，距离1970年1月1日的天数
+     */
+    public static long toDay(long millis) {
+        ZoneOffsetRanges ranges = sOffsetRanges;
+        if (ranges == null || !ranges.covers(millis)) {
+            ranges = ZoneOffsetRanges.of(TimeZone.getDefault(), millis - 366 * MILLIS_IN_DAY,
+                    millis + 366 * MILLIS_IN_DAY);
+            sOffsetRanges = ranges;
+        }
+        return ranges.toDay(millis);
+    }
+
+    /**
+     * 生成[from, to]之间的时区偏移分段表，批量计算天数时使用。
+     * 每次都会重新读取默认时区，并替换toDay(long)使用的分段表
+     *
+     * @param from 开始时间，单位毫秒
+     * @param to   结束时间，单位毫秒
+     * @return
+     */
+    public static ZoneOffsetRanges offsetRanges(long from, long to) {
+        ZoneOffsetRanges ranges = ZoneOffsetRanges.of(TimeZone.getDefault(), from, to);
+        sOffsetRanges = ranges;
+        return ranges;
     }
 
     /**
@@ -39,71 +59,62 @@ public class DateTimeUtil {
      * @return
      */
     public static long timeToMs(long time) {
-        long cTimeMis = System.currentTimeMillis() > 1514736000000L ? System.currentTimeMillis() : 1514736000000L;
-        return time * 1000 > cTimeMis ? time : time * 1000;
+        return timeToMs(time, System.currentTimeMillis());
     }
 
     /**
-     * 计算自动滚动到相应日期位置
+     * 与{@link #timeToMs(long)}相同，使用传入的当前时间。批量转换时只需要获取一次当前时间
      *
-     * @param album
-     * @param dataList
-     * @param cursor
+     * @param time
+     * @param now  当前时间，单位毫秒
+     * @return
      */
-    public static int calAutoScrollDatePosition(Album album, List<CursorBean> dataList, Cursor cursor) {
-        if (dataList.isEmpty()) {
-            return -1;
-        }
-        ArrayList<CursorBean> data = new ArrayList<>();
-        data.addAll(dataList);
-
-        long targetDate = SelectionSpec.getInstance().autoScrollDate;
-        boolean captureFlag = SelectionSpec.getInstance().isCapture();
-
-        CursorBean beanA = null;
-        CursorBean beanB = null;
-        int result = -1;
-        for (CursorBean bean : data) {
-            if (!bean.isDateView()) {
-                continue;
-            }
-            if (captureFlag) {
-                captureFlag = false;
-                continue;
-            }
-            if (bean.getDateValue() == SelectionSpec.getInstance().autoScrollDate) {
-                return bean.getAdapterPosition();
-            }
-            if (beanA == null) {
-                beanA = bean;
-                if (targetDate > beanA.getDateValue()) {
-                    return bean.getAdapterPosition();
-                }
-                continue;
-            }
-            if (beanB == null) {
-                beanB = bean;
-                if (targetDate > beanB.getDateValue() && targetDate < bean.getDateValue()) {
-                    result = compare(beanA, beanB, targetDate).getAdapterPosition();
-                    break;
-                }
-                continue;
-            }
+    public static long timeToMs(long time, long now) {
+        long cTimeMis = now > 1514736000000L ? now : 1514736000000L;
+        return time * 1000 > cTimeMis ? time : time * 1000;
+    }
 
-            beanA = beanB;
-            beanB = bean;
-            if (targetDate > beanB.getDateValue() && targetDate < beanA.getDateValue()) {
-                result = compare(beanA, beanB, targetDate).getAdapterPosition();
-                break;
-            }
+    /**
+     * 向下取整的除法
+     */
+    public static long floorDiv(long x, long y) {
+        long r = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            r--;
         }
-        return result;
+        return r;
     }
 
-    private static CursorBean compare(CursorBean beanA, CursorBean beanB, long target) {
-        long at = beanA.getDateValue() - target;
-        long bt = beanB.getDateValue() - target;
-        return at > bt ? beanB : beanA;
+    /**
+     * 计算某一天所在的年和月，不创建Calendar
+     *
+     * @param day 距离1970年1月1日的天数
+     * @return 年左移4位，低4位为月（1~12）
+     */
+    public static long yearMonthOfDay(long day) {
+        long z = day + 719468;
+        long era = floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return (year << 4) | month;
+    }
+
+    /**
+     * 某年某月某日距离1970年1月1日的天数，{@link #yearMonthOfDay(long)}的逆运算
+     *
+     * @param month 1~12
+     */
+    public static long dayOf(long year, int month, int dayOfMonth) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + dayOfMonth - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
     }
 
 }
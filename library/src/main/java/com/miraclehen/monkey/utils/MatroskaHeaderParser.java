@@ -0,0 +1,241 @@
+package com.miraclehen.monkey.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 解析Matroska、WebM文件的Segment
+ * <p>
+ * 按EBML元素逐个读取头部，只进入Info以及Tracks，Cluster等其他元素按大小跳过，不读取媒体数据。
+ */
+final class MatroskaHeaderParser {
+
+    /**
+     * 最多读取的元素数量，防止损坏的文件导致长时间读取
+     */
+    private static final int MAX_ELEMENTS = 4096;
+    /**
+     * 大小未知的元素
+     */
+    private static final long UNKNOWN_SIZE = -1;
+
+    private static final int ID_EBML = 0x1A45DFA3;
+    private static final int ID_SEGMENT = 0x18538067;
+    private static final int ID_INFO = 0x1549A966;
+    private static final int ID_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int ID_DURATION = 0x4489;
+    private static final int ID_TRACKS = 0x1654AE6B;
+    private static final int ID_TRACK_ENTRY = 0xAE;
+    private static final int ID_TRACK_TYPE = 0x83;
+    private static final int ID_VIDEO = 0xE0;
+    private static final int ID_PIXEL_WIDTH = 0xB0;
+    private static final int ID_PIXEL_HEIGHT = 0xBA;
+    private static final int ID_PROJECTION = 0x7670;
+    private static final int ID_PROJECTION_POSE_ROLL = 0x7675;
+    private static final int ID_CLUSTER = 0x1F43B675;
+
+    private static final int TRACK_TYPE_VIDEO = 1;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private int mElementCount;
+
+    //Info
+    private boolean mFoundInfo;
+    private long mTimecodeScale = 1000000;
+    private double mDuration;
+    //正在解析的TrackEntry
+    private long mTrackType;
+    private int mTrackWidth;
+    private int mTrackHeight;
+    private int mTrackRotation;
+    //第一个视频轨道
+    private boolean mFoundVideo;
+    int width;
+    int height;
+    int rotation;
+
+    //readElementHeader的结果
+    private int mId;
+    private int mHeaderSize;
+    private long mDataSize;
+
+    MatroskaHeaderParser(FileChannel channel, ByteBuffer buffer) {
+        mChannel = channel;
+        mBuffer = buffer;
+    }
+
+    /**
+     * @return 是否找到了Info
+     */
+    boolean parse() throws IOException {
+        long size = mChannel.size();
+        if (!readElementHeader(0) || mId != ID_EBML || mDataSize == UNKNOWN_SIZE) {
+            return false;
+        }
+        long position = mHeaderSize + mDataSize;
+        if (!readElementHeader(position) || mId != ID_SEGMENT) {
+            return false;
+        }
+        long start = position + mHeaderSize;
+        long end = mDataSize == UNKNOWN_SIZE ? size : Math.min(size, start + mDataSize);
+        parseSegment(start, end);
+        return mFoundInfo;
+    }
+
+    /**
+     * 时长，单位毫秒
+     */
+    long getDuration() {
+        return (long) (mDuration * mTimecodeScale / 1000000);
+    }
+
+    boolean hasVideo() {
+        return mFoundVideo;
+    }
+
+    private void parseSegment(long start, long end) throws IOException {
+        long position = start;
+        while (position < end && mElementCount++ < MAX_ELEMENTS) {
+            if (!readElementHeader(position)) {
+                return;
+            }
+            int id = mId;
+            long data = position + mHeaderSize;
+            if (id == ID_CLUSTER && (mFoundInfo && mFoundVideo || mDataSize == UNKNOWN_SIZE)) {
+                //Info和Tracks一般在第一个Cluster之前
+                return;
+            }
+            if (mDataSize == UNKNOWN_SIZE) {
+                return;
+            }
+            long next = data + mDataSize;
+            if (id == ID_INFO) {
+                mFoundInfo = true;
+                parseChildren(data, next);
+            } else if (id == ID_TRACKS) {
+                parseChildren(data, next);
+            }
+            position = next;
+        }
+    }
+
+    private void parseChildren(long start, long end) throws IOException {
+        long position = start;
+        while (position < end && mElementCount++ < MAX_ELEMENTS) {
+            if (!readElementHeader(position) || mDataSize == UNKNOWN_SIZE) {
+                return;
+            }
+            int id = mId;
+            long data = position + mHeaderSize;
+            long dataSize = mDataSize;
+            long next = data + dataSize;
+            switch (id) {
+                case ID_TIMECODE_SCALE:
+                    mTimecodeScale = readUnsigned(data, dataSize);
+                    break;
+                case ID_DURATION:
+                    mDuration = readFloat(data, dataSize);
+                    break;
+                case ID_TRACK_ENTRY:
+                    mTrackType = 0;
+                    mTrackWidth = 0;
+                    mTrackHeight = 0;
+                    mTrackRotation = 0;
+                    parseChildren(data, next);
+                    if (mTrackType == TRACK_TYPE_VIDEO && !mFoundVideo) {
+                        mFoundVideo = true;
+                        width = mTrackWidth;
+                        height = mTrackHeight;
+                        rotation = mTrackRotation;
+                    }
+                    break;
+                case ID_TRACK_TYPE:
+                    mTrackType = readUnsigned(data, dataSize);
+                    break;
+                case ID_VIDEO:
+                case ID_PROJECTION:
+                    parseChildren(data, next);
+                    break;
+                case ID_PIXEL_WIDTH:
+                    mTrackWidth = (int) readUnsigned(data, dataSize);
+                    break;
+                case ID_PIXEL_HEIGHT:
+                    mTrackHeight = (int) readUnsigned(data, dataSize);
+                    break;
+                case ID_PROJECTION_POSE_ROLL:
+                    //逆时针的角度，转换为顺时针并取整到90度
+                    int roll = (int) Math.round(readFloat(data, dataSize) / 90) * 90;
+                    mTrackRotation = ((-roll % 360) + 360) % 360;
+                    break;
+                default:
+                    break;
+            }
+            position = next;
+        }
+    }
+
+    /**
+     * 读取元素的ID以及数据长度，保存在mId、mHeaderSize、mDataSize中
+     *
+     * @return 元素头部不完整或者格式错误时返回false
+     */
+    private boolean readElementHeader(long position) throws IOException {
+        ByteBuffer buffer = VideoMetadataEngine.readAt(mChannel, mBuffer, position, 12);
+        int available = buffer.remaining();
+        if (available < 2) {
+            return false;
+        }
+        //ID的长度由第一个字节的前导0决定，保留标记位
+        int first = buffer.get(0) & 0xFF;
+        int idLength = Integer.numberOfLeadingZeros(first) - 23;
+        if (idLength < 1 || idLength > 4 || idLength >= available) {
+            return false;
+        }
+        int id = 0;
+        for (int i = 0; i < idLength; i++) {
+            id = (id << 8) | (buffer.get(i) & 0xFF);
+        }
+        //长度去掉标记位，所有位都为1表示未知
+        first = buffer.get(idLength) & 0xFF;
+        int sizeLength = Integer.numberOfLeadingZeros(first) - 23;
+        if (sizeLength < 1 || sizeLength > 8 || idLength + sizeLength > available) {
+            return false;
+        }
+        long size = first & (0xFF >> sizeLength);
+        boolean allOnes = size == (0xFF >> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            int b = buffer.get(idLength + i) & 0xFF;
+            allOnes &= b == 0xFF;
+            size = (size << 8) | b;
+        }
+        mId = id;
+        mHeaderSize = idLength + sizeLength;
+        mDataSize = allOnes ? UNKNOWN_SIZE : size;
+        return true;
+    }
+
+    private long readUnsigned(long position, long size) throws IOException {
+        if (size < 1 || size > 8) {
+            return 0;
+        }
+        ByteBuffer buffer = VideoMetadataEngine.readAt(mChannel, mBuffer, position, (int) size);
+        long value = 0;
+        for (int i = 0; i < buffer.remaining(); i++) {
+            value = (value << 8) | (buffer.get(i) & 0xFF);
+        }
+        return value;
+    }
+
+    private double readFloat(long position, long size) throws IOException {
+        ByteBuffer buffer = VideoMetadataEngine.readAt(mChannel, mBuffer, position, (int) Math.min(size, 8));
+        if (size == 4 && buffer.remaining() == 4) {
+            return buffer.getFloat(0);
+        }
+        if (size == 8 && buffer.remaining() == 8) {
+            return buffer.getDouble(0);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,313 @@
+package com.miraclehen.monkey.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.LruCache;
+
+import com.miraclehen.monkey.MimeType;
+import com.miraclehen.monkey.entity.MediaItem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按文件内容判断类型
+ * <p>
+ * 只读取文件开头的{@link #HEADER_SIZE}个字节，根据文件头的特征判断，不依赖扩展名，也不需要
+ * ContentResolver.getType以及查询路径。有路径时直接读取文件，否则通过openFileDescriptor读取。
+ * 每个线程复用同一个direct ByteBuffer。
+ * <p>
+ * 结果以(_id, 修改时间)为键缓存，文件被修改之后重新判断。
+ */
+public final class MimeTypeDetector {
+
+    /**
+     * 读取的文件头长度
+     */
+    public static final int HEADER_SIZE = 32;
+
+    private static final int CACHE_SIZE = 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(HEADER_SIZE);
+        }
+    };
+
+    private static final LruCache<Long, Verdict> CACHE = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * ftyp中视频的品牌。3GPP的品牌较多，按前缀判断
+     */
+    private static final Map<Integer, MimeType> VIDEO_BRANDS = new HashMap<>();
+    /**
+     * HEIF、AVIF等图片以及M4A等音频也使用ftyp，不能当作视频
+     */
+    private static final Set<Integer> NON_VIDEO_BRANDS = new HashSet<>();
+
+    static {
+        for (String brand : new String[]{"isom", "iso2", "iso3", "iso4", "iso5", "iso6", "mp41", "mp42", "mp71",
+                "avc1", "M4V ", "M4VH", "M4VP", "dash", "msdh", "msix", "mmp4", "f4v ", "MSNV", "XAVC"}) {
+            VIDEO_BRANDS.put(fourCc(brand), MimeType.MP4);
+        }
+        VIDEO_BRANDS.put(fourCc("qt  "), MimeType.QUICKTIME);
+        for (String brand : new String[]{"heic", "heix", "hevc", "hevx", "heim", "heis", "hevm", "hevs",
+                "mif1", "msf1", "miaf", "avif", "avis", "M4A ", "M4B ", "M4P ", "F4A ", "F4B "}) {
+            NON_VIDEO_BRANDS.add(fourCc(brand));
+        }
+    }
+
+    private MimeTypeDetector() {
+        throw new AssertionError("oops! the utility class is about to be instantiated...");
+    }
+
+    /**
+     * 判断MediaItem的类型，结果会被缓存
+     *
+     * @return 无法读取或者无法识别时返回null
+     */
+    @WorkerThread
+    @Nullable
+    public static MimeType detect(Context context, MediaItem item) {
+        String path = item.getOriginalPath();
+        long stamp = item.getModifiedDate();
+        if (stamp <= 0 && path != null) {
+            stamp = new File(path).lastModified();
+        }
+        //没有_id或者无法得到修改时间时不缓存
+        boolean cacheable = item.getId() > 0 && stamp > 0;
+        if (cacheable) {
+            Verdict verdict = CACHE.get(item.getId());
+            if (verdict != null && verdict.mStamp == stamp) {
+                return verdict.mType;
+            }
+        }
+        MimeType type = path != null ? detect(new File(path)) : null;
+        if (type == null && item.getContentUri() != null) {
+            type = detect(context.getContentResolver(), item.getContentUri());
+        }
+        if (cacheable) {
+            CACHE.put(item.getId(), new Verdict(stamp, type));
+        }
+        return type;
+    }
+
+    /**
+     * 判断文件的类型，不缓存
+     *
+     * @return 无法读取或者无法识别时返回null
+     */
+    @WorkerThread
+    @Nullable
+    public static MimeType detect(File file) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            return detect(in.getChannel());
+        } catch (IOException | SecurityException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 判断uri指向的文件的类型，不缓存
+     *
+     * @return 无法读取或者无法识别时返回null
+     */
+    @WorkerThread
+    @Nullable
+    public static MimeType detect(ContentResolver resolver, Uri uri) {
+        ParcelFileDescriptor descriptor = null;
+        FileInputStream in = null;
+        try {
+            descriptor = resolver.openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return null;
+            }
+            in = new FileInputStream(descriptor.getFileDescriptor());
+            return detect(in.getChannel());
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+            if (descriptor != null) {
+                try {
+                    descriptor.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static MimeType detect(FileChannel channel) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+        return sniff(buffer);
+    }
+
+    /**
+     * 根据文件头判断类型
+     *
+     * @param header 从position到limit是文件开头的数据
+     * @return 无法识别时返回null
+     */
+    @Nullable
+    public static MimeType sniff(ByteBuffer header) {
+        int length = header.remaining();
+        int base = header.position();
+        if (length < 4) {
+            return null;
+        }
+        if (startsWith(header, base, 0xFF, 0xD8, 0xFF)) {
+            return MimeType.JPEG;
+        }
+        if (startsWith(header, base, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return MimeType.PNG;
+        }
+        if (startsWith(header, base, 'G', 'I', 'F', '8')) {
+            return MimeType.GIF;
+        }
+        if (startsWith(header, base, 'R', 'I', 'F', 'F') && length >= 12) {
+            if (startsWith(header, base + 8, 'W', 'E', 'B', 'P')) {
+                return MimeType.WEBP;
+            }
+            if (startsWith(header, base + 8, 'A', 'V', 'I', ' ')) {
+                return MimeType.AVI;
+            }
+            return null;
+        }
+        if (startsWith(header, base, 0x1A, 0x45, 0xDF, 0xA3)) {
+            //EBML，DocType区分WebM和其他Matroska
+            return indexOf(header, base, 'w', 'e', 'b', 'm') != -1 ? MimeType.WEBM : MimeType.MKV;
+        }
+        if (length >= 12 && startsWith(header, base + 4, 'f', 't', 'y', 'p')) {
+            return ftypBrandOf(header, base);
+        }
+        if (length >= 8 && (startsWith(header, base + 4, 'm', 'o', 'o', 'v')
+                || startsWith(header, base + 4, 'm', 'd', 'a', 't')
+                || startsWith(header, base + 4, 'w', 'i', 'd', 'e'))) {
+            //没有ftyp的旧QuickTime文件
+            return MimeType.QUICKTIME;
+        }
+        if (startsWith(header, base, 0x00, 0x00, 0x01, 0xBA) || startsWith(header, base, 0x00, 0x00, 0x01, 0xB3)) {
+            return MimeType.MPEG;
+        }
+        if (startsWith(header, base, 'B', 'M') && startsWith(header, base + 6, 0, 0, 0, 0)) {
+            //保留字段为0
+            return MimeType.BMP;
+        }
+        if (startsWith(header, base, 0x47, 0x40, 0x00)) {
+            //TS的第一个包是PID为0的PAT。只读取了一个包的开头，无法检查下一个包的同步字节
+            return MimeType.TS;
+        }
+        return null;
+    }
+
+    /**
+     * 按ftyp的major brand判断，无法识别时再按文件头中的compatible brands判断。
+     * 图片、音频以及无法识别的品牌返回null，由调用者按扩展名等判断
+     *
+     * @param base ftyp的开始位置
+     */
+    private static MimeType ftypBrandOf(ByteBuffer header, int base) {
+        int major = header.getInt(base + 8);
+        if (NON_VIDEO_BRANDS.contains(major)) {
+            return null;
+        }
+        MimeType type = videoBrandOf(major);
+        if (type != null) {
+            return type;
+        }
+        //compatible brands从第16个字节开始，只检查已经读取的部分
+        long size = header.getInt(base) & 0xFFFFFFFFL;
+        int end = (int) Math.min(header.limit(), base + size);
+        for (int i = base + 16; i + 4 <= end; i += 4) {
+            if (NON_VIDEO_BRANDS.contains(header.getInt(i))) {
+                return null;
+            }
+        }
+        for (int i = base + 16; i + 4 <= end; i += 4) {
+            type = videoBrandOf(header.getInt(i));
+            if (type != null) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static MimeType videoBrandOf(int brand) {
+        MimeType type = VIDEO_BRANDS.get(brand);
+        if (type != null) {
+            return type;
+        }
+        if (brand >>> 16 == ('3' << 8 | 'g')) {
+            return (brand >>> 8 & 0xFF) == '2' ? MimeType.THREEGPP2 : MimeType.THREEGPP;
+        }
+        return null;
+    }
+
+    private static int fourCc(String brand) {
+        return (brand.charAt(0) << 24) | (brand.charAt(1) << 16) | (brand.charAt(2) << 8) | brand.charAt(3);
+    }
+
+    private static boolean startsWith(ByteBuffer header, int offset, int... bytes) {
+        if (offset + bytes.length > header.limit()) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if ((header.get(offset + i) & 0xFF) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer header, int from, int... bytes) {
+        for (int i = from; i + bytes.length <= header.limit(); i++) {
+            if (startsWith(header, i, bytes)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void closeQuietly(FileInputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static class Verdict {
+        final long mStamp;
+        //无法识别时为null
+        final MimeType mType;
+
+        Verdict(long stamp, MimeType type) {
+            mStamp = stamp;
+            mType = type;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.miraclehen.monkey.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 解析MP4、QuickTime、3GPP文件的moov
+ * <p>
+ * 按box逐个读取头部，只读取mvhd、tkhd、hdlr的开头，其他box按大小跳过，不读取媒体数据。
+ */
+final class Mp4HeaderParser {
+
+    /**
+     * 最多读取的box数量，防止损坏的文件导致长时间读取
+     */
+    private static final int MAX_BOXES = 4096;
+
+    private static final int TYPE_MOOV = fourCc('m', 'o', 'o', 'v');
+    private static final int TYPE_MVHD = fourCc('m', 'v', 'h', 'd');
+    private static final int TYPE_TRAK = fourCc('t', 'r', 'a', 'k');
+    private static final int TYPE_TKHD = fourCc('t', 'k', 'h', 'd');
+    private static final int TYPE_MDIA = fourCc('m', 'd', 'i', 'a');
+    private static final int TYPE_HDLR = fourCc('h', 'd', 'l', 'r');
+    private static final int HANDLER_VIDEO = fourCc('v', 'i', 'd', 'e');
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private int mBoxCount;
+
+    //mvhd
+    private long mTimescale;
+    private long mDuration;
+    //正在解析的trak
+    private int mTrackWidth;
+    private int mTrackHeight;
+    private int mTrackRotation;
+    private boolean mTrackIsVideo;
+    //第一个视频轨道
+    private boolean mFoundVideo;
+    int width;
+    int height;
+    int rotation;
+
+    Mp4HeaderParser(FileChannel channel, ByteBuffer buffer) {
+        mChannel = channel;
+        mBuffer = buffer;
+    }
+
+    /**
+     * @return 是否找到了moov
+     */
+    boolean parse() throws IOException {
+        long size = mChannel.size();
+        long position = 0;
+        while (position + 8 <= size && mBoxCount++ < MAX_BOXES) {
+            long[] box = readBoxHeader(position, size);
+            if (box == null) {
+                return false;
+            }
+            if ((int) box[0] == TYPE_MOOV) {
+                parseChildren(position + box[1], position + box[2]);
+                return mTimescale > 0;
+            }
+            position += box[2];
+        }
+        return false;
+    }
+
+    /**
+     * 时长，单位毫秒
+     */
+    long getDuration() {
+        return mTimescale > 0 ? mDuration * 1000 / mTimescale : 0;
+    }
+
+    boolean hasVideo() {
+        return mFoundVideo;
+    }
+
+    private void parseChildren(long start, long end) throws IOException {
+        long position = start;
+        while (position + 8 <= end && mBoxCount++ < MAX_BOXES) {
+            long[] box = readBoxHeader(position, end);
+            if (box == null) {
+                return;
+            }
+            int type = (int) box[0];
+            long payload = position + box[1];
+            long next = position + box[2];
+            if (type == TYPE_MVHD) {
+                parseMvhd(payload);
+            } else if (type == TYPE_TRAK) {
+                mTrackWidth = 0;
+                mTrackHeight = 0;
+                mTrackRotation = 0;
+                mTrackIsVideo = false;
+                parseChildren(payload, next);
+                if (mTrackIsVideo && !mFoundVideo) {
+                    mFoundVideo = true;
+                    width = mTrackWidth;
+                    height = mTrackHeight;
+                    rotation = mTrackRotation;
+                }
+            } else if (type == TYPE_MDIA) {
+                parseChildren(payload, next);
+            } else if (type == TYPE_TKHD) {
+                parseTkhd(payload, next);
+            } else if (type == TYPE_HDLR) {
+                ByteBuffer buffer = VideoMetadataEngine.readAt(mChannel, mBuffer, payload, 12);
+                mTrackIsVideo = buffer.remaining() >= 12 && buffer.getInt(8) == HANDLER_VIDEO;
+            }
+            position = next;
+        }
+    }
+
+    private void parseMvhd(long payload) throws IOException {
+        ByteBuffer buffer = VideoMetadataEngine.readAt(mChannel, mBuffer, payload, 32);
+        if (buffer.remaining() < 24) {
+            return;
+        }
+        if (buffer.get(0) == 1) {
+            if (buffer.remaining() < 32) {
+                return;
+            }
+            mTimescale = buffer.getInt(20) & 0xFFFFFFFFL;
+            mDuration = buffer.getLong(24);
+        } else {
+            mTimescale = buffer.getInt(12) & 0xFFFFFFFFL;
+            mDuration = buffer.getInt(16) & 0xFFFFFFFFL;
+        }
+    }
+
+    private void parseTkhd(long payload, long end) throws IOException {
+        ByteBuffer buffer = VideoMetadataEngine.readAt(mChannel, mBuffer, payload, (int) Math.min(96, end - payload));
+        boolean version1 = buffer.remaining() > 0 && buffer.get(0) == 1;
+        int matrix = version1 ? 52 : 40;
+        if (buffer.remaining() < matrix + 44) {
+            return;
+        }
+        mTrackRotation = rotationOf(buffer.getInt(matrix), buffer.getInt(matrix + 4),
+                buffer.getInt(matrix + 12), buffer.getInt(matrix + 16));
+        //16.16定点数
+        mTrackWidth = buffer.getInt(matrix + 36) >>> 16;
+        mTrackHeight = buffer.getInt(matrix + 40) >>> 16;
+    }
+
+    /**
+     * 由变换矩阵得到顺时针旋转的角度，参数是16.16定点数
+     */
+    private static int rotationOf(int a, int b, int c, int d) {
+        final int one = 0x10000;
+        if (a == 0 && b == one && c == -one && d == 0) {
+            return 90;
+        }
+        if (a == -one && b == 0 && c == 0 && d == -one) {
+            return 180;
+        }
+        if (a == 0 && b == -one && c == one && d == 0) {
+            return 270;
+        }
+        return 0;
+    }
+
+    /**
+     * 读取box的头部
+     *
+     * @return {类型, 头部长度, box长度}，box不完整时返回null
+     */
+    private long[] readBoxHeader(long position, long end) throws IOException {
+        ByteBuffer buffer = VideoMetadataEngine.readAt(mChannel, mBuffer, position, 16);
+        if (buffer.remaining() < 8) {
+            return null;
+        }
+        long size = buffer.getInt(0) & 0xFFFFFFFFL;
+        int type = buffer.getInt(4);
+        int header = 8;
+        if (size == 1) {
+            if (buffer.remaining() < 16) {
+                return null;
+            }
+            size = buffer.getLong(8);
+            header = 16;
+        } else if (size == 0) {
+            //一直到文件末尾
+            size = end - position;
+        }
+        if (size < header || position + size > end) {
+            return null;
+        }
+        return new long[]{type, header, size};
+    }
+
+    private static int fourCc(char a, char b, char c, char d) {
+        return (a << 24) | (b << 16) | (c << 8) | d;
+    }
+}
@@ -161,10 +161,19 @@ public final class PhotoMetadataUtils {
         if (context == null) {
             return false;
         }
+        MimeType mimeType = MimeType.fromCode(item.getMimeCode());
+        if (mimeType != null) {
+            //mime_type列可以确定类型时不需要查询ContentResolver
+            return SelectionSpec.getInstance().mimeTypeSet.contains(mimeType);
+        }
 
+        mimeType = MimeTypeDetector.detect(context, item);
+        if (mimeType != null) {
+            return SelectionSpec.getInstance().mimeTypeSet.contains(mimeType);
+        }
         ContentResolver resolver = context.getContentResolver();
         for (MimeType type : SelectionSpec.getInstance().mimeTypeSet) {
-            if (type.checkType(resolver, item.getContentUri())) {
+            if (type.checkExtension(resolver, item.getContentUri())) {
                 return true;
             }
         }
@@ -0,0 +1,317 @@
+package com.miraclehen.monkey.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.os.CancellationSignal;
+
+import com.miraclehen.monkey.entity.MediaItem;
+import com.miraclehen.monkey.entity.VideoMetadata;
+import com.miraclehen.monkey.model.ResultStage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 内置的{@link ResultStage}
+ */
+public final class ResultStages {
+
+    /**
+     * 计算摘要时每次读取的长度
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final String COMPRESS_DIR = "monkey_compressed";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ResultStages() {
+        throw new AssertionError("oops! the utility class is about to be instantiated...");
+    }
+
+    /**
+     * 从视频文件头读取旋转之后显示的宽高，没有时长的数据同时补充时长。
+     * 没有宽高的图片只解码边界得到宽高
+     */
+    public static ResultStage metadata() {
+        return new NamedStage("metadata") {
+            @Override
+            public void process(Context context, MediaItem item, CancellationSignal signal) throws IOException {
+                if (item.isVideo()) {
+                    VideoMetadata metadata = VideoMetadataEngine.read(item.getOriginalPath());
+                    if (metadata == null) {
+                        return;
+                    }
+                    item.setWidth(metadata.getDisplayWidth());
+                    item.setHeight(metadata.getDisplayHeight());
+                    if (item.getDuration() <= 0) {
+                        item.setDuration(metadata.duration);
+                    }
+                } else if (item.getWidth() <= 0 || item.getHeight() <= 0) {
+                    BitmapFactory.Options options = decodeBounds(context, item);
+                    if (options.outWidth > 0 && options.outHeight > 0) {
+                        item.setWidth(options.outWidth);
+                        item.setHeight(options.outHeight);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * 横向显示的数据orientation为90，否则为0。视频按文件头中的旋转角度判断，图片按EXIF中的旋转角度判断
+     */
+    public static ResultStage orientation() {
+        return new NamedStage("orientation") {
+            @Override
+            public void process(Context context, MediaItem item, CancellationSignal signal) throws IOException {
+                long width;
+                long height;
+                if (item.isVideo()) {
+                    VideoMetadata metadata = VideoMetadataEngine.read(item.getOriginalPath());
+                    if (metadata == null) {
+                        return;
+                    }
+                    width = metadata.getDisplayWidth();
+                    height = metadata.getDisplayHeight();
+                } else {
+                    int rotation = rotationOf(item);
+                    width = rotation % 180 == 0 ? item.getWidth() : item.getHeight();
+                    height = rotation % 180 == 0 ? item.getHeight() : item.getWidth();
+                }
+                if (width > 0 && height > 0) {
+                    item.setOrientation(width > height ? 90 : 0);
+                }
+            }
+        };
+    }
+
+    /**
+     * 计算文件内容的摘要，保存为{@link MediaItem#getContentHash()}，小写的十六进制字符串
+     *
+     * @param algorithm {@link MessageDigest}支持的算法，例如"MD5"、"SHA-256"
+     */
+    public static ResultStage hash(final String algorithm) {
+        try {
+            //提前检查算法是否可用
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("unsupported digest algorithm: " + algorithm, e);
+        }
+        return new NamedStage("hash(" + algorithm + ")") {
+            @Override
+            public void process(Context context, MediaItem item, CancellationSignal signal) throws IOException {
+                MessageDigest digest;
+                try {
+                    digest = MessageDigest.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+                InputStream in = open(context, item);
+                try {
+                    byte[] buffer = new byte[READ_BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        signal.throwIfCanceled();
+                        digest.update(buffer, 0, read);
+                    }
+                } finally {
+                    closeQuietly(in);
+                }
+                item.setContentHash(toHex(digest.digest()));
+            }
+        };
+    }
+
+    /**
+     * 把图片缩小到最长边不超过maxSide，按EXIF旋转之后保存为JPEG，路径保存为{@link MediaItem#getCompressedPath()}。
+     * 视频和GIF不处理；不需要缩小也不需要旋转的JPEG直接使用原图的路径。
+     * <p>
+     * 压缩的图片保存在cacheDir中，同一张图片没有修改时不重复压缩。
+     *
+     * @param maxSide 最长边，单位像素
+     * @param quality JPEG质量，0到100
+     */
+    public static ResultStage compress(final int maxSide, final int quality) {
+        if (maxSide <= 0) {
+            throw new IllegalArgumentException("maxSide must be greater than zero");
+        }
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality must be in [0, 100]");
+        }
+        return new NamedStage("compress(" + maxSide + ", " + quality + ")") {
+            @Override
+            public void process(Context context, MediaItem item, CancellationSignal signal) throws IOException {
+                if (!item.isImage() || item.isGif()) {
+                    return;
+                }
+                BitmapFactory.Options options = decodeBounds(context, item);
+                if (options.outWidth <= 0 || options.outHeight <= 0) {
+                    return;
+                }
+                int rotation = rotationOf(item);
+                int longest = Math.max(options.outWidth, options.outHeight);
+                if (longest <= maxSide && rotation == 0 && "image/jpeg".equals(options.outMimeType)
+                        && item.getOriginalPath() != null) {
+                    item.setCompressedPath(item.getOriginalPath());
+                    return;
+                }
+                File target = compressedFile(context, item, maxSide, quality);
+                if (target.exists()) {
+                    item.setCompressedPath(target.getAbsolutePath());
+                    return;
+                }
+                signal.throwIfCanceled();
+
+                //先按2的幂缩小解码，再缩放到准确的大小
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = 1;
+                while (longest / (options.inSampleSize * 2) >= maxSide) {
+                    options.inSampleSize *= 2;
+                }
+                Bitmap bitmap;
+                try {
+                    bitmap = decode(context, item, options);
+                } catch (OutOfMemoryError e) {
+                    throw new IOException("out of memory when decoding " + item.getId(), e);
+                }
+                if (bitmap == null) {
+                    return;
+                }
+                try {
+                    signal.throwIfCanceled();
+                    Matrix matrix = new Matrix();
+                    float scale = Math.min(1f, (float) maxSide / Math.max(bitmap.getWidth(), bitmap.getHeight()));
+                    matrix.postScale(scale, scale);
+                    matrix.postRotate(rotation);
+                    Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0,
+                            bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+                    if (transformed != bitmap) {
+                        bitmap.recycle();
+                        bitmap = transformed;
+                    }
+                    signal.throwIfCanceled();
+                    //写入临时文件之后再重命名，取消或者失败时不会留下不完整的文件
+                    //每个任务使用不同的临时文件，同一张图片同时被压缩时不会写入同一个文件
+                    File temp = File.createTempFile("compress", ".tmp", target.getParentFile());
+                    try {
+                        OutputStream out = new FileOutputStream(temp);
+                        try {
+                            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+                        } finally {
+                            out.close();
+                        }
+                        if (!temp.renameTo(target) && !target.exists()) {
+                            throw new IOException("cannot rename " + temp);
+                        }
+                    } finally {
+                        temp.delete();
+                    }
+                    item.setCompressedPath(target.getAbsolutePath());
+                } catch (OutOfMemoryError e) {
+                    throw new IOException("out of memory when compressing " + item.getId(), e);
+                } finally {
+                    bitmap.recycle();
+                }
+            }
+        };
+    }
+
+    private static File compressedFile(Context context, MediaItem item, int maxSide, int quality) throws IOException {
+        File dir = new File(context.getCacheDir(), COMPRESS_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("cannot create " + dir);
+        }
+        String source;
+        long version;
+        if (item.getOriginalPath() != null) {
+            //以文件的修改时间以及长度判断原图是否变化
+            File file = new File(item.getOriginalPath());
+            source = item.getOriginalPath();
+            version = file.lastModified() * 31 + file.length();
+        } else {
+            source = String.valueOf(item.getContentUri());
+            version = item.length;
+        }
+        String name = Integer.toHexString(source.hashCode()) + "_" + item.getId() + "_" + Long.toHexString(version)
+                + "_" + maxSide + "_" + quality + ".jpg";
+        return new File(dir, name);
+    }
+
+    private static int rotationOf(MediaItem item) {
+        return item.getOriginalPath() != null ? ExifInterfaceCompat.getExifOrientation(item.getOriginalPath()) : 0;
+    }
+
+    private static BitmapFactory.Options decodeBounds(Context context, MediaItem item) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(context, item, options);
+        return options;
+    }
+
+    private static Bitmap decode(Context context, MediaItem item, BitmapFactory.Options options) throws IOException {
+        InputStream in = open(context, item);
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 有路径时直接读取文件，否则通过ContentResolver读取
+     */
+    private static InputStream open(Context context, MediaItem item) throws IOException {
+        String path = item.getOriginalPath();
+        if (path != null && new File(path).canRead()) {
+            return new FileInputStream(path);
+        }
+        if (item.getContentUri() == null) {
+            throw new IOException("no readable source for " + item.getId());
+        }
+        InputStream in = context.getContentResolver().openInputStream(item.getContentUri());
+        if (in == null) {
+            throw new IOException("cannot open " + item.getContentUri());
+        }
+        return in;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private abstract static class NamedStage implements ResultStage {
+        private final String mName;
+
+        NamedStage(String name) {
+            mName = name;
+        }
+
+        @Override
+        public String toString() {
+            return mName;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.miraclehen.monkey.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台任务执行器
+ * <p>
+ * 查询MediaStore等耗时操作在后台线程中执行，结果通过{@link #postToMain(Runnable)}回到主线程。
+ */
+public final class TaskExecutor {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * 单线程执行，保证同一个数据源的查询按顺序进行
+     */
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("monkey-io", Thread.NORM_PRIORITY - 1));
+    /**
+     * 不访问MediaStore的计算任务，例如生成日期分组，不需要排在查询之后
+     */
+    private static final ExecutorService COMPUTE_EXECUTOR = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("monkey-compute", Thread.NORM_PRIORITY - 1));
+    /**
+     * 并行执行的线程数量，不超过CPU核数，最多4个
+     */
+    private static final int PARALLELISM = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /**
+     * 可以拆分成多段并行执行的任务，例如对整个列表执行过滤器
+     */
+    private static final ExecutorService PARALLEL_EXECUTOR = Executors.newFixedThreadPool(PARALLELISM,
+            new NamedThreadFactory("monkey-parallel", Thread.NORM_PRIORITY - 1));
+    /**
+     * 用户正在等待结果的少量任务，例如点击时执行过滤器。不排在查询以及整个列表的计算之后，
+     * 空闲的线程一段时间之后退出
+     */
+    private static final ExecutorService INTERACTIVE_EXECUTOR = Executors.newCachedThreadPool(
+            new NamedThreadFactory("monkey-interactive", Thread.NORM_PRIORITY));
+    /**
+     * 用户点击确定之后处理选中结果，例如压缩、读取视频信息。和整个列表的计算分开，
+     * 不排在它们之后。线程数量和并行执行相同，空闲的线程一段时间之后退出
+     */
+    private static final ExecutorService RESULT_EXECUTOR = newResultExecutor();
+
+    private TaskExecutor() {
+        throw new AssertionError("oops! the utility class is about to be instantiated...");
+    }
+
+    public static void executeOnIo(Runnable runnable) {
+        IO_EXECUTOR.execute(runnable);
+    }
+
+    public static void executeOnCompute(Runnable runnable) {
+        COMPUTE_EXECUTOR.execute(runnable);
+    }
+
+    public static void executeInParallel(Runnable runnable) {
+        PARALLEL_EXECUTOR.execute(runnable);
+    }
+
+    public static void executeInteractive(Runnable runnable) {
+        INTERACTIVE_EXECUTOR.execute(runnable);
+    }
+
+    public static void executeResult(Runnable runnable) {
+        RESULT_EXECUTOR.execute(runnable);
+    }
+
+    /**
+     * 并行执行的线程数量
+     */
+    public static int parallelism() {
+        return PARALLELISM;
+    }
+
+    public static void postToMain(Runnable runnable) {
+        MAIN_HANDLER.post(runnable);
+    }
+
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static ExecutorService newResultExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PARALLELISM, PARALLELISM,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("monkey-result", Thread.NORM_PRIORITY));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final int mPriority;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(String name, int priority) {
+            mName = name;
+            mPriority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mCount.incrementAndGet());
+            thread.setPriority(mPriority);
+            return thread;
+        }
+    }
+}
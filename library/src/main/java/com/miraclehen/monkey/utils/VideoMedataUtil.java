@@ -7,7 +7,10 @@ import android.media.MediaPlayer;
 /**
  * author: miraclehen
  * since: 2018/3/13
+ *
+ * @deprecated 需要准备播放器或者解码视频帧，使用{@link VideoMetadataEngine}只解析文件头
  */
+@Deprecated
 public class VideoMedataUtil {
 
 
@@ -16,8 +19,8 @@ public class VideoMedataUtil {
         if (abPath == null) {
             return result;
         }
+        MediaPlayer mp = new MediaPlayer();
         try {
-            MediaPlayer mp = new MediaPlayer();
             mp.setDataSource(abPath);
             mp.prepare();
             mp.setOnVideoSizeChangedListener(new MediaPlayer.OnVideoSizeChangedListener() {
@@ -34,6 +37,8 @@ public class VideoMedataUtil {
             });
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            mp.release();
         }
 
 
@@ -45,8 +50,8 @@ public class VideoMedataUtil {
         if (abPath == null) {
             return result;
         }
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
         try {
-            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
             Bitmap bmp = null;
             retriever.setDataSource(abPath);
             bmp = retriever.getFrameAtTime();
@@ -57,9 +62,11 @@ public class VideoMedataUtil {
             } else {
                 result[2] = 0;
             }
-            bmp = null;
+            bmp.recycle();
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            retriever.release();
         }
         return result;
     }
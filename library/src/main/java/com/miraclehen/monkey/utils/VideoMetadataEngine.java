@@ -0,0 +1,178 @@
+package com.miraclehen.monkey.utils;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.LruCache;
+
+import com.miraclehen.monkey.MimeType;
+import com.miraclehen.monkey.entity.VideoMetadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * 读取视频的宽高、旋转角度、时长以及码率
+ * <p>
+ * 只解析容器的头部：MP4、QuickTime、3GPP解析moov中的mvhd、tkhd，Matroska、WebM解析EBML中的Info、Tracks。
+ * 每次只读取一个box或者元素的开头，不解码视频帧，也不需要MediaMetadataRetriever或者MediaPlayer。
+ * 异步读取在{@link TaskExecutor#executeInParallel(Runnable)}的线程池中执行。
+ * <p>
+ * 结果以路径为键缓存，文件的修改时间或者大小变化之后重新读取。
+ */
+public final class VideoMetadataEngine {
+
+    /**
+     * 每次读取的最大长度，足够容纳tkhd的开头
+     */
+    private static final int BUFFER_SIZE = 128;
+
+    private static final int CACHE_SIZE = 256;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        }
+    };
+
+    private static final LruCache<String, Entry> CACHE = new LruCache<>(CACHE_SIZE);
+
+    private VideoMetadataEngine() {
+        throw new AssertionError("oops! the utility class is about to be instantiated...");
+    }
+
+    /**
+     * 同步读取，结果会被缓存
+     *
+     * @return 无法读取或者不支持的格式返回null
+     */
+    @WorkerThread
+    @Nullable
+    public static VideoMetadata read(String path) {
+        if (path == null) {
+            return null;
+        }
+        File file = new File(path);
+        long modified = file.lastModified();
+        long length = file.length();
+        Entry entry = CACHE.get(path);
+        if (entry != null && entry.mModified == modified && entry.mLength == length) {
+            return entry.mMetadata;
+        }
+        VideoMetadata metadata = parse(file);
+        CACHE.put(path, new Entry(modified, length, metadata));
+        return metadata;
+    }
+
+    /**
+     * 异步读取
+     *
+     * @param callback 在主线程中回调
+     */
+    public static void read(final String path, final Callback callback) {
+        TaskExecutor.executeResult(new Runnable() {
+            @Override
+            public void run() {
+                final VideoMetadata metadata = read(path);
+                TaskExecutor.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onRead(metadata);
+                    }
+                });
+            }
+        });
+    }
+
+    private static VideoMetadata parse(File file) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = BUFFER.get();
+            MimeType type = MimeTypeDetector.sniff(readAt(channel, buffer, 0, MimeTypeDetector.HEADER_SIZE));
+            if (type == null) {
+                return null;
+            }
+            long size = channel.size();
+            switch (type) {
+                case MP4:
+                case QUICKTIME:
+                case THREEGPP:
+                case THREEGPP2:
+                    Mp4HeaderParser mp4 = new Mp4HeaderParser(channel, buffer);
+                    if (!mp4.parse() || !mp4.hasVideo()) {
+                        return null;
+                    }
+                    return create(mp4.width, mp4.height, mp4.rotation, mp4.getDuration(), size);
+                case MKV:
+                case WEBM:
+                    MatroskaHeaderParser matroska = new MatroskaHeaderParser(channel, buffer);
+                    if (!matroska.parse() || !matroska.hasVideo()) {
+                        return null;
+                    }
+                    return create(matroska.width, matroska.height, matroska.rotation, matroska.getDuration(), size);
+                default:
+                    return null;
+            }
+        } catch (IOException | SecurityException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static VideoMetadata create(int width, int height, int rotation, long duration, long size) {
+        long bitrate = duration > 0 ? size * 8 * 1000 / duration : 0;
+        return new VideoMetadata(width, height, rotation, duration, bitrate);
+    }
+
+    /**
+     * 从position开始读取最多length个字节
+     *
+     * @return 数据从0开始，limit为实际读取的长度
+     */
+    static ByteBuffer readAt(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(Math.max(0, Math.min(length, buffer.capacity())));
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            offset += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public interface Callback {
+
+        /**
+         * @param metadata 无法读取或者不支持的格式为null
+         */
+        void onRead(@Nullable VideoMetadata metadata);
+    }
+
+    private static class Entry {
+        final long mModified;
+        final long mLength;
+        final VideoMetadata mMetadata;
+
+        Entry(long modified, long length, VideoMetadata metadata) {
+            mModified = modified;
+            mLength = length;
+            mMetadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.miraclehen.monkey.utils;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * 一段时间内时区偏移量的分段表
+ * <p>
+ * 时区偏移只在夏令时切换等少数时间点变化。生成时按固定步长探测一遍，在变化的地方二分查找准确的切换时间，
+ * 之后每次计算只需要在分段表中二分查找，不需要为每一条数据调用{@link TimeZone#getOffset(long)}。
+ * 超出范围的时间直接使用TimeZone计算。
+ */
+public final class ZoneOffsetRanges {
+
+    /**
+     * 探测的步长。两次切换之间的间隔远大于此值
+     */
+    private static final long STEP = 6 * 60 * 60 * 1000L;
+
+    private final TimeZone mZone;
+    private final long mFrom;
+    private final long mTo;
+    //每一段的开始时间，升序，以及这一段的偏移量
+    private final long[] mStarts;
+    private final int[] mOffsets;
+
+    private ZoneOffsetRanges(TimeZone zone, long from, long to, long[] starts, int[] offsets) {
+        mZone = zone;
+        mFrom = from;
+        mTo = to;
+        mStarts = starts;
+        mOffsets = offsets;
+    }
+
+    /**
+     * 生成[from, to]之间的分段表
+     */
+    public static ZoneOffsetRanges of(TimeZone zone, long from, long to) {
+        if (to < from) {
+            long tmp = from;
+            from = to;
+            to = tmp;
+        }
+        long[] starts = new long[4];
+        int[] offsets = new int[4];
+        int count = 0;
+        starts[count] = from;
+        offsets[count] = zone.getOffset(from);
+        count++;
+
+        long previous = from;
+        while (previous < to) {
+            long time = Math.min(previous + STEP, to);
+            int offset = zone.getOffset(time);
+            if (offset != offsets[count - 1]) {
+                //在(previous, time]之间二分查找切换的时间
+                long low = previous;
+                long high = time;
+                while (high - low > 1) {
+                    long mid = (low + high) >>> 1;
+                    if (zone.getOffset(mid) == offsets[count - 1]) {
+                        low = mid;
+                    } else {
+                        high = mid;
+                    }
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                starts[count] = high;
+                offsets[count] = offset;
+                count++;
+            }
+            previous = time;
+        }
+        return new ZoneOffsetRanges(zone, from, to, Arrays.copyOf(starts, count), Arrays.copyOf(offsets, count));
+    }
+
+    public boolean covers(long millis) {
+        return millis >= mFrom && millis <= mTo;
+    }
+
+    public int getOffset(long millis) {
+        if (!covers(millis)) {
+            return mZone.getOffset(millis);
+        }
+        int index = Arrays.binarySearch(mStarts, millis);
+        return mOffsets[index >= 0 ? index : -index - 2];
+    }
+
+    /**
+     * 本地时区中，距离1970年1月1日的天数
+     */
+    public long toDay(long millis) {
+        return (millis + getOffset(millis)) / DateTimeUtil.MILLIS_IN_DAY;
+    }
+}
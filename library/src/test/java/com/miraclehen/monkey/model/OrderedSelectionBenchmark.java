@@ -0,0 +1,154 @@
+package com.miraclehen.monkey.model;
+
+import com.miraclehen.monkey.entity.MediaItem;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link OrderedSelection}与原来的LinkedHashSet加上new ArrayList(set).indexOf(item)比较
+ * <p>
+ * 模拟可计数模式下的滚动：已经选中{@link #SELECTED}个数据，每一帧绑定{@link #CELLS_PER_FRAME}个格子，
+ * 每个格子查询一次序号，中间穿插少量的选中以及取消选中。先确认两者的序号完全一致；计时的测试默认不运行，
+ * 需要时去掉{@link Ignore}手动运行，只打印结果，不对耗时做断言。
+ */
+public class OrderedSelectionBenchmark {
+
+    private static final int SELECTED = 500;
+    private static final int CANDIDATES = 2000;
+    private static final int CELLS_PER_FRAME = 4 * 8;
+    private static final int FRAMES = 2000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void sameRanksAsLinkedHashSet() {
+        Workload workload = new Workload(1);
+        int[] expected = new int[workload.size()];
+        int[] actual = new int[workload.size()];
+        new BaselineRunner().run(workload, expected);
+        new OrderedRunner().run(workload, actual);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("op " + i, expected[i], actual[i]);
+        }
+    }
+
+    @Ignore("只在需要时手动运行")
+    @Test
+    public void benchmark() {
+        Workload workload = new Workload(2);
+        int[] ranks = new int[workload.size()];
+        long baseline = Long.MAX_VALUE;
+        long ordered = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            //第一轮作为预热，取最快的一轮
+            baseline = Math.min(baseline, time(new BaselineRunner(), workload, ranks));
+            ordered = Math.min(ordered, time(new OrderedRunner(), workload, ranks));
+        }
+        int lookups = FRAMES * CELLS_PER_FRAME;
+        System.out.println(String.format("OrderedSelection: %d selected, %d frames x %d cells", SELECTED, FRAMES,
+                CELLS_PER_FRAME));
+        System.out.println(String.format("  LinkedHashSet + indexOf: %8.1f ms, %8.1f ns/lookup",
+                baseline / 1e6, (double) baseline / lookups));
+        System.out.println(String.format("  OrderedSelection:        %8.1f ms, %8.1f ns/lookup",
+                ordered / 1e6, (double) ordered / lookups));
+    }
+
+    private static long time(Runner runner, Workload workload, int[] ranks) {
+        long start = System.nanoTime();
+        runner.run(workload, ranks);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 操作序列：先选中SELECTED个数据，之后每一帧查询CELLS_PER_FRAME个连续格子的序号，
+     * 每隔几帧切换一个数据的选中状态
+     */
+    private static class Workload {
+        static final int OP_TOGGLE = 0;
+        static final int OP_RANK = 1;
+
+        final MediaItem[] mItems = new MediaItem[CANDIDATES];
+        final List<int[]> mOps = new ArrayList<>();
+
+        Workload(long seed) {
+            Random random = new Random(seed);
+            for (int i = 0; i < CANDIDATES; i++) {
+                MediaItem item = new MediaItem("/storage/emulated/0/DCIM/Camera/IMG_" + i + ".jpg");
+                item.setId(i + 1);
+                mItems[i] = item;
+            }
+            for (int i = 0; i < SELECTED; i++) {
+                mOps.add(new int[]{OP_TOGGLE, random.nextInt(CANDIDATES)});
+            }
+            for (int frame = 0; frame < FRAMES; frame++) {
+                if (frame % 8 == 0) {
+                    mOps.add(new int[]{OP_TOGGLE, random.nextInt(CANDIDATES)});
+                }
+                int first = random.nextInt(CANDIDATES - CELLS_PER_FRAME);
+                for (int cell = 0; cell < CELLS_PER_FRAME; cell++) {
+                    mOps.add(new int[]{OP_RANK, first + cell});
+                }
+            }
+        }
+
+        int size() {
+            return mOps.size();
+        }
+    }
+
+    private interface Runner {
+        /**
+         * @param ranks 每个操作的结果：查询时为序号，没有选中时为-1；切换时为0
+         */
+        void run(Workload workload, int[] ranks);
+    }
+
+    /**
+     * 原来SelectedItemCollection的实现
+     */
+    private static class BaselineRunner implements Runner {
+        @Override
+        public void run(Workload workload, int[] ranks) {
+            LinkedHashSet<MediaItem> items = new LinkedHashSet<>();
+            for (int i = 0; i < workload.mOps.size(); i++) {
+                int[] op = workload.mOps.get(i);
+                MediaItem item = workload.mItems[op[1]];
+                if (op[0] == Workload.OP_TOGGLE) {
+                    if (!items.remove(item)) {
+                        items.add(item);
+                    }
+                    ranks[i] = 0;
+                } else {
+                    int index = new ArrayList<>(items).indexOf(item);
+                    ranks[i] = index == -1 ? -1 : index + 1;
+                }
+            }
+        }
+    }
+
+    private static class OrderedRunner implements Runner {
+        @Override
+        public void run(Workload workload, int[] ranks) {
+            OrderedSelection items = new OrderedSelection();
+            for (int i = 0; i < workload.mOps.size(); i++) {
+                int[] op = workload.mOps.get(i);
+                MediaItem item = workload.mItems[op[1]];
+                if (op[0] == Workload.OP_TOGGLE) {
+                    if (!items.remove(item)) {
+                        items.add(item);
+                    }
+                    ranks[i] = 0;
+                } else {
+                    ranks[i] = items.rankOf(item.getId(), item.getOriginalPath());
+                }
+            }
+        }
+    }
+}
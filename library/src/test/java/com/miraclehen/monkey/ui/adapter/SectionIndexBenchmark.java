@@ -0,0 +1,275 @@
+package com.miraclehen.monkey.ui.adapter;
+
+import android.content.Context;
+
+import com.miraclehen.monkey.entity.DateGrouping;
+import com.miraclehen.monkey.entity.MediaTable;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link SectionIndex#build(Context, MediaTable, DateGrouping)}与原来AlbumMediaAdapter.processData的按天分组比较
+ * <p>
+ * {@link #ROWS}条按日期倒序排列的数据，其中一部分是连拍（时间相同），一部分没有拍摄日期。
+ * 原来的实现直接读取数组，不包括读取cursor的耗时。日期视图的文本与比较无关，使用不需要Context的分组。
+ * 先确认两者的日期视图位置一致；计时的测试默认不运行，需要时去掉{@link Ignore}手动运行，
+ * 只打印结果，不对耗时做断言。
+ */
+public class SectionIndexBenchmark {
+
+    private static final int ROWS = 100000;
+    private static final int ROUNDS = 5;
+    private static final long NEWEST = 1700000000000L;
+
+    /**
+     * 与{@link DateGrouping#DAY}相同的分组，文本直接使用天数
+     */
+    private static final DateGrouping DAY = new DateGrouping() {
+        @Override
+        public long keyOf(long day) {
+            return day;
+        }
+
+        @Override
+        public String getLabel(Context context, long key, long date) {
+            return String.valueOf(key);
+        }
+    };
+
+    @Test
+    public void sameHeadersAsProcessData() {
+        SyntheticRows rows = new SyntheticRows(1);
+        SectionIndex index = SectionIndex.build(null, MediaTable.wrap(MediaTable.empty(), rows), DAY);
+        int[] legacy = legacyHeaderPositions(rows);
+
+        int[] headers = new int[index.getSectionCount()];
+        for (int s = 0; s < headers.length; s++) {
+            headers[s] = index.getHeaderPosition(s);
+        }
+        assertArrayEquals(legacy, headers);
+        assertEquals(ROWS + headers.length, index.getItemCount());
+    }
+
+    @Ignore("只在需要时手动运行")
+    @Test
+    public void benchmark() {
+        SyntheticRows rows = new SyntheticRows(2);
+        MediaTable table = MediaTable.wrap(MediaTable.empty(), rows);
+        long legacy = Long.MAX_VALUE;
+        long index = Long.MAX_VALUE;
+        int sections = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            //第一轮作为预热，取最快的一轮
+            long start = System.nanoTime();
+            legacyHeaderPositions(rows);
+            legacy = Math.min(legacy, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sections = SectionIndex.build(null, table, DAY).getSectionCount();
+            index = Math.min(index, System.nanoTime() - start);
+        }
+        System.out.println(String.format("SectionIndex: %d rows, %d days", ROWS, sections));
+        System.out.println(String.format("  processData:        %8.1f ms", legacy / 1e6));
+        System.out.println(String.format("  SectionIndex.build: %8.1f ms", index / 1e6));
+    }
+
+    /**
+     * 原来的实现：以毫秒时间为键去重（重复时加1毫秒），排序之后逐个比较相邻的两条数据是否在同一天，
+     * 每条数据创建一个对象
+     *
+     * @return 日期视图在列表中的位置
+     */
+    private static int[] legacyHeaderPositions(SyntheticRows rows) {
+        Map<Long, Integer> dateWithPos = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            long msTime = legacyTimeToMs(rows.getDateTaken(i));
+            if (msTime == 0) {
+                msTime = legacyTimeToMs(rows.getDateAdded(i));
+            }
+            while (dateWithPos.containsKey(msTime)) {
+                msTime++;
+            }
+            dateWithPos.put(msTime, i);
+        }
+        List<Long> dates = new ArrayList<>(dateWithPos.keySet());
+        Collections.sort(dates, new Comparator<Long>() {
+            @Override
+            public int compare(Long o1, Long o2) {
+                return o2.compareTo(o1);
+            }
+        });
+
+        List<LegacyBean> beans = new ArrayList<>();
+        beans.add(new LegacyBean(true, dates.get(0), beans.size(), -1));
+        beans.add(new LegacyBean(false, dates.get(0), beans.size(), dateWithPos.get(dates.get(0))));
+        for (int i = 1; i < dates.size(); i++) {
+            if (!legacyIsSameDay(dates.get(i), dates.get(i - 1))) {
+                beans.add(new LegacyBean(true, dates.get(i), beans.size(), -1));
+            }
+            beans.add(new LegacyBean(false, dates.get(i), beans.size(), dateWithPos.get(dates.get(i))));
+        }
+
+        int headers = 0;
+        for (LegacyBean bean : beans) {
+            if (bean.mDateView) {
+                headers++;
+            }
+        }
+        int[] positions = new int[headers];
+        int h = 0;
+        for (LegacyBean bean : beans) {
+            if (bean.mDateView) {
+                positions[h++] = bean.mAdapterPosition;
+            }
+        }
+        return positions;
+    }
+
+    private static long legacyTimeToMs(long time) {
+        long now = System.currentTimeMillis() > 1514736000000L ? System.currentTimeMillis() : 1514736000000L;
+        return time * 1000 > now ? time : time * 1000;
+    }
+
+    private static boolean legacyIsSameDay(long ms1, long ms2) {
+        long interval = ms1 - ms2;
+        return interval < 86400000L && interval > -86400000L && legacyToDay(ms1) == legacyToDay(ms2);
+    }
+
+    private static long legacyToDay(long millis) {
+        return (millis + TimeZone.getDefault().getOffset(millis)) / 86400000L;
+    }
+
+    private static class LegacyBean {
+        final boolean mDateView;
+        final long mDate;
+        final int mAdapterPosition;
+        final int mCursorPosition;
+
+        LegacyBean(boolean dateView, long date, int adapterPosition, int cursorPosition) {
+            mDateView = dateView;
+            mDate = date;
+            mAdapterPosition = adapterPosition;
+            mCursorPosition = cursorPosition;
+        }
+    }
+
+    /**
+     * 按(sortKey, _id)倒序排列的数据，与查询结果一致。平均间隔约20分钟，
+     * 约10%是连拍，约5%没有拍摄日期只有添加日期
+     */
+    private static class SyntheticRows implements MediaTable.Rows {
+        private final long[] mDateTaken = new long[ROWS];
+        private final long[] mDateAdded = new long[ROWS];
+
+        SyntheticRows(long seed) {
+            Random random = new Random(seed);
+            long date = NEWEST;
+            for (int i = 0; i < ROWS; i++) {
+                if (i > 0 && random.nextInt(10) != 0) {
+                    date -= 1 + (long) (-Math.log(1 - random.nextDouble()) * 20 * 60 * 1000);
+                }
+                //避开午夜附近，原来的实现在去重时会把时间向后移动几毫秒
+                long local = date + TimeZone.getDefault().getOffset(date);
+                if (local % 86400000L > 86400000L - 1000) {
+                    date -= 1000;
+                }
+                if (random.nextInt(20) == 0) {
+                    //没有拍摄日期，添加日期只精确到秒
+                    date = date / 1000 * 1000;
+                    mDateAdded[i] = date / 1000;
+                } else {
+                    mDateTaken[i] = date;
+                    mDateAdded[i] = date / 1000;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return ROWS;
+        }
+
+        @Override
+        public long getId(int row) {
+            return ROWS - row;
+        }
+
+        @Override
+        public long getDateTaken(int row) {
+            return mDateTaken[row];
+        }
+
+        @Override
+        public long getDateAdded(int row) {
+            return mDateAdded[row];
+        }
+
+        @Override
+        public String getMimeType(int row) {
+            return "image/jpeg";
+        }
+
+        @Override
+        public int getMimeCode(int row) {
+            return 0;
+        }
+
+        @Override
+        public int getWidth(int row) {
+            return 0;
+        }
+
+        @Override
+        public int getHeight(int row) {
+            return 0;
+        }
+
+        @Override
+        public long getSize(int row) {
+            return 0;
+        }
+
+        @Override
+        public long getDuration(int row) {
+            return 0;
+        }
+
+        @Override
+        public double getLatitude(int row) {
+            return 0;
+        }
+
+        @Override
+        public double getLongitude(int row) {
+            return 0;
+        }
+
+        @Override
+        public String getPath(int row) {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName(int row) {
+            return null;
+        }
+
+        @Override
+        public String getBucketId(int row) {
+            return null;
+        }
+    }
+}
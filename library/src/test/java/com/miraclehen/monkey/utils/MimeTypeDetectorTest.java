@@ -0,0 +1,128 @@
+package com.miraclehen.monkey.utils;
+
+import com.miraclehen.monkey.MimeType;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static com.miraclehen.monkey.utils.VideoMetadataEngineTest.fixture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link MimeTypeDetector#sniff(ByteBuffer)}
+ */
+public class MimeTypeDetectorTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void images() {
+        assertEquals(MimeType.JPEG, sniff(bytes(0xFF, 0xD8, 0xFF, 0xE0, 0, 0x10, 'J', 'F', 'I', 'F')));
+        assertEquals(MimeType.PNG, sniff(bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D)));
+        assertEquals(MimeType.GIF, sniff(ascii("GIF89a")));
+        assertEquals(MimeType.WEBP, sniff(ascii("RIFF\0\0\0\0WEBPVP8 ")));
+        assertEquals(MimeType.BMP, sniff(bytes('B', 'M', 0x36, 0, 0, 0, 0, 0, 0, 0, 0x36, 0)));
+    }
+
+    @Test
+    public void mp4Brands() {
+        for (String brand : new String[]{"isom", "iso2", "iso5", "mp41", "mp42", "avc1", "M4V ", "dash", "mmp4"}) {
+            assertEquals(brand, MimeType.MP4, sniff(ftyp(brand)));
+        }
+    }
+
+    @Test
+    public void quickTimeAnd3gpp() {
+        assertEquals(MimeType.QUICKTIME, sniff(ftyp("qt  ", "qt  ")));
+        assertEquals(MimeType.THREEGPP, sniff(ftyp("3gp4", "isom", "3gp4")));
+        assertEquals(MimeType.THREEGPP, sniff(ftyp("3gp6")));
+        assertEquals(MimeType.THREEGPP2, sniff(ftyp("3g2a")));
+        //没有ftyp的旧QuickTime文件
+        assertEquals(MimeType.QUICKTIME, sniff(ascii("\0\0\0\u0010moov\0\0\0\0")));
+    }
+
+    @Test
+    public void heifIsNotVideo() {
+        for (String brand : new String[]{"heic", "heix", "hevc", "mif1", "msf1", "avif", "avis"}) {
+            assertNull(brand, sniff(ftyp(brand, "mif1", "miaf")));
+        }
+        //major brand无法识别时，compatible brands中有图片的品牌
+        assertNull(sniff(ftyp("abcd", "mif1", "isom")));
+    }
+
+    @Test
+    public void unknownBrands() {
+        //音频
+        assertNull(sniff(ftyp("M4A ", "M4A ", "mp42")));
+        assertNull(sniff(ftyp("abcd")));
+        assertNull(sniff(ftyp("abcd", "efgh")));
+    }
+
+    @Test
+    public void compatibleBrands() {
+        assertEquals(MimeType.MP4, sniff(ftyp("abcd", "efgh", "isom")));
+        assertEquals(MimeType.THREEGPP, sniff(ftyp("abcd", "3gp5")));
+    }
+
+    @Test
+    public void matroska() throws Exception {
+        assertEquals(MimeType.MKV, MimeTypeDetector.detect(fixture("matroska_roll_90.mkv")));
+        assertEquals(MimeType.WEBM, MimeTypeDetector.detect(fixture("webm_no_rotation.webm")));
+    }
+
+    @Test
+    public void videoFixtures() throws Exception {
+        assertEquals(MimeType.MP4, MimeTypeDetector.detect(fixture("mp4_rotation_90.mp4")));
+        assertEquals(MimeType.MP4, MimeTypeDetector.detect(fixture("mp4_no_rotation.mp4")));
+        assertEquals(MimeType.QUICKTIME, MimeTypeDetector.detect(fixture("quicktime_rotation_180.mov")));
+    }
+
+    @Test
+    public void unknown() throws Exception {
+        assertNull(sniff(ascii("abc")));
+        assertNull(sniff(ascii("RIFF\0\0\0\0WAVEfmt ")));
+        assertNull(MimeTypeDetector.detect(fixture("not_video.txt")));
+    }
+
+    @Test
+    public void headerAtPosition() {
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        buffer.put(new byte[8]).put(ftyp("mp42"));
+        buffer.flip();
+        buffer.position(8);
+        assertEquals(MimeType.MP4, MimeTypeDetector.sniff(buffer));
+    }
+
+    private static MimeType sniff(byte[] header) {
+        return MimeTypeDetector.sniff(ByteBuffer.wrap(header));
+    }
+
+    /**
+     * ftyp box，只保留文件头中读取的部分
+     */
+    private static byte[] ftyp(String major, String... compatible) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + compatible.length * 4);
+        buffer.putInt(buffer.capacity()).put(ascii("ftyp")).put(ascii(major)).putInt(0);
+        for (String brand : compatible) {
+            buffer.put(ascii(brand));
+        }
+        byte[] bytes = buffer.array();
+        return bytes.length > MimeTypeDetector.HEADER_SIZE
+                ? java.util.Arrays.copyOf(bytes, MimeTypeDetector.HEADER_SIZE) : bytes;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(ASCII);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
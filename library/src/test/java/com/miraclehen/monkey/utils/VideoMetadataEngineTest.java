@@ -0,0 +1,101 @@
+package com.miraclehen.monkey.utils;
+
+import com.miraclehen.monkey.entity.VideoMetadata;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link VideoMetadataEngine}以及{@link Mp4HeaderParser}、{@link MatroskaHeaderParser}
+ * <p>
+ * 测试文件只包含文件头，媒体数据用0填充
+ */
+public class VideoMetadataEngineTest {
+
+    @Test
+    public void mp4WithRotation() throws Exception {
+        //moov在mdat之后，第一个轨道是音频
+        VideoMetadata metadata = read("mp4_rotation_90.mp4");
+        assertMetadata(metadata, 1920, 1080, 90, 12345);
+        assertEquals(1080, metadata.getDisplayWidth());
+        assertEquals(1920, metadata.getDisplayHeight());
+    }
+
+    @Test
+    public void mp4WithoutRotation() throws Exception {
+        VideoMetadata metadata = read("mp4_no_rotation.mp4");
+        //mvhd的timescale为600
+        assertMetadata(metadata, 1280, 720, 0, 5000);
+        assertEquals(1280, metadata.getDisplayWidth());
+        assertEquals(720, metadata.getDisplayHeight());
+    }
+
+    @Test
+    public void quickTime() throws Exception {
+        //版本1的mvhd以及tkhd
+        assertMetadata(read("quicktime_rotation_180.mov"), 640, 480, 180, 90000);
+    }
+
+    @Test
+    public void matroska() throws Exception {
+        //ProjectionPoseRoll是逆时针的角度
+        assertMetadata(read("matroska_roll_90.mkv"), 1280, 720, 270, 4500);
+    }
+
+    @Test
+    public void webm() throws Exception {
+        //Duration是8字节的浮点数
+        assertMetadata(read("webm_no_rotation.webm"), 640, 360, 0, 2000);
+    }
+
+    @Test
+    public void truncatedFile() throws Exception {
+        assertNull(read("mp4_truncated.mp4"));
+    }
+
+    @Test
+    public void corruptBox() throws Exception {
+        assertNull(read("mp4_corrupt.mp4"));
+    }
+
+    @Test
+    public void noVideoTrack() throws Exception {
+        assertNull(read("mp4_audio_only.mp4"));
+    }
+
+    @Test
+    public void notVideo() throws Exception {
+        assertNull(read("not_video.txt"));
+    }
+
+    @Test
+    public void missingFile() {
+        assertNull(VideoMetadataEngine.read(new File("does_not_exist.mp4").getAbsolutePath()));
+        assertNull(VideoMetadataEngine.read(null));
+    }
+
+    private static void assertMetadata(VideoMetadata metadata, int width, int height, int rotation, long duration) {
+        assertNotNull(metadata);
+        assertEquals(width, metadata.width);
+        assertEquals(height, metadata.height);
+        assertEquals(rotation, metadata.rotation);
+        assertEquals(duration, metadata.duration);
+    }
+
+    private VideoMetadata read(String name) throws URISyntaxException {
+        return VideoMetadataEngine.read(fixture(name).getPath());
+    }
+
+    static File fixture(String name) throws URISyntaxException {
+        URL url = VideoMetadataEngineTest.class.getResource(name);
+        assertNotNull("missing fixture " + name, url);
+        return new File(url.toURI());
+    }
+}